@@ -1,5 +1,16 @@
 package iscteiul.ista;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import iscteiul.ista.battleship.BatchRunner;
 import iscteiul.ista.battleship.Fleet;
 import iscteiul.ista.battleship.Tasks;
 
@@ -10,8 +21,16 @@ import iscteiul.ista.battleship.Tasks;
  */
 public class App
 {
-    public static void main( String[] args )
+    public static void main( String[] args ) throws IOException, InterruptedException
     {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            batch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--session")) {
+            session(args);
+            return;
+        }
 
         System.out.printf("\n***  Battleship Game ***\n");
 
@@ -20,4 +39,64 @@ public class App
         //	Tasks.taskC();
         //	Tasks.taskD();
     }
+
+    /**
+     * Start-up optimized mode for a single scripted session:
+     * {@code App --session [script]}. Commands are read from the script, or
+     * from the standard input if none is given, and everything the session
+     * prints goes to the standard output. log4j is not initialized on this
+     * path; see the {@code appcds} Maven profile for a class-data sharing
+     * archive of it.
+     *
+     * @param args the command line arguments
+     */
+    private static void session( String[] args ) throws IOException
+    {
+        try (Reader in = args.length > 1
+                ? Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : new InputStreamReader(System.in)) {
+            Tasks.playSession(in, System.out);
+        } catch (RuntimeException e) {
+            System.out.println("ERRO: sessao interrompida (" + e + ")");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Headless batch mode:
+     * {@code App --batch <output-dir> [--threads n] <script-or-dir>...}
+     *
+     * @param args the command line arguments
+     */
+    private static void batch( String[] args ) throws IOException, InterruptedException
+    {
+        if (args.length < 3) {
+            System.out.println("Uso: App --batch <pasta-saida> [--threads n] <script-ou-pasta>...");
+            return;
+        }
+        Path output = Paths.get(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else
+                inputs.add(Paths.get(args[i]));
+        }
+
+        List<Path> scripts;
+        try {
+            scripts = BatchRunner.collect(inputs);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        BatchRunner.Summary summary = new BatchRunner(threads).run(scripts, output);
+        System.out.printf("%d sessoes (%d falhadas), %d comandos em %.2f s (%.0f sessoes/s)%n",
+                summary.getSessions(), summary.getFailures(), summary.getCommands(),
+                summary.getSeconds(), summary.getSessionsPerSecond());
+        if (summary.getFailures() > 0)
+            System.exit(1);
+    }
 }
@@ -0,0 +1,125 @@
+package iscteiul.ista;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import iscteiul.ista.battleship.CommandIngress;
+import iscteiul.ista.battleship.FleetGenerator;
+import iscteiul.ista.battleship.SessionStore;
+
+/**
+ * Local load generator for the {@link CommandIngress}.
+ *
+ * <p>Polite clients submit a volley of three shots every
+ * {@value #VOLLEY_MILLIS} ms, well within their rate, while each flooding
+ * client submits shots as fast as a thread can. At the end, the shots
+ * submitted, accepted and fired by each kind of client are reported with
+ * the rejections and the peak queue depth of the ingress.</p>
+ *
+ * <p>Usage: {@code IngressLoadApp [polite-clients] [flooding-clients] [seconds]}</p>
+ */
+public class IngressLoadApp
+{
+    /** Time between the volleys of a polite client. */
+    private static final long VOLLEY_MILLIS = 100;
+
+    /** Index of the polite clients in the counters. */
+    private static final int POLITE = 0;
+
+    /** Index of the flooding clients in the counters. */
+    private static final int FLOOD = 1;
+
+    public static void main( String[] args ) throws InterruptedException
+    {
+        int polite = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int flooders = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+
+        long[] firstFlooder = new long[1];
+        AtomicLongArray submitted = new AtomicLongArray(2);
+        AtomicLongArray accepted = new AtomicLongArray(2);
+        long[] fired = new long[2];
+        SessionStore store = new SessionStore(64L << 20);
+        CommandIngress ingress = new CommandIngress(store,
+                (id, row, column, outcome) -> fired[id < firstFlooder[0] ? POLITE : FLOOD]++,
+                50, 6, 12, 8 * (polite + flooders));
+
+        Random rnd = new Random(2024);
+        long[] politeIds = new long[polite];
+        for (int i = 0; i < polite; i++)
+            politeIds[i] = ingress.create(FleetGenerator.randomFleet(rnd));
+        long[] floodIds = new long[flooders];
+        for (int i = 0; i < flooders; i++)
+            floodIds[i] = ingress.create(FleetGenerator.randomFleet(rnd));
+        firstFlooder[0] = flooders > 0 ? floodIds[0] : Long.MAX_VALUE;
+
+        Thread loop = new Thread(ingress::run, "ingress");
+        loop.start();
+
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        List<Thread> clients = new ArrayList<>();
+        clients.add(new Thread(() -> {
+            Random r = new Random(1);
+            while (System.nanoTime() < end) {
+                for (long id : politeIds)
+                    for (int k = 0; k < 3; k++)
+                        send(ingress, id, r, POLITE, submitted, accepted);
+                sleep(VOLLEY_MILLIS);
+            }
+        }, "polite"));
+        for (int i = 0; i < flooders; i++) {
+            long id = floodIds[i];
+            Random r = new Random(100 + i);
+            clients.add(new Thread(() -> {
+                while (System.nanoTime() < end)
+                    send(ingress, id, r, FLOOD, submitted, accepted);
+            }, "flood-" + i));
+        }
+
+        System.out.printf("\n***  Battleship Ingress Load ***\n");
+        for (Thread t : clients)
+            t.start();
+        for (Thread t : clients)
+            t.join();
+        while (ingress.getQueuedShots() > 0)
+            sleep(1);
+        ingress.stop();
+        loop.join();
+
+        String[] names = {"educados", "inundadores"};
+        for (int c = POLITE; c <= FLOOD; c++)
+            System.out.printf("%-11s %d tiros enviados, %d aceites, %d disparados%n",
+                    names[c], submitted.get(c), accepted.get(c), fired[c]);
+        System.out.printf("rejeicoes: %d por taxa, %d fila cheia, %d sobrecarga; fila maxima %d tiros%n",
+                ingress.getSubmissions(CommandIngress.RATE_LIMITED),
+                ingress.getSubmissions(CommandIngress.QUEUE_FULL),
+                ingress.getSubmissions(CommandIngress.OVERLOADED),
+                ingress.getPeakQueuedShots());
+    }
+
+    /**
+     * Submits a random shot and counts it.
+     */
+    private static void send( CommandIngress ingress, long id, Random r, int kind,
+                              AtomicLongArray submitted, AtomicLongArray accepted )
+    {
+        submitted.incrementAndGet(kind);
+        if (ingress.submit(id, r.nextInt(10), r.nextInt(10)) == CommandIngress.ACCEPTED)
+            accepted.incrementAndGet(kind);
+    }
+
+    /**
+     * Sleeps, ignoring interruptions.
+     */
+    private static void sleep( long millis )
+    {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package iscteiul.ista;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time to the first command of the game, launching a new JVM
+ * for each run.
+ *
+ * <p>Each run starts {@link App} in a child JVM with the same class path,
+ * sends it a single command ({@code desisto}) and waits for it to exit, so
+ * the time measured is the start-up of the JVM and of the game up to its
+ * first command. The interactive mode, which initializes log4j, and the
+ * {@code --session} mode, which does not, are measured in alternation, and
+ * the median and minimum of each are reported. Extra JVM options, such as
+ * {@code -XX:SharedArchiveFile=target/Battleship-1.0-SNAPSHOT.jsa}, are
+ * passed to the child JVMs.</p>
+ *
+ * <p>Usage: {@code StartupBenchmark [runs] [jvm-option]...}</p>
+ */
+public class StartupBenchmark
+{
+    public static void main( String[] args ) throws IOException, InterruptedException
+    {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        List<String> options = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : List.of();
+
+        String[] modes = {"interativo", "--session"};
+        long[][] nanos = new long[modes.length][runs];
+        for (int r = 0; r < runs; r++)
+            for (int m = 0; m < modes.length; m++)
+                nanos[m][r] = launch(options, m == 0 ? null : modes[m]);
+
+        System.out.printf("\n***  Battleship Startup ***\n");
+        for (int m = 0; m < modes.length; m++) {
+            Arrays.sort(nanos[m]);
+            System.out.printf("%-10s mediana %.1f ms, minimo %.1f ms (%d execucoes)%n",
+                    modes[m], nanos[m][runs / 2] / 1e6, nanos[m][0] / 1e6, runs);
+        }
+    }
+
+    /**
+     * Runs the game in a child JVM until its first command is executed.
+     *
+     * @param options the options of the child JVM
+     * @param mode the first argument of the game, or {@code null} for the interactive mode
+     * @return the wall-clock time of the run, in nanoseconds
+     */
+    private static long launch( List<String> options, String mode ) throws IOException, InterruptedException
+    {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(options);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(App.class.getName());
+        if (mode != null)
+            command.add(mode);
+
+        long start = System.nanoTime();
+        Process p = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (OutputStream in = p.getOutputStream()) {
+            in.write("desisto\n".getBytes(StandardCharsets.UTF_8));
+        }
+        int status = p.waitFor();
+        long elapsed = System.nanoTime() - start;
+        if (status != 0)
+            throw new IllegalStateException("ERROR! child JVM exited with status " + status);
+        return elapsed;
+    }
+}
@@ -0,0 +1,52 @@
+package iscteiul.ista;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import iscteiul.ista.battleship.HuntTargetPlayer;
+import iscteiul.ista.battleship.RandomPlayer;
+import iscteiul.ista.battleship.TournamentRunner;
+
+/**
+ * Command line entry point of the strategy tournament.
+ *
+ * <p>Usage: {@code TournamentApp <results-file> [max-matches] [half-width] [seed]}</p>
+ */
+public class TournamentApp
+{
+    public static void main( String[] args ) throws IOException
+    {
+        if (args.length < 1) {
+            System.out.println("Uso: TournamentApp <ficheiro> [max-jogos] [meia-largura] [semente]");
+            return;
+        }
+        int maxMatches = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        double halfWidth = args.length > 2 ? Double.parseDouble(args[2]) : 0.005;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 2024L;
+
+        TournamentRunner runner = new TournamentRunner(maxMatches, 10_000, halfWidth, seed);
+        runner.addStrategy("random", s -> new RandomPlayer(new Random(s)));
+        runner.addStrategy("hunt", s -> new HuntTargetPlayer(new Random(s)));
+
+        System.out.printf("\n***  Battleship Tournament ***\n");
+        long start = System.nanoTime();
+        List<TournamentRunner.PairingResult> results;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[0])))) {
+            results = runner.run(out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long matches = 0;
+        for (TournamentRunner.PairingResult r : results) {
+            matches += r.getMatches();
+            System.out.printf("%s vs %s: %d jogos, %.4f +- %.4f, %.1f turnos%n",
+                    runner.getNames().get(r.getFirst()), runner.getNames().get(r.getSecond()),
+                    r.getMatches(), r.getWinRate(), r.getHalfWidth(), r.getAverageTurns());
+        }
+        System.out.printf("%d jogos em %.2f s (%.0f jogos/s)%n", matches, seconds, matches / seconds);
+    }
+}
@@ -0,0 +1,254 @@
+package iscteiul.ista.battleship;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link GameListener} that hands events over to another listener running
+ * on its own thread, so that a slow listener never stalls
+ * {@link IGame#fire(IPosition)}.
+ *
+ * <p>Events are stored in a preallocated ring buffer of primitive slots and
+ * consumed by a daemon dispatcher thread, so publishing an event creates no
+ * objects and never blocks. If the buffer is full the event is dropped and
+ * counted in {@link #getDroppedEvents()}.</p>
+ *
+ * <p>The buffer supports a single publishing thread: a listener instance may
+ * be shared by several games only if they are all played on the same
+ * thread.</p>
+ */
+public class AsyncGameListener implements GameListener, AutoCloseable {
+
+    /** Event type of {@link GameListener#shotFired}. */
+    private static final int SHOT = 0;
+
+    /** Event type of {@link GameListener#shipHit}. */
+    private static final int HIT = 1;
+
+    /** Event type of {@link GameListener#shipSunk}. */
+    private static final int SINK = 2;
+
+    /** Event type of {@link GameListener#invalidShot}. */
+    private static final int INVALID = 3;
+
+    /** Event type of {@link GameListener#repeatedShot}. */
+    private static final int REPEAT = 4;
+
+    /** Event type of {@link GameListener#gameOver}. */
+    private static final int GAME_OVER = 5;
+
+    /** Event type of {@link GameListener#shotUndone}. */
+    private static final int UNDO = 6;
+
+    /** Time the dispatcher sleeps when the buffer is empty. */
+    private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /** The listener receiving the events. */
+    private final GameListener delegate;
+
+    /** Mask used to map sequence numbers to slots; the capacity is a power of two. */
+    private final int mask;
+
+    /** Event type of each slot. */
+    private final int[] types;
+
+    /** Row of each slot. */
+    private final int[] rows;
+
+    /** Column of each slot. */
+    private final int[] columns;
+
+    /** Shot outcome of each slot, for undo events. */
+    private final int[] outcomes;
+
+    /** Sunk ship of each slot. */
+    private final IShip[] ships;
+
+    /** Sequence number of the next event to publish. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Sequence number of the next event to dispatch. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Number of events dropped because the buffer was full. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** The dispatcher thread. */
+    private final Thread dispatcher;
+
+    /** Whether the listener has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * Creates an asynchronous listener and starts its dispatcher thread.
+     *
+     * @param delegate the listener receiving the events
+     * @param capacity the minimum number of events the buffer can hold
+     */
+    public AsyncGameListener(GameListener delegate, int capacity) {
+        assert delegate != null;
+        assert capacity > 0;
+
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.delegate = delegate;
+        this.mask = size - 1;
+        this.types = new int[size];
+        this.rows = new int[size];
+        this.columns = new int[size];
+        this.outcomes = new int[size];
+        this.ships = new IShip[size];
+
+        dispatcher = new Thread(this::dispatch, "game-events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public void shotFired(int row, int column) {
+        publish(SHOT, row, column, 0, null);
+    }
+
+    @Override
+    public void shipHit(int row, int column) {
+        publish(HIT, row, column, 0, null);
+    }
+
+    @Override
+    public void shipSunk(IShip ship) {
+        publish(SINK, 0, 0, 0, ship);
+    }
+
+    @Override
+    public void invalidShot(int row, int column) {
+        publish(INVALID, row, column, 0, null);
+    }
+
+    @Override
+    public void repeatedShot(int row, int column) {
+        publish(REPEAT, row, column, 0, null);
+    }
+
+    @Override
+    public void gameOver() {
+        publish(GAME_OVER, 0, 0, 0, null);
+    }
+
+    @Override
+    public void shotUndone(int row, int column, int outcome) {
+        publish(UNDO, row, column, outcome, null);
+    }
+
+    /**
+     * Returns the number of events dropped because the buffer was full.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedEvents() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of events waiting to be dispatched.
+     *
+     * @return the number of pending events
+     */
+    public int getPendingEvents() {
+        return (int) (head.get() - tail.get());
+    }
+
+    /**
+     * Stores an event in the next free slot, or drops it if the buffer is full.
+     *
+     * @param type the event type
+     * @param row the row of the shot
+     * @param column the column of the shot
+     * @param outcome the shot outcome, for undo events
+     * @param ship the sunk ship, for sink events
+     */
+    private void publish(int type, int row, int column, int outcome, IShip ship) {
+        long h = head.get();
+        if (h - tail.get() > mask) {
+            dropped.incrementAndGet();
+            return;
+        }
+        int slot = (int) h & mask;
+        types[slot] = type;
+        rows[slot] = row;
+        columns[slot] = column;
+        outcomes[slot] = outcome;
+        ships[slot] = ship;
+        head.lazySet(h + 1);
+    }
+
+    /**
+     * Dispatcher loop: delivers pending events to the delegate in order until
+     * the listener is closed and the buffer is empty.
+     */
+    private void dispatch() {
+        while (true) {
+            boolean done = closed;
+            long t = tail.get();
+            if (t == head.get()) {
+                if (done)
+                    return;
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            int slot = (int) t & mask;
+            IShip ship = ships[slot];
+            ships[slot] = null;
+            deliver(types[slot], rows[slot], columns[slot], outcomes[slot], ship);
+            tail.lazySet(t + 1);
+        }
+    }
+
+    /**
+     * Delivers a single event to the delegate.
+     *
+     * @param type the event type
+     * @param row the row of the shot
+     * @param column the column of the shot
+     * @param outcome the shot outcome, for undo events
+     * @param ship the sunk ship, for sink events
+     */
+    private void deliver(int type, int row, int column, int outcome, IShip ship) {
+        switch (type) {
+            case SHOT:
+                delegate.shotFired(row, column);
+                break;
+            case HIT:
+                delegate.shipHit(row, column);
+                break;
+            case SINK:
+                delegate.shipSunk(ship);
+                break;
+            case INVALID:
+                delegate.invalidShot(row, column);
+                break;
+            case REPEAT:
+                delegate.repeatedShot(row, column);
+                break;
+            case UNDO:
+                delegate.shotUndone(row, column, outcome);
+                break;
+            default:
+                delegate.gameOver();
+        }
+    }
+
+    /**
+     * Stops the dispatcher after all pending events have been delivered,
+     * waiting for it to finish. If the calling thread is interrupted while
+     * waiting, the dispatcher still stops after draining the buffer.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package iscteiul.ista.battleship;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs recorded game sessions headless, in parallel.
+ *
+ * <p>Each script holds the commands of one session in the language of
+ * {@link Tasks#taskD()} ({@code nova}, {@code rajada}, {@code estado}, ...).
+ * Scripts are played on a pool of worker threads, and everything a session
+ * prints goes to a file of the output directory named after the script, with
+ * the extension {@code .out}, so the scripts of a batch must have distinct
+ * file names. A script that cannot be played to the end, for
+ * instance because it is truncated, is reported in its output file and
+ * counted as failed; the other scripts are not affected.</p>
+ */
+public class BatchRunner {
+
+    /** Extension of the output files. */
+    public static final String OUTPUT_EXTENSION = ".out";
+
+    /**
+     * Aggregate result of a batch.
+     */
+    public static final class Summary {
+
+        /** Number of sessions played. */
+        private final int sessions;
+
+        /** Number of sessions that failed. */
+        private final int failures;
+
+        /** Number of commands executed. */
+        private final long commands;
+
+        /** Wall-clock duration of the batch, in nanoseconds. */
+        private final long nanos;
+
+        /**
+         * Creates a summary.
+         *
+         * @param sessions the number of sessions played
+         * @param failures the number of sessions that failed
+         * @param commands the number of commands executed
+         * @param nanos the duration of the batch, in nanoseconds
+         */
+        Summary(int sessions, int failures, long commands, long nanos) {
+            this.sessions = sessions;
+            this.failures = failures;
+            this.commands = commands;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Returns the number of sessions played.
+         *
+         * @return the number of sessions
+         */
+        public int getSessions() {
+            return sessions;
+        }
+
+        /**
+         * Returns the number of sessions that failed.
+         *
+         * @return the number of failures
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * Returns the number of commands executed in all sessions.
+         *
+         * @return the number of commands
+         */
+        public long getCommands() {
+            return commands;
+        }
+
+        /**
+         * Returns the duration of the batch.
+         *
+         * @return the duration in seconds
+         */
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        /**
+         * Returns the throughput of the batch.
+         *
+         * @return the number of sessions per second
+         */
+        public double getSessionsPerSecond() {
+            return nanos == 0 ? 0 : sessions / getSeconds();
+        }
+    }
+
+    /** Number of worker threads. */
+    private final int threads;
+
+    /**
+     * Creates a runner.
+     *
+     * @param threads the number of worker threads
+     */
+    public BatchRunner(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("ERROR! invalid number of threads");
+        this.threads = threads;
+    }
+
+    /**
+     * Lists the scripts given as files or directories. Directories contribute
+     * their regular files, not recursively, in name order.
+     *
+     * @param paths the files and directories
+     * @return the script files
+     * @throws IOException if a directory cannot be listed
+     * @throws IllegalArgumentException if two scripts have the same file name
+     */
+    public static List<Path> collect(List<Path> paths) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        for (Path p : paths) {
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> files = Files.list(p)) {
+                    scripts.addAll(files.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+                }
+            } else {
+                scripts.add(p);
+            }
+        }
+        checkNames(scripts);
+        return scripts;
+    }
+
+    /**
+     * Checks that no two scripts have the same file name, since each output
+     * file is named after its script.
+     *
+     * @param scripts the script files
+     * @throws IllegalArgumentException if two scripts have the same file name
+     */
+    private static void checkNames(List<Path> scripts) {
+        Set<Path> names = new HashSet<>();
+        for (Path script : scripts)
+            if (!names.add(script.getFileName()))
+                throw new IllegalArgumentException("ERROR! more than one script named " + script.getFileName());
+    }
+
+    /**
+     * Plays every script and writes the output of each session.
+     *
+     * @param scripts the script files
+     * @param outputDirectory the directory receiving the output files
+     * @return the aggregate result
+     * @throws IOException if the output directory cannot be created
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws IllegalArgumentException if two scripts have the same file name
+     */
+    public Summary run(List<Path> scripts, Path outputDirectory) throws IOException, InterruptedException {
+        checkNames(scripts);
+        Files.createDirectories(outputDirectory);
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>(scripts.size());
+            for (Path script : scripts) {
+                Path output = outputDirectory.resolve(script.getFileName() + OUTPUT_EXTENSION);
+                results.add(pool.submit(() -> play(script, output)));
+            }
+
+            int failures = 0;
+            long commands = 0;
+            for (Future<Integer> f : results) {
+                try {
+                    commands += f.get();
+                } catch (ExecutionException e) {
+                    failures++;
+                }
+            }
+            return new Summary(scripts.size(), failures, commands, System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays one script.
+     *
+     * @param script the script file
+     * @param output the output file
+     * @return the number of commands executed
+     * @throws RuntimeException if the session could not be played to the end
+     */
+    private static int play(Path script, Path output) {
+        try (CommandReader in = new CommandReader(Files.newBufferedReader(script, StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(output)),
+                     false, StandardCharsets.UTF_8)) {
+            try {
+                return Tasks.playSession(in, out, out::println);
+            } catch (RuntimeException e) {
+                out.println("ERRO: sessao interrompida (" + e + ")");
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
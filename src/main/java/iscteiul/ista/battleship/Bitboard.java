@@ -0,0 +1,217 @@
+package iscteiul.ista.battleship;
+
+import java.util.List;
+
+/**
+ * Helper operations on board bitmasks.
+ * A bitmask stores one bit per board cell, packed into an array of
+ * {@code long} words, where the cell at ({@code row}, {@code column})
+ * has index {@code row * BOARD_SIZE + column}.
+ *
+ * <p>Masks are plain {@code long[]} arrays with {@link #WORDS} elements,
+ * so they can be stored in flat tables, copied cheaply and combined
+ * without creating any objects.</p>
+ */
+public final class Bitboard {
+
+    /** Number of cells in the board. */
+    public static final int CELLS = IFleet.BOARD_SIZE * IFleet.BOARD_SIZE;
+
+    /** Number of {@code long} words needed to store one bit per cell. */
+    public static final int WORDS = (CELLS + Long.SIZE - 1) / Long.SIZE;
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private Bitboard() {
+    }
+
+    /**
+     * Creates an empty mask.
+     *
+     * @return a new mask with no cells set
+     */
+    public static long[] newMask() {
+        return new long[WORDS];
+    }
+
+    /**
+     * Checks whether the given coordinates lie inside the board.
+     *
+     * @param row the row index
+     * @param column the column index
+     * @return {@code true} if the coordinates are inside the board
+     */
+    public static boolean isInside(int row, int column) {
+        return row >= 0 && row < IFleet.BOARD_SIZE && column >= 0 && column < IFleet.BOARD_SIZE;
+    }
+
+    /**
+     * Returns the cell index of the given coordinates.
+     *
+     * @param row the row index
+     * @param column the column index
+     * @return the cell index
+     */
+    public static int cell(int row, int column) {
+        return row * IFleet.BOARD_SIZE + column;
+    }
+
+    /**
+     * Returns the row of a cell index.
+     *
+     * @param cell the cell index
+     * @return the row index
+     */
+    public static int rowOf(int cell) {
+        return cell / IFleet.BOARD_SIZE;
+    }
+
+    /**
+     * Returns the column of a cell index.
+     *
+     * @param cell the cell index
+     * @return the column index
+     */
+    public static int columnOf(int cell) {
+        return cell % IFleet.BOARD_SIZE;
+    }
+
+    /**
+     * Marks a cell in the mask.
+     *
+     * @param mask the mask to update
+     * @param cell the cell index
+     */
+    public static void set(long[] mask, int cell) {
+        mask[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * Removes a cell from the mask.
+     *
+     * @param mask the mask to update
+     * @param cell the cell index
+     */
+    public static void clear(long[] mask, int cell) {
+        mask[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * Checks whether a cell is marked in the mask.
+     *
+     * @param mask the mask to inspect
+     * @param cell the cell index
+     * @return {@code true} if the cell is marked
+     */
+    public static boolean get(long[] mask, int cell) {
+        return (mask[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Removes every cell from the mask.
+     *
+     * @param mask the mask to clear
+     */
+    public static void clearAll(long[] mask) {
+        for (int w = 0; w < WORDS; w++)
+            mask[w] = 0L;
+    }
+
+    /**
+     * Checks whether the mask has no cells set.
+     *
+     * @param mask the mask to inspect
+     * @return {@code true} if the mask is empty
+     */
+    public static boolean isEmpty(long[] mask) {
+        for (int w = 0; w < WORDS; w++)
+            if (mask[w] != 0L)
+                return false;
+        return true;
+    }
+
+    /**
+     * Counts the cells set in the mask.
+     *
+     * @param mask the mask to inspect
+     * @return the number of cells set
+     */
+    public static int count(long[] mask) {
+        int n = 0;
+        for (int w = 0; w < WORDS; w++)
+            n += Long.bitCount(mask[w]);
+        return n;
+    }
+
+    /**
+     * Counts the cells set in the mask before a given cell, i.e. the
+     * ordinal of that cell among the cells of the mask.
+     *
+     * @param mask the mask to inspect
+     * @param cell the cell index
+     * @return the number of cells set with a smaller index
+     */
+    public static int rank(long[] mask, int cell) {
+        int w = cell >>> 6;
+        int n = Long.bitCount(mask[w] & ((1L << cell) - 1));
+        for (int i = 0; i < w; i++)
+            n += Long.bitCount(mask[i]);
+        return n;
+    }
+
+    /**
+     * Checks whether two masks have at least one cell in common.
+     *
+     * @param a the first mask
+     * @param b the second mask
+     * @return {@code true} if the masks intersect
+     */
+    public static boolean intersects(long[] a, long[] b) {
+        for (int w = 0; w < WORDS; w++)
+            if ((a[w] & b[w]) != 0L)
+                return true;
+        return false;
+    }
+
+    /**
+     * Checks whether every cell of {@code inner} is also set in {@code outer}.
+     *
+     * @param outer the enclosing mask
+     * @param inner the mask that should be contained
+     * @return {@code true} if {@code inner} is a subset of {@code outer}
+     */
+    public static boolean containsAll(long[] outer, long[] inner) {
+        for (int w = 0; w < WORDS; w++)
+            if ((inner[w] & ~outer[w]) != 0L)
+                return false;
+        return true;
+    }
+
+    /**
+     * Adds every cell of {@code source} to {@code target}.
+     *
+     * @param target the mask to update
+     * @param source the cells to add
+     */
+    public static void or(long[] target, long[] source) {
+        for (int w = 0; w < WORDS; w++)
+            target[w] |= source[w];
+    }
+
+    /**
+     * Builds the mask of a list of positions.
+     *
+     * @param positions the positions to mark
+     * @return the mask, or {@code null} if any position lies outside the board
+     */
+    public static long[] of(List<IPosition> positions) {
+        long[] mask = newMask();
+        for (IPosition p : positions) {
+            if (!isInside(p.getRow(), p.getColumn()))
+                return null;
+            set(mask, cell(p.getRow(), p.getColumn()));
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,92 @@
+package iscteiul.ista.battleship;
+
+/**
+ * Precomputed adjacency tables of the board.
+ *
+ * <p>For every cell the table holds the bitmask (see {@link Bitboard}) of its
+ * neighbourhood: the cell itself plus the up to eight cells touching it
+ * horizontally, vertically or diagonally. Two cells are adjacent in the
+ * sense of {@link IPosition#isAdjacentTo(IPosition)} exactly when one lies in
+ * the neighbourhood of the other, so adjacency between ships becomes a mask
+ * intersection instead of a comparison of every pair of positions.</p>
+ */
+public final class BoardGeometry {
+
+    /** Neighbourhood of each cell, {@link Bitboard#WORDS} words per cell. */
+    private static final long[] NEIGHBOURHOODS = new long[Bitboard.CELLS * Bitboard.WORDS];
+
+    static {
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            int row = Bitboard.rowOf(cell);
+            int column = Bitboard.columnOf(cell);
+            for (int r = row - 1; r <= row + 1; r++)
+                for (int c = column - 1; c <= column + 1; c++)
+                    if (Bitboard.isInside(r, c)) {
+                        int n = Bitboard.cell(r, c);
+                        NEIGHBOURHOODS[cell * Bitboard.WORDS + (n >>> 6)] |= 1L << n;
+                    }
+        }
+    }
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private BoardGeometry() {
+    }
+
+    /**
+     * Checks whether two cells are equal or touch each other.
+     *
+     * @param a the first cell index
+     * @param b the second cell index
+     * @return {@code true} if the cells are adjacent
+     */
+    public static boolean isAdjacent(int a, int b) {
+        return (NEIGHBOURHOODS[a * Bitboard.WORDS + (b >>> 6)] & (1L << b)) != 0;
+    }
+
+    /**
+     * Checks whether any cell of the mask is equal to or touches the given cell.
+     *
+     * @param cell the cell index
+     * @param mask the cells to test
+     * @return {@code true} if the neighbourhood of the cell intersects the mask
+     */
+    public static boolean touches(int cell, long[] mask) {
+        int base = cell * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            if ((NEIGHBOURHOODS[base + w] & mask[w]) != 0L)
+                return true;
+        return false;
+    }
+
+    /**
+     * Adds the neighbourhood of a cell to a mask.
+     *
+     * @param cell the cell index
+     * @param target the mask to update
+     */
+    public static void orNeighbourhood(int cell, long[] target) {
+        int base = cell * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            target[w] |= NEIGHBOURHOODS[base + w];
+    }
+
+    /**
+     * Computes the halo of a mask: its cells plus every cell touching them.
+     *
+     * @param mask the cells to expand
+     * @return a new mask with the halo
+     */
+    public static long[] halo(long[] mask) {
+        long[] halo = Bitboard.newMask();
+        for (int w = 0; w < Bitboard.WORDS; w++) {
+            long bits = mask[w];
+            while (bits != 0L) {
+                orNeighbourhood((w << 6) + Long.numberOfTrailingZeros(bits), halo);
+                bits &= bits - 1;
+            }
+        }
+        return halo;
+    }
+}
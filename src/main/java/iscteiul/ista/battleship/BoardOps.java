@@ -0,0 +1,40 @@
+package iscteiul.ista.battleship;
+
+/**
+ * Element-wise operations on counter grids, shared by the statistics and
+ * solver code to merge partial results.
+ *
+ * <p>Grids are flat arrays and may hold several boards back to back, so
+ * that many boards can be merged in a single call without creating
+ * objects. Operations on masks live in {@link Bitboard}.</p>
+ */
+public final class BoardOps {
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private BoardOps() {
+    }
+
+    /**
+     * Adds a grid of counters to another, element by element.
+     *
+     * @param target the counters to update
+     * @param source the counters to add, at least as long as {@code target}
+     */
+    public static void add(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++)
+            target[i] += source[i];
+    }
+
+    /**
+     * Adds a grid of values to another, element by element.
+     *
+     * @param target the values to update
+     * @param source the values to add, at least as long as {@code target}
+     */
+    public static void add(double[] target, double[] source) {
+        for (int i = 0; i < target.length; i++)
+            target[i] += source[i];
+    }
+}
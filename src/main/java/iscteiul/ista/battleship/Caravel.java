@@ -30,12 +30,12 @@ public class Caravel extends Ship {
             case NORTH:
             case SOUTH:
                 for (int r = 0; r < SIZE; r++)
-                    getPositions().add(new Position(pos.getRow() + r, pos.getColumn()));
+                    addPosition(pos.getRow() + r, pos.getColumn());
                 break;
             case EAST:
             case WEST:
                 for (int c = 0; c < SIZE; c++)
-                    getPositions().add(new Position(pos.getRow(), pos.getColumn() + c));
+                    addPosition(pos.getRow(), pos.getColumn() + c);
                 break;
             default:
                 throw new IllegalArgumentException("ERROR! invalid bearing for the caravel");
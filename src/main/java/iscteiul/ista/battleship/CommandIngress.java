@@ -0,0 +1,474 @@
+package iscteiul.ista.battleship;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, rate-limited intake of shots in front of a {@link SessionStore},
+ * for a game server exposed to clients that may flood it with commands.
+ *
+ * <p>Shots are submitted from any thread, typically the ones reading the
+ * client connections, and fired later by a single run loop. Every session
+ * has its own token bucket and its own bounded queue of pending shots, and
+ * the number of shots pending in all sessions is bounded as well. A shot is
+ * rejected at once, with a status telling the client why, when the session
+ * exceeds its rate, when its queue is full or when the whole ingress is
+ * overloaded: the server applies backpressure to the client instead of
+ * buffering without limit.</p>
+ *
+ * <p>Sessions with pending shots wait in a FIFO run queue, as in the
+ * {@link MatchScheduler}. The run loop takes the session at the head of the
+ * queue, fires at most one volley of {@value Tasks#NUMBER_SHOTS} shots and
+ * puts it back at the tail if it still has shots pending, so a flooding
+ * client never delays the others by more than one volley each.</p>
+ *
+ * <p>{@link #create}, {@link #submit}, {@link #remove} and the metrics may
+ * be used from any thread; the run loop itself must only be executed by one
+ * thread at a time.</p>
+ */
+public class CommandIngress {
+
+    /** The shot was queued. */
+    public static final int ACCEPTED = 0;
+
+    /** The shot was rejected because the session exceeded its rate. */
+    public static final int RATE_LIMITED = 1;
+
+    /** The shot was rejected because the queue of the session was full. */
+    public static final int QUEUE_FULL = 2;
+
+    /** The shot was rejected because too many shots are pending in all sessions. */
+    public static final int OVERLOADED = 3;
+
+    /** The shot was rejected because there is no such session. */
+    public static final int UNKNOWN_SESSION = 4;
+
+    /** Number of submission statuses. */
+    private static final int STATUSES = 5;
+
+    /** Time the run loop sleeps when no session has shots pending. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Receives the outcome of the shots fired by the run loop.
+     */
+    @FunctionalInterface
+    public interface ShotHandler {
+
+        /**
+         * Called, on the run loop thread, after a queued shot was fired.
+         *
+         * @param id the game id
+         * @param row the row fired at
+         * @param column the column fired at
+         * @param outcome the outcome of the shot, as a {@link ShotOutcome} code
+         */
+        void shotFired(long id, int row, int column, int outcome);
+    }
+
+    /**
+     * The intake state of a game session. Guarded by its own lock.
+     */
+    private static final class Session {
+
+        /** The game id. */
+        private final long id;
+
+        /** The pending shots, row in the high half and column in the low half. */
+        private final long[] pending;
+
+        /** Number of shots taken from the queue. */
+        private int head;
+
+        /** Number of shots put in the queue. */
+        private int tail;
+
+        /** Tokens in the bucket, in nanoseconds of refill. */
+        private long credit;
+
+        /** Time of the last refill of the bucket. */
+        private long refilled;
+
+        /** Whether the session is in the run queue or being served. */
+        private boolean enqueued;
+
+        /** Whether the session was removed. */
+        private boolean removed;
+
+        /**
+         * Creates a session with a full bucket.
+         *
+         * @param id the game id
+         * @param queueCapacity the capacity of the queue, a power of two
+         * @param credit the capacity of the bucket, in nanoseconds of refill
+         * @param now the current time
+         */
+        Session(long id, int queueCapacity, long credit, long now) {
+            this.id = id;
+            this.pending = new long[queueCapacity];
+            this.credit = credit;
+            this.refilled = now;
+        }
+
+        /**
+         * Returns the number of pending shots.
+         *
+         * @return the queue depth
+         */
+        int depth() {
+            return tail - head;
+        }
+    }
+
+    /** The store holding the games. */
+    private final SessionStore store;
+
+    /** Receives the outcome of the shots fired. */
+    private final ShotHandler handler;
+
+    /** The source of time, in nanoseconds. */
+    private final LongSupplier clock;
+
+    /** Nanoseconds needed to refill one token. */
+    private final long interval;
+
+    /** Capacity of the buckets, in nanoseconds of refill. */
+    private final long burst;
+
+    /** Capacity of the queue of each session, a power of two. */
+    private final int queueCapacity;
+
+    /** Maximum number of shots pending in all sessions. */
+    private final int maxQueued;
+
+    /** All sessions, by game id. */
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    /** Sessions with pending shots. */
+    private final Queue<Session> runQueue = new ConcurrentLinkedQueue<>();
+
+    /** Number of shots pending in all sessions. */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /** Highest number of shots pending at once. */
+    private final AtomicInteger peakQueued = new AtomicInteger();
+
+    /** Number of submissions, by status. */
+    private final AtomicLongArray submissions = new AtomicLongArray(STATUSES);
+
+    /** Number of shots fired. */
+    private final AtomicLong fired = new AtomicLong();
+
+    /** The thread executing {@link #run()}, if any. */
+    private volatile Thread runner;
+
+    /** Whether {@link #run()} should return. */
+    private volatile boolean stopped;
+
+    /**
+     * Creates an ingress using the system clock.
+     *
+     * @param store the store holding the games
+     * @param handler receives the outcome of the shots fired
+     * @param shotsPerSecond the sustained rate of shots allowed per session
+     * @param burst the number of shots a session may submit at once after being idle
+     * @param queueCapacity the minimum number of shots each session may have pending
+     * @param maxQueued the maximum number of shots pending in all sessions
+     */
+    public CommandIngress(SessionStore store, ShotHandler handler, double shotsPerSecond, int burst,
+                          int queueCapacity, int maxQueued) {
+        this(store, handler, shotsPerSecond, burst, queueCapacity, maxQueued, System::nanoTime);
+    }
+
+    /**
+     * Creates an ingress.
+     *
+     * @param store the store holding the games
+     * @param handler receives the outcome of the shots fired
+     * @param shotsPerSecond the sustained rate of shots allowed per session
+     * @param burst the number of shots a session may submit at once after being idle
+     * @param queueCapacity the minimum number of shots each session may have pending
+     * @param maxQueued the maximum number of shots pending in all sessions
+     * @param clock the source of time, in nanoseconds
+     */
+    public CommandIngress(SessionStore store, ShotHandler handler, double shotsPerSecond, int burst,
+                          int queueCapacity, int maxQueued, LongSupplier clock) {
+        assert store != null && handler != null && clock != null;
+
+        if (!(shotsPerSecond > 0) || burst < 1 || queueCapacity < 1 || maxQueued < 1)
+            throw new IllegalArgumentException("ERROR! invalid ingress limits");
+        this.store = store;
+        this.handler = handler;
+        this.clock = clock;
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / shotsPerSecond));
+        this.burst = burst * interval;
+        this.queueCapacity = Integer.highestOneBit(Math.max(queueCapacity - 1, 1)) << 1;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Starts a new game session in the store and opens its intake.
+     *
+     * @param fleet the fleet to be fired at
+     * @return the id of the new game
+     */
+    public long create(IFleet fleet) {
+        long id = store.create(fleet);
+        sessions.put(id, new Session(id, queueCapacity, burst, clock.getAsLong()));
+        return id;
+    }
+
+    /**
+     * Submits a shot, queueing it if the session is within its limits.
+     * Never blocks on the game itself.
+     *
+     * @param id the game id
+     * @param row the row to fire at
+     * @param column the column to fire at
+     * @return {@link #ACCEPTED}, or the reason of the rejection: {@link #RATE_LIMITED},
+     *         {@link #QUEUE_FULL}, {@link #OVERLOADED} or {@link #UNKNOWN_SESSION}
+     */
+    public int submit(long id, int row, int column) {
+        Session s = sessions.get(id);
+        int status;
+        boolean wake = false;
+        if (s == null) {
+            status = UNKNOWN_SESSION;
+        } else {
+            synchronized (s) {
+                status = admit(s);
+                if (status == ACCEPTED) {
+                    s.pending[s.tail++ & queueCapacity - 1] = (long) row << 32 | column & 0xFFFFFFFFL;
+                    wake = !s.enqueued;
+                    s.enqueued = true;
+                }
+            }
+        }
+        submissions.incrementAndGet(status);
+        if (wake) {
+            runQueue.add(s);
+            Thread t = runner;
+            if (t != null)
+                LockSupport.unpark(t);
+        }
+        return status;
+    }
+
+    /**
+     * Checks the limits of a session for a new shot, taking a token and a
+     * place in the global bound if it is admitted. Must be called while
+     * holding the session lock.
+     *
+     * @param s the session
+     * @return the status of the submission
+     */
+    private int admit(Session s) {
+        if (s.removed)
+            return UNKNOWN_SESSION;
+        long now = clock.getAsLong();
+        s.credit = Math.min(burst, s.credit + Math.max(0, now - s.refilled));
+        s.refilled = now;
+        if (s.credit < interval)
+            return RATE_LIMITED;
+        if (s.depth() == queueCapacity)
+            return QUEUE_FULL;
+        int n = queued.incrementAndGet();
+        if (n > maxQueued) {
+            queued.decrementAndGet();
+            return OVERLOADED;
+        }
+        peakQueued.accumulateAndGet(n, Math::max);
+        s.credit -= interval;
+        return ACCEPTED;
+    }
+
+    /**
+     * Removes a game session from the ingress and from the store, dropping
+     * its pending shots.
+     *
+     * @param id the game id
+     */
+    public void remove(long id) {
+        Session s = sessions.remove(id);
+        if (s != null)
+            drop(s);
+        store.remove(id);
+    }
+
+    /**
+     * Marks a session removed from the ingress and releases its pending
+     * shots.
+     *
+     * @param s the session, no longer in {@code sessions}
+     */
+    private void drop(Session s) {
+        synchronized (s) {
+            s.removed = true;
+            queued.addAndGet(-s.depth());
+            s.head = s.tail;
+        }
+    }
+
+    /**
+     * Fires one volley of the session at the head of the run queue.
+     *
+     * @return {@code false} if no session had shots pending
+     */
+    public boolean runOnce() {
+        Session s = runQueue.poll();
+        if (s == null)
+            return false;
+
+        for (int i = 0; i < Tasks.NUMBER_SHOTS; i++) {
+            long shot;
+            synchronized (s) {
+                if (s.depth() == 0)
+                    break;
+                shot = s.pending[s.head++ & queueCapacity - 1];
+            }
+            queued.decrementAndGet();
+            int row = (int) (shot >> 32);
+            int column = (int) shot;
+            int outcome;
+            try {
+                outcome = store.fireAt(s.id, row, column);
+            } catch (IllegalArgumentException e) {
+                // The game was removed from the store directly.
+                if (sessions.remove(s.id, s))
+                    drop(s);
+                break;
+            }
+            fired.incrementAndGet();
+            handler.shotFired(s.id, row, column, outcome);
+        }
+
+        boolean requeue;
+        synchronized (s) {
+            requeue = s.depth() > 0 && !s.removed;
+            s.enqueued = requeue;
+        }
+        if (requeue)
+            runQueue.add(s);
+        return true;
+    }
+
+    /**
+     * Fires queued shots until no session has shots pending.
+     *
+     * @return the number of volleys fired
+     */
+    public long runUntilIdle() {
+        long volleys = 0;
+        while (runOnce())
+            volleys++;
+        return volleys;
+    }
+
+    /**
+     * Runs the ingress loop on the calling thread until {@link #stop()} is
+     * called, sleeping while no session has shots pending.
+     */
+    public void run() {
+        runner = Thread.currentThread();
+        try {
+            while (!stopped)
+                if (!runOnce())
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+        } finally {
+            runner = null;
+        }
+    }
+
+    /**
+     * Asks the ingress loop to return.
+     */
+    public void stop() {
+        stopped = true;
+        Thread t = runner;
+        if (t != null)
+            LockSupport.unpark(t);
+    }
+
+    /**
+     * Returns the number of shots pending in a session.
+     *
+     * @param id the game id
+     * @return the queue depth of the session, or {@code 0} if there is no such session
+     */
+    public int getQueueDepth(long id) {
+        Session s = sessions.get(id);
+        if (s == null)
+            return 0;
+        synchronized (s) {
+            return s.depth();
+        }
+    }
+
+    /**
+     * Returns the number of shots pending in all sessions.
+     *
+     * @return the total queue depth
+     */
+    public int getQueuedShots() {
+        return queued.get();
+    }
+
+    /**
+     * Returns the highest number of shots pending at once in all sessions.
+     *
+     * @return the peak total queue depth
+     */
+    public int getPeakQueuedShots() {
+        return peakQueued.get();
+    }
+
+    /**
+     * Returns the number of sessions waiting in the run queue.
+     *
+     * @return the size of the run queue
+     */
+    public int getReadySessions() {
+        return runQueue.size();
+    }
+
+    /**
+     * Returns the number of submissions that ended with a given status.
+     *
+     * @param status {@link #ACCEPTED} or one of the rejection reasons
+     * @return the number of submissions
+     */
+    public long getSubmissions(int status) {
+        if (status < 0 || status >= STATUSES)
+            throw new IllegalArgumentException("ERROR! invalid status " + status);
+        return submissions.get(status);
+    }
+
+    /**
+     * Returns the number of submissions that were rejected, for any reason.
+     *
+     * @return the number of rejections
+     */
+    public long getRejections() {
+        long total = 0;
+        for (int status = ACCEPTED + 1; status < STATUSES; status++)
+            total += submissions.get(status);
+        return total;
+    }
+
+    /**
+     * Returns the number of queued shots fired by the run loop.
+     *
+     * @return the number of shots fired
+     */
+    public long getFiredShots() {
+        return fired.get();
+    }
+}
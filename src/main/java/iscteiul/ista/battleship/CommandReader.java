@@ -0,0 +1,143 @@
+package iscteiul.ista.battleship;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the commands of a game session as whitespace-separated tokens.
+ *
+ * <p>This is a lightweight replacement for the subset of
+ * {@link java.util.Scanner} used by {@link Tasks}: tokens are separated by
+ * {@linkplain Character#isWhitespace(char) whitespace}, and reading past the
+ * end of the input or an integer that does not parse throws the same
+ * exceptions as the scanner. It avoids the regular expressions the scanner
+ * compiles and runs for every token, which are a noticeable part of the
+ * start-up time of short sessions. Unlike the scanner, a token that is not
+ * an integer is consumed by {@link #nextInt()}, and read errors are thrown
+ * rather than treated as the end of the input.</p>
+ */
+public final class CommandReader implements Closeable {
+
+    /** Number of characters read from the source at a time. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The source of the commands. */
+    private final Reader in;
+
+    /** The characters read from the source and not yet consumed. */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /** Index of the next character of the buffer. */
+    private int position;
+
+    /** Number of valid characters in the buffer. */
+    private int limit;
+
+    /** Scratch space for the token being read. */
+    private final StringBuilder token = new StringBuilder();
+
+    /**
+     * Creates a reader over a character source.
+     *
+     * @param in the source of the commands
+     */
+    public CommandReader(Reader in) {
+        assert in != null;
+
+        this.in = in;
+    }
+
+    /**
+     * Creates a reader over a byte source, decoded with the default charset.
+     *
+     * @param in the source of the commands
+     */
+    public CommandReader(InputStream in) {
+        this(new InputStreamReader(in));
+    }
+
+    /**
+     * Checks whether there is another token in the input, skipping the
+     * whitespace before it. May block waiting for input.
+     *
+     * @return {@code true} if a token can be read
+     */
+    public boolean hasNext() {
+        while (true) {
+            if (position == limit && !fill())
+                return false;
+            if (!Character.isWhitespace(buffer[position]))
+                return true;
+            position++;
+        }
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the token
+     * @throws NoSuchElementException if the input has no more tokens
+     */
+    public String next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        token.setLength(0);
+        do {
+            char c = buffer[position];
+            if (Character.isWhitespace(c))
+                break;
+            token.append(c);
+            position++;
+        } while (position < limit || fill());
+        return token.toString();
+    }
+
+    /**
+     * Reads the next token as a decimal integer.
+     *
+     * @return the integer
+     * @throws NoSuchElementException if the input has no more tokens
+     * @throws InputMismatchException if the token is not an integer
+     */
+    public int nextInt() {
+        String s = next();
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new InputMismatchException(e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the source.
+     *
+     * @throws IOException if the source cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads more characters from the source into the buffer, which must
+     * have been fully consumed.
+     *
+     * @return {@code false} at the end of the input
+     */
+    private boolean fill() {
+        try {
+            int n = in.read(buffer, 0, buffer.length);
+            position = 0;
+            limit = Math.max(n, 0);
+            return n > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package iscteiul.ista.battleship;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import iscteiul.ista.battleship.collections.IntIntOpenHashMap;
 
 /**
  * Represents a fleet of ships in the Battleship game.
@@ -11,6 +18,20 @@ import java.util.List;
  * <p>This class implements the {@link IFleet} interface and ensures
  * that ships are added only when they respect the board limits and
  * do not collide or touch other ships.</p>
+ *
+ * <p>The lists returned by the getters are read-only views kept by the
+ * fleet, so they rarely need to be rebuilt. The ships of each category are
+ * indexed when the ship is added. The floating ships are checked against
+ * the ships themselves on every read of them, however the ships were shot,
+ * and only rebuilt when a ship has sunk or floats again since the last
+ * read; the list returned is therefore a snapshot, only valid until the
+ * next call to {@link #getFloatingShips()} or
+ * {@link #getFloatingCount(ShipKind)}, which may change it.</p>
+ *
+ * <p>Ships of a registered {@link ShipKind} are indexed by the ordinal of
+ * their kind, so looking up a category and counting the floating ships of a
+ * kind are array accesses; only ships of categories unknown to the registry
+ * fall back to a map keyed by category.</p>
  */
 public class Fleet implements IFleet {
 
@@ -20,8 +41,18 @@ public class Fleet implements IFleet {
      * @param ships the list of ships to print
      */
     static void printShips(List<IShip> ships) {
+        printShips(ships, System.out);
+    }
+
+    /**
+     * Prints all ships contained in the given list to a stream.
+     *
+     * @param ships the list of ships to print
+     * @param out the stream to print to
+     */
+    static void printShips(List<IShip> ships, PrintStream out) {
         for (IShip ship : ships)
-            System.out.println(ship);
+            out.println(ship);
     }
 
     // -----------------------------------------------------
@@ -29,21 +60,61 @@ public class Fleet implements IFleet {
     /** The list of ships that belong to this fleet. */
     private List<IShip> ships;
 
+    /** Index in {@code ships} of the ship occupying each cell, by cell index. */
+    private final IntIntOpenHashMap shipByCell;
+
+    /** Read-only view of {@code ships}. */
+    private final List<IShip> shipsView;
+
+    /** The ships of each registered kind, by kind ordinal, in the order they were added. */
+    private final List<List<IShip>> kinds;
+
+    /** Read-only views of the lists in {@code kinds}. */
+    private final List<List<IShip>> kindViews;
+
+    /** Number of floating ships of each registered kind, by kind ordinal. */
+    private int[] floatingByKind;
+
+    /** The ships of categories unknown to {@link ShipKind}, by category. */
+    private final Map<String, List<IShip>> others;
+
+    /** Read-only views of the lists in {@code others}. */
+    private final Map<String, List<IShip>> otherViews;
+
+    /** The ships not sunk yet, in the order they were added. */
+    private final List<IShip> floating;
+
+    /** Read-only view of {@code floating}. */
+    private final List<IShip> floatingView;
+
+    /** Cells occupied by the ships of the fleet plus all cells touching them. */
+    private long[] halo;
+
     /**
      * Creates an empty fleet with no ships.
      */
     public Fleet() {
         ships = new ArrayList<>();
+        halo = Bitboard.newMask();
+        shipByCell = new IntIntOpenHashMap(32, -1);
+        shipsView = Collections.unmodifiableList(ships);
+        kinds = new ArrayList<>();
+        kindViews = new ArrayList<>();
+        floatingByKind = new int[ShipKind.count()];
+        others = new HashMap<>();
+        otherViews = new HashMap<>();
+        floating = new ArrayList<>();
+        floatingView = Collections.unmodifiableList(floating);
     }
 
     /**
      * Returns all ships currently in the fleet.
      *
-     * @return the list of ships
+     * @return a read-only view of the ships
      */
     @Override
     public List<IShip> getShips() {
-        return ships;
+        return shipsView;
     }
 
     /**
@@ -62,42 +133,138 @@ public class Fleet implements IFleet {
     @Override
     public boolean addShip(IShip s) {
         boolean result = false;
-        if ((ships.size() <= FLEET_SIZE) && (isInsideBoard(s)) && (!colisionRisk(s))) {
+        if ((ships.size() < FLEET_SIZE) && (isInsideBoard(s)) && (!colisionRisk(s))) {
+            for (IPosition p : s.getPositions())
+                shipByCell.put(Bitboard.cell(p.getRow(), p.getColumn()), ships.size());
             ships.add(s);
+            Bitboard.or(halo, haloOf(s));
+            ShipKind kind = ShipKind.of(s);
+            if (kind != null)
+                addByKind(kind.ordinal(), s);
+            else
+                addByCategory(s);
             result = true;
         }
         return result;
     }
 
+    /**
+     * Indexes a ship under its kind.
+     *
+     * @param kind the ordinal of the kind of the ship
+     * @param s the ship
+     */
+    private void addByKind(int kind, IShip s) {
+        while (kinds.size() <= kind) {
+            List<IShip> list = new ArrayList<>();
+            kinds.add(list);
+            kindViews.add(Collections.unmodifiableList(list));
+        }
+        kinds.get(kind).add(s);
+        if (kind >= floatingByKind.length)
+            floatingByKind = Arrays.copyOf(floatingByKind, ShipKind.count());
+    }
+
+    /**
+     * Indexes a ship of a category unknown to {@link ShipKind} under its category.
+     *
+     * @param s the ship
+     */
+    private void addByCategory(IShip s) {
+        List<IShip> category = others.get(s.getCategory());
+        if (category == null) {
+            category = new ArrayList<>();
+            others.put(s.getCategory(), category);
+            otherViews.put(s.getCategory(), Collections.unmodifiableList(category));
+        }
+        category.add(s);
+    }
+
     /**
      * Returns all ships whose category matches the given string.
      *
      * @param category the category of ships to search for
-     * @return a list of ships belonging to the given category
+     * @return a read-only view of the ships belonging to the given category
      */
     @Override
     public List<IShip> getShipsLike(String category) {
-        List<IShip> shipsLike = new ArrayList<>();
-        for (IShip s : ships)
-            if (s.getCategory().equals(category))
-                shipsLike.add(s);
+        ShipKind kind = ShipKind.byCategory(category);
+        if (kind != null)
+            return getShipsLike(kind);
+        List<IShip> shipsLike = otherViews.get(category);
+        return shipsLike != null ? shipsLike : Collections.emptyList();
+    }
 
-        return shipsLike;
+    /**
+     * Returns all ships of the given kind.
+     *
+     * @param kind the kind of ships to search for
+     * @return a read-only view of the ships of that kind
+     */
+    public List<IShip> getShipsLike(ShipKind kind) {
+        assert kind != null;
+        return kind.ordinal() < kindViews.size() ? kindViews.get(kind.ordinal()) : Collections.emptyList();
     }
 
     /**
-     * Returns all ships that are still floating (not sunk).
+     * Returns the number of ships of the given kind that are still floating.
      *
-     * @return a list of floating ships
+     * @param kind the kind of ships to count
+     * @return the number of floating ships of that kind
+     */
+    public int getFloatingCount(ShipKind kind) {
+        assert kind != null;
+        refreshFloating();
+        return kind.ordinal() < floatingByKind.length ? floatingByKind[kind.ordinal()] : 0;
+    }
+
+    /**
+     * Returns all ships that are still floating (not sunk). The list is
+     * reused: it is only valid until the next call to this method or to
+     * {@link #getFloatingCount(ShipKind)}, and iterating over it while
+     * calling them after a ship has sunk or floats again throws
+     * {@link java.util.ConcurrentModificationException}. Copy it to keep it.
+     *
+     * @return a read-only snapshot of the floating ships as of this call
      */
     @Override
     public List<IShip> getFloatingShips() {
-        List<IShip> floatingShips = new ArrayList<>();
+        refreshFloating();
+        return floatingView;
+    }
+
+    /**
+     * Brings the floating ships, and their count by kind, up to date with
+     * the state of the ships. The check walks the ships once and creates no
+     * objects; the lists are only rebuilt if they differ.
+     */
+    private void refreshFloating() {
+        int at = 0;
         for (IShip s : ships)
-            if (s.stillFloating())
-                floatingShips.add(s);
+            if (s.stillFloating()) {
+                if (at == floating.size() || floating.get(at) != s) {
+                    rebuildFloating();
+                    return;
+                }
+                at++;
+            }
+        if (at != floating.size())
+            rebuildFloating();
+    }
 
-        return floatingShips;
+    /**
+     * Rebuilds the floating ships and their count by kind from the ships.
+     */
+    private void rebuildFloating() {
+        floating.clear();
+        Arrays.fill(floatingByKind, 0);
+        for (IShip s : ships)
+            if (s.stillFloating()) {
+                floating.add(s);
+                ShipKind kind = ShipKind.of(s);
+                if (kind != null)
+                    floatingByKind[kind.ordinal()]++;
+            }
     }
 
     /**
@@ -108,10 +275,20 @@ public class Fleet implements IFleet {
      */
     @Override
     public IShip shipAt(IPosition pos) {
-        for (int i = 0; i < ships.size(); i++)
-            if (ships.get(i).occupies(pos))
-                return ships.get(i);
-        return null;
+        int i = shipIndexAt(pos.getRow(), pos.getColumn());
+        return i < 0 ? null : ships.get(i);
+    }
+
+    /**
+     * Returns the index of the ship occupying the given coordinates, if any.
+     *
+     * @param row the row to check
+     * @param column the column to check
+     * @return the index of the ship in {@link #getShips()}, or {@code -1} if none exists
+     */
+    @Override
+    public int shipIndexAt(int row, int column) {
+        return Bitboard.isInside(row, column) ? shipByCell.get(Bitboard.cell(row, column)) : -1;
     }
 
     /**
@@ -127,17 +304,35 @@ public class Fleet implements IFleet {
 
     /**
      * Checks whether adding a ship would cause a collision or adjacency
-     * with any existing ship in the fleet.
+     * with any existing ship in the fleet. The ship must be inside the board.
+     * The test is a single intersection between the cells of the ship and
+     * the halo of the whole fleet.
      *
      * @param s the ship to test
      * @return {@code true} if there is collision risk, {@code false} otherwise
      */
     private boolean colisionRisk(IShip s) {
-        for (int i = 0; i < ships.size(); i++) {
-            if (ships.get(i).tooCloseTo(s))
-                return true;
-        }
-        return false;
+        return Bitboard.intersects(halo, cellsOf(s));
+    }
+
+    /**
+     * Returns the cells occupied by a ship that lies inside the board.
+     *
+     * @param s the ship
+     * @return the mask of the occupied cells
+     */
+    private static long[] cellsOf(IShip s) {
+        return s instanceof Ship ? ((Ship) s).getCellMask() : Bitboard.of(s.getPositions());
+    }
+
+    /**
+     * Returns the halo of a ship that lies inside the board.
+     *
+     * @param s the ship
+     * @return the mask of the occupied cells and all cells touching them
+     */
+    private static long[] haloOf(IShip s) {
+        return s instanceof Ship ? ((Ship) s).getHaloMask() : BoardGeometry.halo(Bitboard.of(s.getPositions()));
     }
 
     /**
@@ -149,13 +344,19 @@ public class Fleet implements IFleet {
      * </ul>
      */
     public void printStatus() {
-        printAllShips();
-        printFloatingShips();
-        printShipsByCategory("Galeao");
-        printShipsByCategory("Fragata");
-        printShipsByCategory("Nau");
-        printShipsByCategory("Caravela");
-        printShipsByCategory("Barca");
+        printStatus(System.out);
+    }
+
+    /**
+     * Prints the full status of the fleet to a stream, as {@link #printStatus()}.
+     *
+     * @param out the stream to print to
+     */
+    public void printStatus(PrintStream out) {
+        printShips(ships, out);
+        printShips(getFloatingShips(), out);
+        for (ShipKind kind : ShipKind.values())
+            printShips(getShipsLike(kind), out);
     }
 
     /**
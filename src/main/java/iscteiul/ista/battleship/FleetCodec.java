@@ -0,0 +1,329 @@
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact canonical encoding of fleet layouts, for storing, hashing and
+ * deduplicating millions of them.
+ *
+ * <p>Each ship is encoded in 16 bits as {@code kind << 9 | bearing << 7 | cell},
+ * using the kind index of the {@link PlacementIndex}, the {@link Compass}
+ * ordinal and the cell index of the starting position (see {@link Bitboard}).
+ * Ships covering the same cells are always encoded with the same bearing and
+ * starting position, and the codes are sorted, so two fleets with the same
+ * layout have the same encoding whatever the order or bearing their ships
+ * were created with. The sorted codes are packed four per {@code long},
+ * the first ship in the lowest bits, into {@value #WORDS} words; unused
+ * fields hold {@code 0xFFFF}.</p>
+ *
+ * <p>{@link #canonicalize} additionally maps a layout to the same encoding
+ * as its rotations and reflections, so that fleets equal up to a symmetry of
+ * the board are treated as duplicates.</p>
+ */
+public final class FleetCodec {
+
+    /** Number of {@code long} words in an encoded fleet. */
+    public static final int WORDS = (IFleet.FLEET_SIZE + 3) / 4;
+
+    /** Number of symmetries of the square board, including the identity. */
+    public static final int SYMMETRIES = 8;
+
+    /** Value of an unused ship field. */
+    private static final int EMPTY = 0xFFFF;
+
+    /** Image of each placement under each symmetry, {@code SYMMETRIES} entries per placement. */
+    private static final int[] IMAGES;
+
+    static {
+        PlacementIndex index = PlacementIndex.getInstance();
+        IMAGES = new int[index.size() * SYMMETRIES];
+        long[] mask = Bitboard.newMask();
+        for (int p = 0; p < index.size(); p++)
+            for (int s = 0; s < SYMMETRIES; s++) {
+                Bitboard.clearAll(mask);
+                for (int cell : index.cellsOf(p))
+                    Bitboard.set(mask, transform(s, cell));
+                IMAGES[p * SYMMETRIES + s] = find(index, index.getKind(p), mask);
+            }
+    }
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private FleetCodec() {
+    }
+
+    /**
+     * Encodes a fleet.
+     *
+     * @param fleet the fleet to encode
+     * @return the {@value #WORDS} words of the encoding
+     * @throws IllegalArgumentException if the fleet holds a ship of unknown kind or outside the board
+     */
+    public static long[] encode(IFleet fleet) {
+        long[] code = new long[WORDS];
+        encode(fleet, code, 0);
+        return code;
+    }
+
+    /**
+     * Encodes a fleet into an existing array.
+     *
+     * @param fleet the fleet to encode
+     * @param out the destination
+     * @param offset the index of the first word to write
+     * @throws IllegalArgumentException if the fleet holds a ship of unknown kind or outside the board
+     */
+    public static void encode(IFleet fleet, long[] out, int offset) {
+        assert fleet != null;
+
+        PlacementIndex index = PlacementIndex.getInstance();
+        List<IShip> ships = fleet.getShips();
+        int[] placements = new int[ships.size()];
+        for (int i = 0; i < placements.length; i++) {
+            IShip s = ships.get(i);
+            int kind = PlacementIndex.kindOf(s);
+            IPosition pos = s.getPosition();
+            placements[i] = kind < 0 ? -1 : index.placementOf(kind, s.getBearing(), pos.getRow(), pos.getColumn());
+            if (placements[i] < 0)
+                throw new IllegalArgumentException("ERROR! ship cannot be encoded: " + s);
+        }
+        encode(placements, placements.length, out, offset);
+    }
+
+    /**
+     * Encodes a layout given as placement ids, such as those produced by
+     * {@link FleetGenerator#randomLayout}. Does not allocate.
+     *
+     * @param placements the placement id of each ship
+     * @param count the number of ships
+     * @param out the destination
+     * @param offset the index of the first word to write
+     */
+    public static void encode(int[] placements, int count, long[] out, int offset) {
+        assert count <= IFleet.FLEET_SIZE;
+
+        PlacementIndex index = PlacementIndex.getInstance();
+        Arrays.fill(out, offset, offset + WORDS, -1L);
+        for (int i = 0; i < count; i++)
+            insert(out, offset, i, shipCode(index, placements[i]));
+    }
+
+    /**
+     * Rebuilds the fleet of an encoding.
+     *
+     * @param code the encoding
+     * @param offset the index of its first word
+     * @return a new fleet with the encoded layout and no hits
+     * @throws IllegalArgumentException if the encoding is not a valid fleet
+     */
+    public static Fleet decode(long[] code, int offset) {
+        PlacementIndex index = PlacementIndex.getInstance();
+        int[] placements = new int[4 * WORDS];
+        int count = placements(code, offset, placements);
+        Fleet fleet = new Fleet();
+        for (int i = 0; i < count; i++)
+            if (!fleet.addShip(index.toShip(placements[i])))
+                throw new IllegalArgumentException("ERROR! invalid fleet encoding");
+        return fleet;
+    }
+
+    /**
+     * Decodes the placement ids of the ships of an encoding, without creating
+     * any object, for instance to feed {@link GameArena#allocate(int[], int)}.
+     *
+     * @param code the encoding
+     * @param offset the index of its first word
+     * @param out receives the placement ids, room for {@code 4 * WORDS} of them
+     * @return the number of ships
+     * @throws IllegalArgumentException if a ship code is not a valid placement
+     */
+    public static int placements(long[] code, int offset, int[] out) {
+        PlacementIndex index = PlacementIndex.getInstance();
+        Compass[] bearings = Compass.values();
+        int count = 0;
+        for (int i = 0; i < 4 * WORDS; i++) {
+            int ship = field(code, offset, i);
+            if (ship == EMPTY)
+                break;
+            int kind = ship >>> 9;
+            int cell = ship & 0x7F;
+            int p = kind < index.getKindCount() && cell < Bitboard.CELLS
+                    ? index.placementOf(kind, bearings[(ship >>> 7) & 3], Bitboard.rowOf(cell), Bitboard.columnOf(cell))
+                    : -1;
+            if (p < 0)
+                throw new IllegalArgumentException("ERROR! invalid fleet encoding");
+            out[count++] = p;
+        }
+        return count;
+    }
+
+    /**
+     * Maps an encoding to the smallest encoding among the images of its
+     * layout under the {@value #SYMMETRIES} symmetries of the board, so that
+     * layouts equal up to a rotation or reflection share one encoding.
+     *
+     * @param code the encoding
+     * @param offset the index of its first word
+     * @param out the destination, which may be the same array range as the source
+     * @param outOffset the index of the first word to write
+     */
+    public static void canonicalize(long[] code, int offset, long[] out, int outOffset) {
+        int[] placements = new int[4 * WORDS];
+        int count = placements(code, offset, placements);
+
+        long[] best = Arrays.copyOfRange(code, offset, offset + WORDS);
+        long[] image = new long[WORDS];
+        int[] moved = new int[count];
+        for (int s = 1; s < SYMMETRIES; s++) {
+            for (int i = 0; i < count; i++)
+                moved[i] = IMAGES[placements[i] * SYMMETRIES + s];
+            encode(moved, count, image, 0);
+            if (compare(image, 0, best, 0) < 0)
+                System.arraycopy(image, 0, best, 0, WORDS);
+        }
+        System.arraycopy(best, 0, out, outOffset, WORDS);
+    }
+
+    /**
+     * Computes a 64-bit hash of an encoding, with good dispersion in every bit.
+     *
+     * @param code the encoding
+     * @param offset the index of its first word
+     * @return the hash
+     */
+    public static long hash(long[] code, int offset) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int w = 0; w < WORDS; w++)
+            h = mix(h ^ code[offset + w]) + 0x9E3779B97F4A7C15L;
+        return mix(h);
+    }
+
+    /**
+     * Compares two encodings, word by word as unsigned numbers.
+     *
+     * @param a the first array
+     * @param aOffset the index of the first encoding
+     * @param b the second array
+     * @param bOffset the index of the second encoding
+     * @return a negative number, zero or a positive number as the first
+     *         encoding is smaller than, equal to or greater than the second
+     */
+    public static int compare(long[] a, int aOffset, long[] b, int bOffset) {
+        for (int w = 0; w < WORDS; w++) {
+            int c = Long.compareUnsigned(a[aOffset + w], b[bOffset + w]);
+            if (c != 0)
+                return c;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the 16-bit code of the ship in a placement.
+     *
+     * @param index the placement index
+     * @param p the placement id
+     * @return the ship code
+     */
+    private static int shipCode(PlacementIndex index, int p) {
+        return index.getKind(p) << 9 | index.getBearing(p).ordinal() << 7
+                | Bitboard.cell(index.getRow(p), index.getColumn(p));
+    }
+
+    /**
+     * Inserts a ship code into the sorted fields of an encoding holding
+     * {@code n} codes.
+     *
+     * @param code the encoding
+     * @param offset the index of its first word
+     * @param n the number of codes already present
+     * @param ship the code to insert
+     */
+    private static void insert(long[] code, int offset, int n, int ship) {
+        int i = n;
+        while (i > 0 && field(code, offset, i - 1) > ship) {
+            setField(code, offset, i, field(code, offset, i - 1));
+            i--;
+        }
+        setField(code, offset, i, ship);
+    }
+
+    /**
+     * Reads a 16-bit field of an encoding.
+     *
+     * @param code the encoding
+     * @param offset the index of its first word
+     * @param i the field index
+     * @return the field value
+     */
+    private static int field(long[] code, int offset, int i) {
+        return (int) (code[offset + (i >>> 2)] >>> ((i & 3) << 4)) & 0xFFFF;
+    }
+
+    /**
+     * Writes a 16-bit field of an encoding.
+     *
+     * @param code the encoding
+     * @param offset the index of its first word
+     * @param i the field index
+     * @param value the field value
+     */
+    private static void setField(long[] code, int offset, int i, int value) {
+        int shift = (i & 3) << 4;
+        int w = offset + (i >>> 2);
+        code[w] = (code[w] & ~(0xFFFFL << shift)) | ((long) value << shift);
+    }
+
+    /**
+     * Applies a symmetry of the board to a cell.
+     *
+     * @param s the symmetry, from {@code 0} (identity) to {@code SYMMETRIES - 1}
+     * @param cell the cell index
+     * @return the index of the image cell
+     */
+    private static int transform(int s, int cell) {
+        int n = IFleet.BOARD_SIZE - 1;
+        int r = Bitboard.rowOf(cell);
+        int c = Bitboard.columnOf(cell);
+        switch (s) {
+            case 0: return Bitboard.cell(r, c);
+            case 1: return Bitboard.cell(c, n - r);
+            case 2: return Bitboard.cell(n - r, n - c);
+            case 3: return Bitboard.cell(n - c, r);
+            case 4: return Bitboard.cell(r, n - c);
+            case 5: return Bitboard.cell(n - r, c);
+            case 6: return Bitboard.cell(c, r);
+            default: return Bitboard.cell(n - c, n - r);
+        }
+    }
+
+    /**
+     * Finds the placement of a kind covering exactly the cells of a mask.
+     *
+     * @param index the placement index
+     * @param kind the kind index
+     * @param mask the cells
+     * @return the placement id
+     * @throws IllegalStateException if no placement matches, i.e. the kind
+     *                               has a shape that is not symmetric
+     */
+    private static int find(PlacementIndex index, int kind, long[] mask) {
+        for (int q = index.firstOf(kind); q < index.endOf(kind); q++)
+            if (index.isContainedIn(q, mask) && index.coversAll(q, mask))
+                return q;
+        throw new IllegalStateException("ERROR! ship shape has no symmetric placement");
+    }
+
+    /**
+     * Finalizer of the SplitMix64 generator, a fast bijective bit mixer.
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,27 @@
+package iscteiul.ista.battleship;
+
+/**
+ * Result codes of {@link FleetValidator}, describing why a fleet layout was rejected.
+ */
+public enum FleetError {
+    /** The layout describes a valid, complete fleet. */
+    NONE,
+    /** The text is malformed, e.g. a coordinate is not a number or a field is missing. */
+    SYNTAX,
+    /** A ship kind is not one of those accepted by {@link Ship#buildShip}. */
+    UNKNOWN_KIND,
+    /** A bearing is not one of 'n', 's', 'e' or 'o'. */
+    INVALID_BEARING,
+    /** A ship does not lie entirely inside the board. */
+    OUTSIDE_BOARD,
+    /** A ship occupies a cell already taken by another ship. */
+    OVERLAP,
+    /** A ship touches another ship, horizontally, vertically or diagonally. */
+    TOO_CLOSE,
+    /** The layout has more ships of some kind than a fleet allows. */
+    WRONG_COMPOSITION,
+    /** The layout has more than {@link IFleet#FLEET_SIZE} ships. */
+    TOO_MANY_SHIPS,
+    /** The layout has fewer than {@link IFleet#FLEET_SIZE} ships. */
+    TOO_FEW_SHIPS
+}
@@ -0,0 +1,87 @@
+package iscteiul.ista.battleship;
+
+import java.util.Random;
+
+/**
+ * Generates random, complete fleets that respect the placement rules.
+ *
+ * <p>Ships are placed from the largest to the smallest, each in a placement
+ * chosen at random among those of the {@link PlacementIndex} that do not
+ * touch the ships already placed. If some ship cannot be placed, generation
+ * starts over. The same seed always produces the same fleet, which allows
+ * simulations to replay identical fleets.</p>
+ */
+public class FleetGenerator {
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private FleetGenerator() {
+    }
+
+    /**
+     * Generates a random fleet.
+     *
+     * @param rnd the source of randomness
+     * @return a fleet with the full composition of ships
+     */
+    public static Fleet randomFleet(Random rnd) {
+        assert rnd != null;
+
+        return fleetOf(randomLayout(rnd));
+    }
+
+    /**
+     * Builds the fleet of a layout, such as those produced by
+     * {@link #randomLayout} or the {@link PlacementSolver}.
+     *
+     * @param layout the placement ids of the ships
+     * @return a fleet with the ships of the layout
+     * @throws IllegalArgumentException if the ships of the layout cannot all be added to a fleet
+     */
+    public static Fleet fleetOf(int[] layout) {
+        assert layout != null;
+
+        PlacementIndex index = PlacementIndex.getInstance();
+        Fleet fleet = new Fleet();
+        for (int p : layout)
+            if (!fleet.addShip(index.toShip(p)))
+                throw new IllegalArgumentException("ERROR! invalid layout");
+        return fleet;
+    }
+
+    /**
+     * Generates the placements of a random fleet, without building any ship.
+     *
+     * @param rnd the source of randomness
+     * @return the placement ids of the ships, {@link IFleet#FLEET_SIZE} of them
+     */
+    public static int[] randomLayout(Random rnd) {
+        assert rnd != null;
+
+        PlacementIndex index = PlacementIndex.getInstance();
+        int[] layout = new int[IFleet.FLEET_SIZE];
+        int[] candidates = new int[index.size()];
+        long[] blocked = Bitboard.newMask();
+
+        while (true) {
+            Bitboard.clearAll(blocked);
+            int ships = 0;
+            boolean failed = false;
+            for (int kind = 0; kind < index.getKindCount() && !failed; kind++) {
+                for (int i = 0; i < ShipKind.get(kind).getCount() && !failed; i++) {
+                    int n = index.compatible(kind, blocked, null, candidates);
+                    if (n == 0) {
+                        failed = true;
+                    } else {
+                        int p = candidates[rnd.nextInt(n)];
+                        index.orHalo(p, blocked);
+                        layout[ships++] = p;
+                    }
+                }
+            }
+            if (!failed)
+                return layout;
+        }
+    }
+}
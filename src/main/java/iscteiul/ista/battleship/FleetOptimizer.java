@@ -0,0 +1,555 @@
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+/**
+ * Searches for fleet layouts that survive as long as possible against a
+ * given shooting strategy, to generate hard fleets for ranked play.
+ *
+ * <p>The score of a layout is the average number of shots the shooter needs
+ * to sink the whole fleet over a fixed set of simulated games. The games use
+ * common random numbers: game {@code g} always uses a shooter created from
+ * the same seed, so that two layouts are compared on the same games and
+ * small differences between them are not drowned in noise. A game the
+ * shooter does not finish within {@value #MAX_SHOTS} shots counts as
+ * {@value #MAX_SHOTS}.</p>
+ *
+ * <p>The search is a simulated annealing over layouts given as placement ids
+ * of the {@link PlacementIndex}. Each step moves one ship: it shifts it by
+ * one cell, turns it to another {@link Compass} bearing or moves it anywhere
+ * on the board, keeping the placement rules. Better layouts are always
+ * accepted and worse ones with a probability that decreases with the
+ * temperature, which is lowered geometrically during the search. The best
+ * distinct layouts seen are returned, ranked.</p>
+ *
+ * <p>Games are simulated in parallel on a {@link ForkJoinPool}, on the
+ * off-heap games of a {@link GameArena}. When the shooter is not
+ * {@code adaptive}, i.e. the order of its shots does not depend on their
+ * outcome (such as the {@link RandomPlayer}), the shot order of every game is
+ * recorded once, and moving a ship only re-scores that ship: its new sink
+ * time in each game is the latest rank of its cells, and the game ends when
+ * the last ship sinks. Adaptive shooters replay every game for each move.</p>
+ */
+public class FleetOptimizer {
+
+    /** Maximum number of shots simulated per game. */
+    public static final int MAX_SHOTS = 4 * Bitboard.CELLS;
+
+    /** Number of games below which a task is not split further. */
+    private static final int SPLIT_THRESHOLD = 64;
+
+    /** The bearings a ship can be turned to. */
+    private static final Compass[] BEARINGS = {Compass.NORTH, Compass.SOUTH, Compass.EAST, Compass.WEST};
+
+    /**
+     * A layout found by the optimizer, with its score.
+     */
+    public static final class Result {
+
+        /** The placement ids of the ships. */
+        private final int[] layout;
+
+        /** The average number of shots needed to sink the fleet. */
+        private final double score;
+
+        /**
+         * Creates a result.
+         *
+         * @param layout the placement ids of the ships
+         * @param score the score of the layout
+         */
+        Result(int[] layout, double score) {
+            this.layout = layout;
+            this.score = score;
+        }
+
+        /**
+         * Returns the layout.
+         *
+         * @return a copy of the placement ids of the ships
+         */
+        public int[] getLayout() {
+            return layout.clone();
+        }
+
+        /**
+         * Returns the score of the layout.
+         *
+         * @return the average number of shots the shooter needs to sink the fleet
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Builds the fleet of the layout.
+         *
+         * @return a new fleet
+         */
+        public Fleet toFleet() {
+            return FleetGenerator.fleetOf(layout);
+        }
+
+        /**
+         * Writes the layout in the text format read by {@link Tasks#buildFleet},
+         * one ship per line: kind, row, column and bearing.
+         *
+         * @return the text of the ships
+         */
+        public String toCommands() {
+            PlacementIndex index = PlacementIndex.getInstance();
+            StringBuilder sb = new StringBuilder();
+            for (int p : layout)
+                sb.append(ShipKind.get(index.getKind(p)).getId()).append(' ')
+                        .append(index.getRow(p)).append(' ')
+                        .append(index.getColumn(p)).append(' ')
+                        .append(index.getBearing(p).getDirection()).append('\n');
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Computes the score of one game.
+     */
+    @FunctionalInterface
+    private interface GameScorer {
+
+        /**
+         * Computes the score of a game.
+         *
+         * @param g the game number
+         * @return the number of shots needed to sink the fleet in that game
+         */
+        int score(int g);
+    }
+
+    /** The placement index used to move ships. */
+    private final PlacementIndex index;
+
+    /** Creates a shooter from a seed. */
+    private final LongFunction<IPlayer> shooter;
+
+    /** Whether the shots of the shooter depend on their outcome. */
+    private final boolean adaptive;
+
+    /** Number of simulated games per layout. */
+    private final int games;
+
+    /** The base seed of the shooters. */
+    private final long seed;
+
+    /** The pool running the games. */
+    private final ForkJoinPool pool;
+
+    /** The games of adaptive shooters. */
+    private final GameArena arena;
+
+    /** For a shooter that is not adaptive, the index of the first shot at each cell, by game. */
+    private final short[] rank;
+
+    /** Temperature at the start of the search, in shots. */
+    private double startTemperature = 2.0;
+
+    /** Temperature at the end of the search, in shots. */
+    private double endTemperature = 0.02;
+
+    /**
+     * Creates an optimizer running on the common fork/join pool.
+     *
+     * @param shooter creates the shooter of each game from a seed
+     * @param adaptive whether the shots of the shooter depend on their outcome
+     * @param games the number of simulated games per layout
+     * @param seed the base seed of the shooters
+     */
+    public FleetOptimizer(LongFunction<IPlayer> shooter, boolean adaptive, int games, long seed) {
+        this(shooter, adaptive, games, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an optimizer.
+     *
+     * @param shooter creates the shooter of each game from a seed
+     * @param adaptive whether the shots of the shooter depend on their outcome
+     * @param games the number of simulated games per layout
+     * @param seed the base seed of the shooters
+     * @param pool the pool running the games
+     */
+    public FleetOptimizer(LongFunction<IPlayer> shooter, boolean adaptive, int games, long seed, ForkJoinPool pool) {
+        assert shooter != null && games > 0 && pool != null;
+
+        this.index = PlacementIndex.getInstance();
+        this.shooter = shooter;
+        this.adaptive = adaptive;
+        this.games = games;
+        this.seed = seed;
+        this.pool = pool;
+        this.arena = adaptive ? new GameArena(8) : null;
+        this.rank = adaptive ? null : new short[games * Bitboard.CELLS];
+        if (!adaptive)
+            sum(this::recordShots);
+    }
+
+    /**
+     * Sets the temperatures of the search, in shots: a move making the
+     * layout worse by {@code t} shots is accepted with probability
+     * {@code exp(-t / temperature)}.
+     *
+     * @param start the temperature at the start of the search
+     * @param end the temperature at the end of the search
+     */
+    public void setTemperature(double start, double end) {
+        if (!(start >= end && end > 0))
+            throw new IllegalArgumentException("ERROR! invalid temperatures");
+        startTemperature = start;
+        endTemperature = end;
+    }
+
+    /**
+     * Computes the score of a layout.
+     *
+     * @param layout the placement ids of the ships
+     * @return the average number of shots the shooter needs to sink the fleet
+     */
+    public double score(int[] layout) {
+        assert layout != null;
+
+        if (adaptive)
+            return (double) sum(g -> play(layout, g)) / games;
+        return (double) sum(g -> {
+            int last = 0;
+            for (int p : layout)
+                last = Math.max(last, sinkRank(g, p));
+            return last + 1;
+        }) / games;
+    }
+
+    /**
+     * Optimizes a random starting layout.
+     *
+     * @param iterations the number of moves tried
+     * @param keep the number of layouts to return
+     * @param rnd the source of randomness of the search
+     * @return the best distinct layouts seen, best first
+     */
+    public List<Result> optimize(int iterations, int keep, Random rnd) {
+        return optimize(FleetGenerator.randomLayout(rnd), iterations, keep, rnd);
+    }
+
+    /**
+     * Optimizes a layout.
+     *
+     * @param start the placement ids of the ships of the starting layout
+     * @param iterations the number of moves tried
+     * @param keep the number of layouts to return
+     * @param rnd the source of randomness of the search
+     * @return the best distinct layouts seen, best first
+     */
+    public List<Result> optimize(int[] start, int iterations, int keep, Random rnd) {
+        assert start != null && iterations > 0 && keep > 0 && rnd != null;
+
+        int[] layout = start.clone();
+        int n = layout.length;
+        short[] sinks = null;
+        short[] proposed = null;
+        long total;
+        if (adaptive) {
+            total = sum(g -> play(layout, g));
+        } else {
+            short[] s = new short[games * n];
+            sinks = s;
+            proposed = new short[games];
+            total = sum(g -> {
+                int last = 0;
+                for (int i = 0; i < n; i++) {
+                    s[g * n + i] = (short) sinkRank(g, layout[i]);
+                    last = Math.max(last, s[g * n + i]);
+                }
+                return last + 1;
+            });
+        }
+
+        List<Result> best = new ArrayList<>();
+        FleetSet seen = new FleetSet(4 * keep);
+        long[] code = new long[FleetCodec.WORDS];
+        offer(best, seen, code, layout, (double) total / games, keep);
+
+        long[] others = Bitboard.newMask();
+        double ratio = endTemperature / startTemperature;
+        for (int it = 0; it < iterations; it++) {
+            double temperature = startTemperature * Math.pow(ratio, (double) it / Math.max(1, iterations - 1));
+            int ship = rnd.nextInt(n);
+            Bitboard.clearAll(others);
+            for (int i = 0; i < n; i++)
+                if (i != ship)
+                    index.orMask(layout[i], others);
+            int p = propose(layout[ship], others, rnd);
+            if (p < 0)
+                continue;
+
+            long candidate;
+            if (adaptive) {
+                int[] moved = layout.clone();
+                moved[ship] = p;
+                candidate = sum(g -> play(moved, g));
+            } else {
+                candidate = rescore(sinks, proposed, n, ship, p);
+            }
+
+            double delta = (double) (candidate - total) / games;
+            if (delta >= 0 || rnd.nextDouble() < Math.exp(delta / temperature)) {
+                layout[ship] = p;
+                total = candidate;
+                if (!adaptive)
+                    for (int g = 0; g < games; g++)
+                        sinks[g * n + ship] = proposed[g];
+                offer(best, seen, code, layout, (double) total / games, keep);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Writes ranked layouts in the text format read by {@link Tasks#buildFleet},
+     * best first, separated by blank lines.
+     *
+     * @param results the layouts
+     * @param out the destination of the text
+     * @throws IOException if writing fails
+     */
+    public static void write(List<Result> results, Appendable out) throws IOException {
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0)
+                out.append('\n');
+            out.append(results.get(i).toCommands());
+        }
+    }
+
+    /**
+     * Proposes a new placement for a ship, of the same kind, by shifting it
+     * one cell, turning it or moving it anywhere on the board.
+     *
+     * @param p the current placement of the ship
+     * @param others the cells of the other ships
+     * @param rnd the source of randomness
+     * @return the new placement, or {@code -1} if the move is not allowed
+     */
+    private int propose(int p, long[] others, Random rnd) {
+        int kind = index.getKind(p);
+        int row = index.getRow(p);
+        int column = index.getColumn(p);
+        Compass bearing = index.getBearing(p);
+        int q;
+        switch (rnd.nextInt(3)) {
+            case 0:
+                int direction = rnd.nextInt(4);
+                row += direction == 0 ? -1 : direction == 1 ? 1 : 0;
+                column += direction == 2 ? -1 : direction == 3 ? 1 : 0;
+                q = index.placementOf(kind, bearing, row, column);
+                break;
+            case 1:
+                q = index.placementOf(kind, BEARINGS[rnd.nextInt(BEARINGS.length)], row, column);
+                break;
+            default:
+                q = index.firstOf(kind) + rnd.nextInt(index.endOf(kind) - index.firstOf(kind));
+        }
+        return q < 0 || q == p || index.haloIntersects(q, others) ? -1 : q;
+    }
+
+    /**
+     * Re-scores a move for a shooter that is not adaptive, from the sink
+     * times of the other ships.
+     *
+     * @param sinks the rank of the shot sinking each ship, by game
+     * @param proposed receives the rank of the shot sinking the moved ship, by game
+     * @param n the number of ships
+     * @param ship the index of the moved ship
+     * @param p the new placement of the ship
+     * @return the total score of the games
+     */
+    private long rescore(short[] sinks, short[] proposed, int n, int ship, int p) {
+        return sum(g -> {
+            int moved = sinkRank(g, p);
+            proposed[g] = (short) moved;
+            int last = moved;
+            for (int i = 0; i < n; i++)
+                if (i != ship)
+                    last = Math.max(last, sinks[g * n + i]);
+            return last + 1;
+        });
+    }
+
+    /**
+     * Returns the rank of the shot sinking a ship in a game of a shooter
+     * that is not adaptive.
+     *
+     * @param g the game number
+     * @param p the placement of the ship
+     * @return the rank of the last shot at a cell of the ship
+     */
+    private int sinkRank(int g, int p) {
+        int last = 0;
+        for (int cell : index.cellsOf(p))
+            last = Math.max(last, rank[g * Bitboard.CELLS + cell]);
+        return last;
+    }
+
+    /**
+     * Records the rank of the first shot at each cell in a game of a
+     * shooter that is not adaptive. Cells never shot at get the last rank.
+     *
+     * @param g the game number
+     * @return always {@code 0}
+     */
+    private int recordShots(int g) {
+        int base = g * Bitboard.CELLS;
+        Arrays.fill(rank, base, base + Bitboard.CELLS, (short) (MAX_SHOTS - 1));
+        long[] shot = Bitboard.newMask();
+        IPlayer player = shooter.apply(mix(seed, g));
+        int covered = 0;
+        for (int k = 0; k < MAX_SHOTS && covered < Bitboard.CELLS; k++) {
+            IPosition pos = player.nextShot();
+            if (pos == null)
+                break;
+            if (Bitboard.isInside(pos.getRow(), pos.getColumn())) {
+                int cell = Bitboard.cell(pos.getRow(), pos.getColumn());
+                if (!Bitboard.get(shot, cell)) {
+                    Bitboard.set(shot, cell);
+                    rank[base + cell] = (short) k;
+                    covered++;
+                }
+            }
+            player.shotResult(pos, false, null);
+        }
+        return 0;
+    }
+
+    /**
+     * Plays one game of the shooter against a layout.
+     *
+     * @param layout the placement ids of the ships
+     * @param g the game number
+     * @return the number of shots needed to sink the fleet, at most {@value #MAX_SHOTS}
+     */
+    private int play(int[] layout, int g) {
+        IPlayer player = shooter.apply(mix(seed, g));
+        int slot = arena.allocate(layout, layout.length);
+        try {
+            for (int shots = 1; shots < MAX_SHOTS; shots++) {
+                IPosition pos = player.nextShot();
+                if (pos == null)
+                    break;
+                int outcome = arena.fire(slot, pos.getRow(), pos.getColumn());
+                if (ShotOutcome.isGameOver(outcome))
+                    return shots;
+                IShip sunk = ShotOutcome.isSunk(outcome) ? index.toShip(layout[ShotOutcome.ship(outcome)]) : null;
+                player.shotResult(pos, ShotOutcome.isHit(outcome), sunk);
+            }
+            return MAX_SHOTS;
+        } finally {
+            arena.release(slot);
+        }
+    }
+
+    /**
+     * Adds a layout to the ranked list if it is among the best distinct
+     * layouts seen so far.
+     *
+     * @param best the ranked list, best first
+     * @param seen the encodings of the layouts already offered
+     * @param code scratch array for the encoding
+     * @param layout the layout
+     * @param score its score
+     * @param keep the maximum size of the list
+     */
+    private static void offer(List<Result> best, FleetSet seen, long[] code, int[] layout, double score, int keep) {
+        if (best.size() == keep && score <= best.get(keep - 1).getScore())
+            return;
+        FleetCodec.encode(layout, layout.length, code, 0);
+        if (!seen.add(code, 0))
+            return;
+        int i = best.size();
+        while (i > 0 && best.get(i - 1).getScore() < score)
+            i--;
+        best.add(i, new Result(layout.clone(), score));
+        if (best.size() > keep)
+            best.remove(keep);
+    }
+
+    /**
+     * Sums the scores of all games, in parallel.
+     *
+     * @param scorer computes the score of one game
+     * @return the total score
+     */
+    private long sum(GameScorer scorer) {
+        return pool.invoke(new SumTask(scorer, 0, games));
+    }
+
+    /**
+     * Derives a well-distributed seed from a base seed and a counter.
+     *
+     * @param base the base seed
+     * @param n the counter
+     * @return the derived seed
+     */
+    private static long mix(long base, long n) {
+        long z = base + n * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Task summing the scores of a range of games, split in halves until
+     * small enough.
+     */
+    private static final class SumTask extends RecursiveTask<Long> {
+
+        /** Serialization version, required by {@link RecursiveTask}. */
+        private static final long serialVersionUID = 1L;
+
+        /** Computes the score of one game. */
+        private final transient GameScorer scorer;
+
+        /** The first game of the range. */
+        private final int from;
+
+        /** The exclusive end of the range. */
+        private final int to;
+
+        /**
+         * Creates a task for a range of games.
+         *
+         * @param scorer computes the score of one game
+         * @param from the first game of the range
+         * @param to the exclusive end of the range
+         */
+        SumTask(GameScorer scorer, int from, int to) {
+            this.scorer = scorer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                long total = 0;
+                for (int g = from; g < to; g++)
+                    total += scorer.score(g);
+                return total;
+            }
+            int mid = (from + to) >>> 1;
+            SumTask left = new SumTask(scorer, from, mid);
+            left.fork();
+            long right = new SumTask(scorer, mid, to).compute();
+            return left.join() + right;
+        }
+    }
+}
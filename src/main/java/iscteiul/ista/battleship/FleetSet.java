@@ -0,0 +1,102 @@
+package iscteiul.ista.battleship;
+
+/**
+ * Set of fleet layouts encoded by {@link FleetCodec}, stored in a single
+ * primitive array.
+ *
+ * <p>The set uses open addressing with linear probing over a table of
+ * {@link FleetCodec#WORDS} words per entry, indexed by
+ * {@link FleetCodec#hash}. A first word equal to zero marks an empty entry:
+ * it would require four equal ship codes, which no valid fleet has. The
+ * table doubles when it becomes three quarters full. Not thread-safe.</p>
+ */
+public class FleetSet {
+
+    /** Number of words per entry. */
+    private static final int WORDS = FleetCodec.WORDS;
+
+    /** The entries, {@code WORDS} words each. */
+    private long[] table;
+
+    /** Number of entries of the table minus one; the number of entries is a power of two. */
+    private int mask;
+
+    /** Number of layouts in the set. */
+    private int size;
+
+    /**
+     * Creates an empty set.
+     *
+     * @param expected the number of layouts expected, used to size the table
+     */
+    public FleetSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 4 / 3) - 1) << 1;
+        table = new long[capacity * WORDS];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a layout to the set.
+     *
+     * @param code the array holding the encoding
+     * @param offset the index of its first word
+     * @return {@code true} if the layout was not in the set yet
+     */
+    public boolean add(long[] code, int offset) {
+        assert code[offset] != 0L;
+
+        int e = find(code, offset);
+        if (table[e * WORDS] != 0L)
+            return false;
+        System.arraycopy(code, offset, table, e * WORDS, WORDS);
+        if (++size > (mask + 1) / 4 * 3)
+            grow();
+        return true;
+    }
+
+    /**
+     * Checks whether a layout is in the set.
+     *
+     * @param code the array holding the encoding
+     * @param offset the index of its first word
+     * @return {@code true} if the layout is in the set
+     */
+    public boolean contains(long[] code, int offset) {
+        return table[find(code, offset) * WORDS] != 0L;
+    }
+
+    /**
+     * Returns the number of layouts in the set.
+     *
+     * @return the size of the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the entry holding a layout, or the empty entry where it belongs.
+     *
+     * @param code the array holding the encoding
+     * @param offset the index of its first word
+     * @return the entry index
+     */
+    private int find(long[] code, int offset) {
+        int e = (int) FleetCodec.hash(code, offset) & mask;
+        while (table[e * WORDS] != 0L && FleetCodec.compare(table, e * WORDS, code, offset) != 0)
+            e = (e + 1) & mask;
+        return e;
+    }
+
+    /**
+     * Doubles the table and reinserts every layout.
+     */
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        mask = 2 * mask + 1;
+        for (int i = 0; i < old.length; i += WORDS)
+            if (old[i] != 0L)
+                System.arraycopy(old, i, table, find(old, i) * WORDS, WORDS);
+    }
+}
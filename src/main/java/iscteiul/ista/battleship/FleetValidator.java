@@ -0,0 +1,176 @@
+package iscteiul.ista.battleship;
+
+/**
+ * Fast validator for fleet layouts submitted as text, in the format read by
+ * {@link Tasks#buildFleet}: a sequence of ships, each given as its kind, row,
+ * column and bearing, separated by whitespace (for example
+ * {@code "galeao 0 0 n fragata 4 0 e ..."}).
+ *
+ * <p>The layout is checked in a single pass, without building any
+ * {@link Ship} or {@link Fleet}: each ship is looked up in the
+ * {@link PlacementIndex} and tested against a bitboard of the cells already
+ * taken, so the bounds, overlap, adjacency, composition and ship count rules
+ * are all checked with a few mask operations per ship. The first problem
+ * found is reported as a {@link FleetError}, together with the position of
+ * the offending ship.</p>
+ *
+ * <p>A validator keeps reusable scratch state and creates no objects while
+ * validating; it is therefore not thread-safe, and each thread should use its
+ * own instance.</p>
+ */
+public class FleetValidator {
+
+    /** The placement index used to locate ships. */
+    private final PlacementIndex index;
+
+    /** Cells occupied by the ships read so far. */
+    private final long[] occupied;
+
+    /** Number of ships of each kind read so far. */
+    private final int[] counts;
+
+    /** The text being validated. */
+    private CharSequence text;
+
+    /** Current reading offset in the text. */
+    private int offset;
+
+    /** Start of the last token read. */
+    private int tokenStart;
+
+    /** Ship at which the last validation failed, or {@code -1}. */
+    private int errorShip;
+
+    /**
+     * Creates a validator.
+     */
+    public FleetValidator() {
+        index = PlacementIndex.getInstance();
+        occupied = Bitboard.newMask();
+        counts = new int[index.getKindCount()];
+    }
+
+    /**
+     * Validates a fleet layout.
+     *
+     * @param layout the layout text
+     * @return {@link FleetError#NONE} if the layout is a valid, complete fleet,
+     *         or the first problem found otherwise
+     */
+    public FleetError validate(CharSequence layout) {
+        assert layout != null;
+
+        text = layout;
+        offset = 0;
+        errorShip = -1;
+        Bitboard.clearAll(occupied);
+        for (int k = 0; k < counts.length; k++)
+            counts[k] = 0;
+
+        int ships = 0;
+        while (nextToken()) {
+            errorShip = ships;
+            if (ships == IFleet.FLEET_SIZE)
+                return FleetError.TOO_MANY_SHIPS;
+
+            int kind = readKind();
+            if (!nextToken())
+                return FleetError.SYNTAX;
+            int row = readInt();
+            if (row == Integer.MIN_VALUE || !nextToken())
+                return FleetError.SYNTAX;
+            int column = readInt();
+            if (column == Integer.MIN_VALUE || !nextToken())
+                return FleetError.SYNTAX;
+            Compass bearing = Compass.charToCompass(text.charAt(tokenStart));
+
+            if (kind < 0)
+                return FleetError.UNKNOWN_KIND;
+            if (bearing == Compass.UNKNOWN)
+                return FleetError.INVALID_BEARING;
+            int p = index.placementOf(kind, bearing, row, column);
+            if (p < 0)
+                return FleetError.OUTSIDE_BOARD;
+            if (index.intersects(p, occupied))
+                return FleetError.OVERLAP;
+            if (index.haloIntersects(p, occupied))
+                return FleetError.TOO_CLOSE;
+            if (++counts[kind] > ShipKind.get(kind).getCount())
+                return FleetError.WRONG_COMPOSITION;
+
+            index.orMask(p, occupied);
+            ships++;
+        }
+
+        errorShip = -1;
+        return ships < IFleet.FLEET_SIZE ? FleetError.TOO_FEW_SHIPS : FleetError.NONE;
+    }
+
+    /**
+     * Returns the position, starting at 0, of the ship that made the last
+     * validation fail.
+     *
+     * @return the index of the offending ship, or {@code -1} if the last
+     *         layout was valid or the problem concerns the fleet as a whole
+     */
+    public int getErrorShip() {
+        return errorShip;
+    }
+
+    /**
+     * Advances to the next whitespace-separated token.
+     *
+     * @return {@code true} if a token was found, {@code false} at the end of the text
+     */
+    private boolean nextToken() {
+        int n = text.length();
+        while (offset < n && Character.isWhitespace(text.charAt(offset)))
+            offset++;
+        tokenStart = offset;
+        while (offset < n && !Character.isWhitespace(text.charAt(offset)))
+            offset++;
+        return offset > tokenStart;
+    }
+
+    /**
+     * Matches the current token against the known ship kinds.
+     *
+     * @return the kind index, or {@code -1} if the token is not a known kind
+     */
+    private int readKind() {
+        int length = offset - tokenStart;
+        for (int k = 0; k < counts.length; k++) {
+            String name = ShipKind.get(k).getId();
+            if (name.length() != length)
+                continue;
+            int i = 0;
+            while (i < length && name.charAt(i) == text.charAt(tokenStart + i))
+                i++;
+            if (i == length)
+                return k;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the current token as a decimal integer.
+     *
+     * @return the value, or {@link Integer#MIN_VALUE} if the token is not a number
+     */
+    private int readInt() {
+        int i = tokenStart;
+        boolean negative = text.charAt(i) == '-';
+        if (negative || text.charAt(i) == '+')
+            i++;
+        if (i == offset || offset - i > 9)
+            return Integer.MIN_VALUE;
+        int value = 0;
+        for (; i < offset; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return Integer.MIN_VALUE;
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+}
@@ -78,10 +78,10 @@ public class Galleon extends Ship {
      */
     private void fillNorth(IPosition pos) {
         for (int i = 0; i < 3; i++) {
-            getPositions().add(new Position(pos.getRow(), pos.getColumn() + i));
+            addPosition(pos.getRow(), pos.getColumn() + i);
         }
-        getPositions().add(new Position(pos.getRow() + 1, pos.getColumn() + 1));
-        getPositions().add(new Position(pos.getRow() + 2, pos.getColumn() + 1));
+        addPosition(pos.getRow() + 1, pos.getColumn() + 1);
+        addPosition(pos.getRow() + 2, pos.getColumn() + 1);
     }
 
     /**
@@ -91,10 +91,10 @@ public class Galleon extends Ship {
      */
     private void fillSouth(IPosition pos) {
         for (int i = 0; i < 2; i++) {
-            getPositions().add(new Position(pos.getRow() + i, pos.getColumn()));
+            addPosition(pos.getRow() + i, pos.getColumn());
         }
         for (int j = 2; j < 5; j++) {
-            getPositions().add(new Position(pos.getRow() + 2, pos.getColumn() + j - 3));
+            addPosition(pos.getRow() + 2, pos.getColumn() + j - 3);
         }
     }
 
@@ -104,11 +104,11 @@ public class Galleon extends Ship {
      * @param pos the starting position
      */
     private void fillEast(IPosition pos) {
-        getPositions().add(new Position(pos.getRow(), pos.getColumn()));
+        addPosition(pos.getRow(), pos.getColumn());
         for (int i = 1; i < 4; i++) {
-            getPositions().add(new Position(pos.getRow() + 1, pos.getColumn() + i - 3));
+            addPosition(pos.getRow() + 1, pos.getColumn() + i - 3);
         }
-        getPositions().add(new Position(pos.getRow() + 2, pos.getColumn()));
+        addPosition(pos.getRow() + 2, pos.getColumn());
     }
 
     /**
@@ -117,10 +117,10 @@ public class Galleon extends Ship {
      * @param pos the starting position
      */
     private void fillWest(IPosition pos) {
-        getPositions().add(new Position(pos.getRow(), pos.getColumn()));
+        addPosition(pos.getRow(), pos.getColumn());
         for (int i = 1; i < 4; i++) {
-            getPositions().add(new Position(pos.getRow() + 1, pos.getColumn() + i - 1));
+            addPosition(pos.getRow() + 1, pos.getColumn() + i - 1);
         }
-        getPositions().add(new Position(pos.getRow() + 2, pos.getColumn()));
+        addPosition(pos.getRow() + 2, pos.getColumn());
     }
 }
\ No newline at end of file
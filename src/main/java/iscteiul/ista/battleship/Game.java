@@ -1,8 +1,15 @@
 package iscteiul.ista.battleship;
 
+import java.io.PrintStream;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import iscteiul.ista.battleship.collections.FixedBitSet;
+import iscteiul.ista.battleship.collections.IntArrayList;
+import iscteiul.ista.battleship.collections.LongArrayList;
+
 /**
  * Represents a Battleship game session.
  * <p>
@@ -13,26 +20,63 @@ import java.util.List;
  *
  * <p>This class implements the {@link IGame} interface and provides
  * the core game logic for firing at positions and updating ship states.</p>
+ *
+ * <p>Shots can be taken back with {@link #undo()} and fired again with
+ * {@link #redo()}, so that a search can try hypothetical shots on a single
+ * game. Each shot is recorded as a reversible delta of two primitives, its
+ * coordinates and its {@link ShotOutcome} code, from which the counters, the
+ * shots and the hit and sunk state of the fleet are restored. The history
+ * keeps the last {@link #DEFAULT_UNDO_LIMIT} shots unless another limit is
+ * set with {@link #setUndoLimit(int)}, so that a game flooded with invalid or
+ * repeated shots does not grow without bound; older shots are forgotten and
+ * can no longer be taken back.</p>
  */
 public class Game implements IGame {
 
+    /**
+     * Default number of shots that can be taken back: ten times the cells of
+     * the board, enough for any complete game with plenty of wasted shots.
+     */
+    public static final int DEFAULT_UNDO_LIMIT = 10 * Bitboard.CELLS;
+
     /** The fleet of ships used in this game. */
     private IFleet fleet;
 
-    /** List of all valid shots fired by the player. */
+    /** Cell index of every valid shot fired by the player, in order. */
+    private IntArrayList shotCells;
+
+    /** Cells already fired at, for constant-time detection of repeated shots. */
+    private FixedBitSet shotSet;
+
+    /** Read-only view of the valid shots as positions. */
     private List<IPosition> shots;
 
     /** Number of shots fired outside the board. */
-    private Integer countInvalidShots;
+    private int countInvalidShots;
 
     /** Number of shots fired at a position already targeted before. */
-    private Integer countRepeatedShots;
+    private int countRepeatedShots;
 
     /** Number of successful hits on ships. */
-    private Integer countHits;
+    private int countHits;
 
     /** Number of ships completely sunk. */
-    private Integer countSinks;
+    private int countSinks;
+
+    /** Coordinates of every shot fired and not undone, row in the high half and column in the low half. */
+    private LongArrayList history;
+
+    /** Outcome code of every shot in {@code history}. */
+    private IntArrayList outcomes;
+
+    /** Coordinates of the shots undone, the next one to redo last; never longer than {@code history} was. */
+    private LongArrayList undone;
+
+    /** Maximum number of shots kept in {@code history}. */
+    private int undoLimit;
+
+    /** Listeners notified of every shot, copied on each change so that firing never allocates. */
+    private GameListener[] listeners;
 
     /**
      * Creates a new game with the given fleet.
@@ -40,12 +84,64 @@ public class Game implements IGame {
      * @param fleet the fleet to be used in the game
      */
     public Game(IFleet fleet) {
-        shots = new ArrayList<>();
+        shotCells = new IntArrayList(Bitboard.CELLS);
+        shotSet = new FixedBitSet(Bitboard.CELLS);
+        shots = new AbstractList<IPosition>() {
+            @Override
+            public IPosition get(int i) {
+                int cell = shotCells.get(i);
+                return new Position(Bitboard.rowOf(cell), Bitboard.columnOf(cell));
+            }
+
+            @Override
+            public int size() {
+                return shotCells.size();
+            }
+        };
         countInvalidShots = 0;
         countRepeatedShots = 0;
+        countHits = 0;
+        countSinks = 0;
+        history = new LongArrayList(Bitboard.CELLS);
+        outcomes = new IntArrayList(Bitboard.CELLS);
+        undone = new LongArrayList();
+        undoLimit = DEFAULT_UNDO_LIMIT;
+        listeners = new GameListener[0];
         this.fleet = fleet;
     }
 
+    /**
+     * Registers a listener to be notified of the events of every shot.
+     *
+     * @param listener the listener to add
+     */
+    @Override
+    public void addListener(GameListener listener) {
+        assert listener != null;
+
+        GameListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Removes a previously registered listener. Nothing happens if the
+     * listener is not registered.
+     *
+     * @param listener the listener to remove
+     */
+    @Override
+    public void removeListener(GameListener listener) {
+        for (int i = 0; i < listeners.length; i++)
+            if (listeners[i] == listener) {
+                GameListener[] updated = new GameListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+                listeners = updated;
+                return;
+            }
+    }
+
     /**
      * Fires a shot at the given position.
      * <p>
@@ -56,43 +152,239 @@ public class Game implements IGame {
      *     <li>If the shot was already made → increments repeated shots</li>
      *     <li>If the shot hits a ship → registers hit and checks if it sinks</li>
      * </ul>
+     * <p>
+     * Each outcome is reported to the registered {@link GameListener}s.
+     * </p>
      *
      * @param pos the position to fire at
      * @return the ship that was sunk by this shot, or {@code null} if no ship was sunk
      */
     @Override
     public IShip fire(IPosition pos) {
-        if (!validShot(pos))
+        int outcome = fireAt(pos.getRow(), pos.getColumn());
+        return ShotOutcome.isSunk(outcome) ? fleet.getShips().get(ShotOutcome.ship(outcome)) : null;
+    }
+
+    /**
+     * Fires a shot at the given coordinates, as {@link #fire(IPosition)}, and
+     * reports its full outcome. Neither the game nor a fleet of {@link Ship}s
+     * create any object while handling the shot, except to grow the undo
+     * history past {@value Bitboard#CELLS} shots.
+     *
+     * @param row the row fired at
+     * @param column the column fired at
+     * @return the outcome of the shot, as a {@link ShotOutcome} code
+     */
+    @Override
+    public int fireAt(int row, int column) {
+        undone.clear();
+        int outcome = apply(row, column);
+        record((long) row << 32 | column & 0xFFFFFFFFL, outcome);
+        return outcome;
+    }
+
+    /**
+     * Takes back the last shot fired, restoring the state of the game and of
+     * its fleet before it, and reports it to the listeners with
+     * {@link GameListener#shotUndone}. The shot can be fired again with
+     * {@link #redo()}. Only the last {@link #getUndoLimit()} shots can be
+     * taken back. A game rebuilt from a {@link GameSnapshot} only remembers
+     * its valid shots, so the invalid and repeated shots fired before the
+     * snapshot cannot be taken back.
+     *
+     * @return the outcome code of the shot taken back, or {@code -1} if there is no shot to take back
+     */
+    public int undo() {
+        if (history.isEmpty())
+            return -1;
+        long shot = history.get(history.size() - 1);
+        int outcome = outcomes.get(outcomes.size() - 1);
+        int row = (int) (shot >> 32);
+        int column = (int) shot;
+        if (ShotOutcome.isHit(outcome)) {
+            IShip s = fleet.getShips().get(ShotOutcome.ship(outcome));
+            if (s instanceof Ship)
+                ((Ship) s).unshoot(row, column);
+            else
+                s.unshoot(new Position(row, column));
+            countHits--;
+            if (ShotOutcome.isSunk(outcome))
+                countSinks--;
+        }
+
+        history.removeLast();
+        outcomes.removeLast();
+        undone.add(shot);
+        switch (ShotOutcome.type(outcome)) {
+            case ShotOutcome.INVALID:
+                countInvalidShots--;
+                break;
+            case ShotOutcome.REPEATED:
+                countRepeatedShots--;
+                break;
+            default:
+                shotSet.clear(shotCells.removeLast());
+        }
+        for (GameListener l : listeners)
+            l.shotUndone(row, column, outcome);
+        return outcome;
+    }
+
+    /**
+     * Fires again the last shot taken back by {@link #undo()}, notifying the
+     * listeners as any shot. Firing a new shot discards the shots that could
+     * be redone.
+     *
+     * @return the outcome code of the shot, or {@code -1} if there is no shot to redo
+     */
+    public int redo() {
+        if (undone.isEmpty())
+            return -1;
+        long shot = undone.removeLast();
+        int outcome = apply((int) (shot >> 32), (int) shot);
+        record(shot, outcome);
+        return outcome;
+    }
+
+    /**
+     * Adds a shot to the undo history, forgetting the oldest shot if the
+     * history is over its limit.
+     *
+     * @param shot the coordinates of the shot, row in the high half and column in the low half
+     * @param outcome the outcome code of the shot
+     */
+    private void record(long shot, int outcome) {
+        if (undoLimit == 0)
+            return;
+        if (history.size() == undoLimit) {
+            history.removeFirst(1);
+            outcomes.removeFirst(1);
+        }
+        history.add(shot);
+        outcomes.add(outcome);
+    }
+
+    /**
+     * Returns the number of shots that can be taken back with {@link #undo()}.
+     *
+     * @return the depth of the undo history
+     */
+    public int getUndoDepth() {
+        return history.size();
+    }
+
+    /**
+     * Returns the maximum number of shots that can be taken back.
+     *
+     * @return the undo limit
+     */
+    public int getUndoLimit() {
+        return undoLimit;
+    }
+
+    /**
+     * Sets the maximum number of shots that can be taken back, forgetting
+     * the oldest shots, and the shots to redo, over the new limit. A limit
+     * of {@code 0} disables undo.
+     *
+     * @param limit the new undo limit
+     */
+    public void setUndoLimit(int limit) {
+        assert limit >= 0;
+
+        undoLimit = limit;
+        if (history.size() > limit) {
+            int excess = history.size() - limit;
+            history.removeFirst(excess);
+            outcomes.removeFirst(excess);
+        }
+        if (undone.size() > limit)
+            undone.removeFirst(undone.size() - limit);
+    }
+
+    /**
+     * Returns the number of shots that can be fired again with {@link #redo()}.
+     *
+     * @return the depth of the redo stack
+     */
+    public int getRedoDepth() {
+        return undone.size();
+    }
+
+    /**
+     * Handles a shot, updating the counters, the shots and the fleet and
+     * notifying the listeners.
+     *
+     * @param row the row fired at
+     * @param column the column fired at
+     * @return the outcome of the shot, as a {@link ShotOutcome} code
+     */
+    private int apply(int row, int column) {
+        if (!validShot(row, column)) {
             countInvalidShots++;
-        else {
-            if (repeatedShot(pos))
-                countRepeatedShots++;
-            else {
-                shots.add(pos);
-                IShip s = fleet.shipAt(pos);
-                if (s != null) {
-                    s.shoot(pos);
-                    countHits++;
-                    if (!s.stillFloating()) {
-                        countSinks++;
-                        return s;
-                    }
-                }
-            }
+            for (GameListener l : listeners)
+                l.invalidShot(row, column);
+            return ShotOutcome.INVALID;
+        }
+        if (repeatedShot(row, column)) {
+            countRepeatedShots++;
+            for (GameListener l : listeners)
+                l.repeatedShot(row, column);
+            return ShotOutcome.REPEATED;
         }
-        return null;
+
+        int cell = Bitboard.cell(row, column);
+        shotCells.add(cell);
+        shotSet.set(cell);
+        for (GameListener l : listeners)
+            l.shotFired(row, column);
+        int i = fleet.shipIndexAt(row, column);
+        if (i < 0)
+            return ShotOutcome.MISS;
+
+        IShip s = fleet.getShips().get(i);
+        if (s instanceof Ship)
+            ((Ship) s).shoot(row, column);
+        else
+            s.shoot(new Position(row, column));
+        countHits++;
+        for (GameListener l : listeners)
+            l.shipHit(row, column);
+        ShipKind kind = ShipKind.of(s);
+        int ordinal = kind == null ? -1 : kind.ordinal();
+        if (s.stillFloating())
+            return ShotOutcome.hit(false, i, ordinal, false);
+
+        countSinks++;
+        for (GameListener l : listeners)
+            l.shipSunk(s);
+        boolean over = countSinks == fleet.getShips().size();
+        if (over)
+            for (GameListener l : listeners)
+                l.gameOver();
+        return ShotOutcome.hit(true, i, ordinal, over);
     }
 
     /**
      * Returns the list of all valid shots fired.
      *
-     * @return list of positions representing shots
+     * @return a read-only view of the positions representing shots, in the order they were fired
      */
     @Override
     public List<IPosition> getShots() {
         return shots;
     }
 
+    /**
+     * Returns the cell index of every valid shot fired, in order. The list
+     * is owned by the game and must not be modified.
+     *
+     * @return the cells of the shots
+     */
+    IntArrayList getShotCells() {
+        return shotCells;
+    }
+
     /**
      * Returns the number of repeated shots.
      *
@@ -140,32 +432,51 @@ public class Game implements IGame {
      */
     @Override
     public int getRemainingShips() {
-        List<IShip> floatingShips = fleet.getFloatingShips();
-        return floatingShips.size();
+        return fleet.getFloatingShips().size();
+    }
+
+    /**
+     * Returns the fleet being fired at.
+     *
+     * @return the fleet of this game
+     */
+    IFleet getFleet() {
+        return fleet;
+    }
+
+    /**
+     * Restores the invalid and repeated shot counters of a game rebuilt by
+     * replaying its valid shots, since those shots leave no other trace.
+     *
+     * @param invalidShots the number of invalid shots
+     * @param repeatedShots the number of repeated shots
+     */
+    void restoreCounters(int invalidShots, int repeatedShots) {
+        countInvalidShots = invalidShots;
+        countRepeatedShots = repeatedShots;
     }
 
     /**
      * Checks whether a shot is inside the board boundaries.
      *
-     * @param pos the position to validate
+     * @param row the row of the shot
+     * @param column the column of the shot
      * @return {@code true} if the shot is valid, {@code false} otherwise
      */
-    private boolean validShot(IPosition pos) {
-        return (pos.getRow() >= 0 && pos.getRow() <= Fleet.BOARD_SIZE &&
-                pos.getColumn() >= 0 && pos.getColumn() <= Fleet.BOARD_SIZE);
+    private boolean validShot(int row, int column) {
+        return (row >= 0 && row < Fleet.BOARD_SIZE &&
+                column >= 0 && column < Fleet.BOARD_SIZE);
     }
 
     /**
-     * Checks whether a shot has already been fired at the given position.
+     * Checks whether a shot has already been fired at the given coordinates.
      *
-     * @param pos the position to check
+     * @param row the row of the shot
+     * @param column the column of the shot
      * @return {@code true} if the shot is repeated, {@code false} otherwise
      */
-    private boolean repeatedShot(IPosition pos) {
-        for (int i = 0; i < shots.size(); i++)
-            if (shots.get(i).equals(pos))
-                return true;
-        return false;
+    private boolean repeatedShot(int row, int column) {
+        return shotSet.get(Bitboard.cell(row, column));
     }
 
     /**
@@ -175,6 +486,17 @@ public class Game implements IGame {
      * @param marker the character used to mark the positions
      */
     public void printBoard(List<IPosition> positions, Character marker) {
+        printBoard(positions, marker, System.out);
+    }
+
+    /**
+     * Prints a board representation marking the given positions with a character to a stream.
+     *
+     * @param positions the positions to mark
+     * @param marker the character used to mark the positions
+     * @param out the stream to print to
+     */
+    public void printBoard(List<IPosition> positions, char marker, PrintStream out) {
         char[][] map = new char[Fleet.BOARD_SIZE][Fleet.BOARD_SIZE];
 
         for (int r = 0; r < Fleet.BOARD_SIZE; r++)
@@ -186,8 +508,8 @@ public class Game implements IGame {
 
         for (int row = 0; row < Fleet.BOARD_SIZE; row++) {
             for (int col = 0; col < Fleet.BOARD_SIZE; col++)
-                System.out.print(map[row][col]);
-            System.out.println();
+                out.print(map[row][col]);
+            out.println();
         }
     }
 
@@ -195,18 +517,36 @@ public class Game implements IGame {
      * Prints the board showing all valid shots fired by the player.
      */
     public void printValidShots() {
-        printBoard(getShots(), 'X');
+        printValidShots(System.out);
+    }
+
+    /**
+     * Prints the board showing all valid shots fired by the player to a stream.
+     *
+     * @param out the stream to print to
+     */
+    public void printValidShots(PrintStream out) {
+        printBoard(getShots(), 'X', out);
     }
 
     /**
      * Prints the board showing the entire fleet layout.
      */
     public void printFleet() {
+        printFleet(System.out);
+    }
+
+    /**
+     * Prints the board showing the entire fleet layout to a stream.
+     *
+     * @param out the stream to print to
+     */
+    public void printFleet(PrintStream out) {
         List<IPosition> shipPositions = new ArrayList<IPosition>();
 
         for (IShip s : fleet.getShips())
             shipPositions.addAll(s.getPositions());
 
-        printBoard(shipPositions, '#');
+        printBoard(shipPositions, '#', out);
     }
 }
\ No newline at end of file
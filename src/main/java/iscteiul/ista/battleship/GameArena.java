@@ -0,0 +1,869 @@
+package iscteiul.ista.battleship;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Off-heap storage for very large numbers of concurrent games.
+ *
+ * <p>Each game lives in a fixed-size slot of {@value #SLOT_BYTES} bytes inside
+ * direct byte buffers allocated in chunks, so millions of live games cost
+ * the garbage collector nothing but a handful of buffer objects. A slot holds
+ * the fleet layout as placement ids of the {@link PlacementIndex}, the masks
+ * of the cells shot at and hit (see {@link Bitboard}) and the shot counters:</p>
+ *
+ * <pre>
+ *  0..21  placement id of each ship (2 bytes each, up to {@link IFleet#FLEET_SIZE} ships)
+ *  22     number of ships, or -1 for a free slot
+ *  23     number of ships sunk
+ *  24..39 cells shot at
+ *  40..55 cells hit
+ *  56..59 number of invalid shots
+ *  60..63 number of repeated shots
+ * </pre>
+ *
+ * <p>Games are addressed by slot index. The primitive methods such as
+ * {@link #fire(int, int, int)} never allocate; {@link #game(int)} and
+ * {@link #fleet(int)} wrap a slot in the usual {@link IGame} and {@link IFleet}
+ * interfaces for code that needs them. The ships of these views are backed
+ * by the slot: shooting one of them marks the cell as shot at and hit in
+ * the slot, so a {@link Game} can also be played on {@code fleet(slot)};
+ * the misses of such a game are only recorded by the {@code Game}.
+ * Since only the set of cells shot at is stored, the valid shots of an arena
+ * game are reported in cell order rather than in the order they were fired.
+ * Listeners registered on a view returned by {@link #game(int)} are notified
+ * of the shots fired through that view only, not of those fired with the
+ * primitive methods.</p>
+ *
+ * <p>Allocating and releasing slots is thread-safe. Operations on a slot are
+ * not synchronized: each game must be used by a single thread at a time, as
+ * with {@link Game}.</p>
+ */
+public class GameArena {
+
+    /** Bytes used by each game. */
+    public static final int SLOT_BYTES = 64;
+
+    /** Default number of slots per chunk, as a power of two (4 MiB chunks). */
+    private static final int DEFAULT_CHUNK_SHIFT = 16;
+
+    /** Offset of the placement ids. */
+    private static final int SHIPS = 0;
+
+    /** Offset of the number of ships. */
+    private static final int SHIP_COUNT = 22;
+
+    /** Offset of the number of ships sunk. */
+    private static final int SUNK_COUNT = 23;
+
+    /** Offset of the mask of the cells shot at. */
+    private static final int SHOTS = 24;
+
+    /** Offset of the mask of the cells hit. */
+    private static final int HITS = 40;
+
+    /** Offset of the number of invalid shots. */
+    private static final int INVALID_SHOTS = 56;
+
+    /** Offset of the number of repeated shots. */
+    private static final int REPEATED_SHOTS = 60;
+
+    /** Number of ships marking a free slot, whose next free slot is stored at {@link #SHOTS}. */
+    private static final byte FREE = -1;
+
+    static {
+        // The layout above stores each mask in two words at fixed offsets.
+        if (Bitboard.WORDS != 2)
+            throw new ExceptionInInitializerError("ERROR! arena slots need masks of 2 words, not " + Bitboard.WORDS);
+    }
+
+    /** The placement index decoding the placement ids. */
+    private final PlacementIndex index = PlacementIndex.getInstance();
+
+    /** Binary logarithm of the number of slots per chunk. */
+    private final int chunkShift;
+
+    /** The chunks, replaced by a longer copy whenever a chunk is added. */
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /** Number of slots ever handed out; slots above it were never used. */
+    private int used;
+
+    /** First slot of the free list, or {@code -1} if it is empty. */
+    private int freeHead = -1;
+
+    /** Number of games currently allocated. */
+    private int live;
+
+    /**
+     * Creates an arena with chunks of 65536 slots.
+     */
+    public GameArena() {
+        this(DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Creates an arena.
+     *
+     * @param chunkShift the binary logarithm of the number of slots per chunk
+     * @throws IllegalArgumentException if the chunk size is not between 1 and 2<sup>24</sup> slots
+     */
+    public GameArena(int chunkShift) {
+        if (chunkShift < 0 || chunkShift > 24)
+            throw new IllegalArgumentException("ERROR! invalid chunk size");
+        this.chunkShift = chunkShift;
+    }
+
+    /**
+     * Allocates a game with the given fleet layout and no shots.
+     *
+     * @param placements the placement id of each ship
+     * @param count the number of ships
+     * @return the slot of the new game
+     * @throws IllegalArgumentException if there are too many ships, an id is
+     *                                  not a placement, or two ships are too close
+     */
+    public int allocate(int[] placements, int count) {
+        assert placements != null;
+
+        if (count < 0 || count > IFleet.FLEET_SIZE)
+            throw new IllegalArgumentException("ERROR! invalid number of ships");
+        long halo0 = 0L;
+        long halo1 = 0L;
+        for (int i = 0; i < count; i++) {
+            int p = placements[i];
+            if (p < 0 || p >= index.size())
+                throw new IllegalArgumentException("ERROR! invalid placement " + p);
+            if ((index.maskWord(p, 0) & halo0) != 0L || (index.maskWord(p, 1) & halo1) != 0L)
+                throw new IllegalArgumentException("ERROR! ships too close");
+            halo0 |= index.haloWord(p, 0);
+            halo1 |= index.haloWord(p, 1);
+        }
+
+        int slot;
+        synchronized (this) {
+            slot = freeHead >= 0 ? freeHead : used;
+            ByteBuffer b = slot == used ? grow() : chunk(slot);
+            if (slot == freeHead)
+                freeHead = b.getInt(offset(slot) + SHOTS);
+            else
+                used++;
+            live++;
+        }
+
+        ByteBuffer b = chunk(slot);
+        int o = offset(slot);
+        for (int i = 0; i < SLOT_BYTES; i += Long.BYTES)
+            b.putLong(o + i, 0L);
+        for (int i = 0; i < count; i++)
+            b.putShort(o + SHIPS + 2 * i, (short) placements[i]);
+        b.put(o + SHIP_COUNT, (byte) count);
+        return slot;
+    }
+
+    /**
+     * Allocates a game with the layout of the given fleet and no shots.
+     *
+     * @param fleet the fleet whose layout is copied
+     * @return the slot of the new game
+     * @throws IllegalArgumentException if the fleet holds a ship of unknown
+     *                                  kind or outside the board
+     */
+    public int allocate(IFleet fleet) {
+        assert fleet != null;
+
+        List<IShip> ships = fleet.getShips();
+        int[] placements = new int[ships.size()];
+        for (int i = 0; i < placements.length; i++) {
+            placements[i] = placementOf(ships.get(i));
+            if (placements[i] < 0)
+                throw new IllegalArgumentException("ERROR! ship cannot be stored: " + ships.get(i));
+        }
+        return allocate(placements, placements.length);
+    }
+
+    /**
+     * Releases the slot of a game that is no longer needed.
+     *
+     * @param slot the slot of the game
+     * @throws IllegalArgumentException if the slot does not hold a game
+     */
+    public synchronized void release(int slot) {
+        ByteBuffer b = checkedChunk(slot);
+        int o = offset(slot);
+        b.put(o + SHIP_COUNT, FREE);
+        b.putInt(o + SHOTS, freeHead);
+        freeHead = slot;
+        live--;
+    }
+
+    /**
+     * Fires a shot in a game.
+     *
+     * @param slot the slot of the game
+     * @param row the row fired at
+     * @param column the column fired at
+     * @return the outcome of the shot, as a {@link ShotOutcome} code
+     * @throws IllegalArgumentException if the slot does not hold a game
+     */
+    public int fire(int slot, int row, int column) {
+        ByteBuffer b = checkedChunk(slot);
+        int o = offset(slot);
+        if (!Bitboard.isInside(row, column)) {
+            b.putInt(o + INVALID_SHOTS, b.getInt(o + INVALID_SHOTS) + 1);
+            return ShotOutcome.INVALID;
+        }
+
+        int cell = Bitboard.cell(row, column);
+        int word = (cell >>> 6) * Long.BYTES;
+        long bit = 1L << cell;
+        long shots = b.getLong(o + SHOTS + word);
+        if ((shots & bit) != 0L) {
+            b.putInt(o + REPEATED_SHOTS, b.getInt(o + REPEATED_SHOTS) + 1);
+            return ShotOutcome.REPEATED;
+        }
+        b.putLong(o + SHOTS + word, shots | bit);
+
+        int count = b.get(o + SHIP_COUNT);
+        for (int i = 0; i < count; i++) {
+            int p = b.getShort(o + SHIPS + 2 * i);
+            if (index.covers(p, cell)) {
+                b.putLong(o + HITS + word, b.getLong(o + HITS + word) | bit);
+                if (!isSunk(b, o, p))
+                    return ShotOutcome.hit(false, i, index.getKind(p), false);
+                int sunk = b.get(o + SUNK_COUNT) + 1;
+                b.put(o + SUNK_COUNT, (byte) sunk);
+                return ShotOutcome.hit(true, i, index.getKind(p), sunk == count);
+            }
+        }
+        return ShotOutcome.MISS;
+    }
+
+    /**
+     * Returns the number of ships of a game.
+     *
+     * @param slot the slot of the game
+     * @return the number of ships
+     */
+    public int getShipCount(int slot) {
+        return checkedChunk(slot).get(offset(slot) + SHIP_COUNT);
+    }
+
+    /**
+     * Returns the placement of a ship of a game.
+     *
+     * @param slot the slot of the game
+     * @param ship the index of the ship
+     * @return the placement id of the ship
+     */
+    public int getPlacement(int slot, int ship) {
+        assert ship >= 0 && ship < getShipCount(slot);
+        return chunk(slot).getShort(offset(slot) + SHIPS + 2 * ship);
+    }
+
+    /**
+     * Checks whether a ship of a game has been sunk.
+     *
+     * @param slot the slot of the game
+     * @param ship the index of the ship
+     * @return {@code true} if every cell of the ship was hit
+     */
+    public boolean isSunk(int slot, int ship) {
+        return isSunk(chunk(slot), offset(slot), getPlacement(slot, ship));
+    }
+
+    /**
+     * Checks whether a cell of a game has been shot at.
+     *
+     * @param slot the slot of the game
+     * @param cell the cell index
+     * @return {@code true} if the cell was shot at
+     */
+    public boolean isShot(int slot, int cell) {
+        return (checkedChunk(slot).getLong(offset(slot) + SHOTS + (cell >>> 6) * Long.BYTES) & (1L << cell)) != 0L;
+    }
+
+    /**
+     * Checks whether a cell of a game has been hit.
+     *
+     * @param slot the slot of the game
+     * @param cell the cell index
+     * @return {@code true} if the cell was shot at and holds a ship
+     */
+    public boolean isHit(int slot, int cell) {
+        return (checkedChunk(slot).getLong(offset(slot) + HITS + (cell >>> 6) * Long.BYTES) & (1L << cell)) != 0L;
+    }
+
+    /**
+     * Returns the number of valid shots of a game.
+     *
+     * @param slot the slot of the game
+     * @return the number of cells shot at
+     */
+    public int getShotCount(int slot) {
+        ByteBuffer b = checkedChunk(slot);
+        int o = offset(slot);
+        return Long.bitCount(b.getLong(o + SHOTS)) + Long.bitCount(b.getLong(o + SHOTS + Long.BYTES));
+    }
+
+    /**
+     * Returns the number of hits of a game.
+     *
+     * @param slot the slot of the game
+     * @return the number of cells hit
+     */
+    public int getHits(int slot) {
+        ByteBuffer b = checkedChunk(slot);
+        int o = offset(slot);
+        return Long.bitCount(b.getLong(o + HITS)) + Long.bitCount(b.getLong(o + HITS + Long.BYTES));
+    }
+
+    /**
+     * Returns the number of ships sunk in a game.
+     *
+     * @param slot the slot of the game
+     * @return the number of ships sunk
+     */
+    public int getSunkShips(int slot) {
+        return checkedChunk(slot).get(offset(slot) + SUNK_COUNT);
+    }
+
+    /**
+     * Returns the number of invalid shots of a game.
+     *
+     * @param slot the slot of the game
+     * @return the number of shots outside the board
+     */
+    public int getInvalidShots(int slot) {
+        return checkedChunk(slot).getInt(offset(slot) + INVALID_SHOTS);
+    }
+
+    /**
+     * Returns the number of repeated shots of a game.
+     *
+     * @param slot the slot of the game
+     * @return the number of shots at cells already shot at
+     */
+    public int getRepeatedShots(int slot) {
+        return checkedChunk(slot).getInt(offset(slot) + REPEATED_SHOTS);
+    }
+
+    /**
+     * Returns the number of games currently allocated.
+     *
+     * @return the number of live games
+     */
+    public synchronized int getLiveGames() {
+        return live;
+    }
+
+    /**
+     * Returns the number of off-heap bytes reserved by the arena.
+     *
+     * @return the total size of the chunks
+     */
+    public long getReservedBytes() {
+        return (long) chunks.length * SLOT_BYTES << chunkShift;
+    }
+
+    /**
+     * Wraps a game in the {@link IGame} interface. The view reads and updates
+     * the slot directly and stays valid until the slot is released. Each view
+     * has its own listeners.
+     *
+     * @param slot the slot of the game
+     * @return a view of the game
+     */
+    public IGame game(int slot) {
+        checkedChunk(slot);
+        return new SlotGame(slot);
+    }
+
+    /**
+     * Wraps the fleet of a game in the {@link IFleet} interface. The view
+     * reads and updates the slot directly and stays valid until the slot is
+     * released.
+     *
+     * @param slot the slot of the game
+     * @return a view of the fleet
+     */
+    public IFleet fleet(int slot) {
+        checkedChunk(slot);
+        return new SlotFleet(slot);
+    }
+
+    /**
+     * Returns the chunk holding a slot, without checking that it holds a game.
+     *
+     * @param slot the slot index
+     * @return the chunk
+     */
+    private ByteBuffer chunk(int slot) {
+        return chunks[slot >>> chunkShift];
+    }
+
+    /**
+     * Returns the chunk holding a slot, checking that the slot holds a game.
+     *
+     * @param slot the slot index
+     * @return the chunk
+     * @throws IllegalArgumentException if the slot does not hold a game
+     */
+    private ByteBuffer checkedChunk(int slot) {
+        ByteBuffer[] all = chunks;
+        if (slot < 0 || (slot >>> chunkShift) >= all.length)
+            throw new IllegalArgumentException("ERROR! invalid slot " + slot);
+        ByteBuffer b = all[slot >>> chunkShift];
+        if (b.get(offset(slot) + SHIP_COUNT) == FREE)
+            throw new IllegalArgumentException("ERROR! invalid slot " + slot);
+        return b;
+    }
+
+    /**
+     * Returns the offset of a slot inside its chunk.
+     *
+     * @param slot the slot index
+     * @return the byte offset
+     */
+    private int offset(int slot) {
+        return (slot & ((1 << chunkShift) - 1)) * SLOT_BYTES;
+    }
+
+    /**
+     * Returns the chunk of the next unused slot, adding a chunk if needed.
+     * The slots of a new chunk are marked free, so that slots never handed
+     * out are rejected like released ones. Must be called while holding the
+     * arena lock.
+     *
+     * @return the chunk holding slot {@code used}
+     */
+    private ByteBuffer grow() {
+        ByteBuffer[] all = chunks;
+        if ((used >>> chunkShift) < all.length)
+            return all[used >>> chunkShift];
+        if (all.length >= 1 << (31 - chunkShift))
+            throw new IllegalStateException("ERROR! arena is full");
+        ByteBuffer b = ByteBuffer.allocateDirect(SLOT_BYTES << chunkShift).order(ByteOrder.nativeOrder());
+        for (int o = 0; o < b.capacity(); o += SLOT_BYTES)
+            b.put(o + SHIP_COUNT, FREE);
+        ByteBuffer[] more = Arrays.copyOf(all, all.length + 1);
+        more[all.length] = b;
+        chunks = more;
+        return b;
+    }
+
+    /**
+     * Checks whether every cell of a placement was hit in a slot.
+     *
+     * @param b the chunk of the slot
+     * @param o the offset of the slot
+     * @param p the placement id
+     * @return {@code true} if the ship in that placement is sunk
+     */
+    private boolean isSunk(ByteBuffer b, int o, int p) {
+        return (index.maskWord(p, 0) & ~b.getLong(o + HITS)) == 0L
+                && (index.maskWord(p, 1) & ~b.getLong(o + HITS + Long.BYTES)) == 0L;
+    }
+
+    /**
+     * Returns the placement of a ship, if it has a known kind and lies inside the board.
+     *
+     * @param s the ship
+     * @return the placement id, or {@code -1}
+     */
+    private int placementOf(IShip s) {
+        int kind = PlacementIndex.kindOf(s);
+        IPosition pos = s.getPosition();
+        return kind < 0 ? -1 : index.placementOf(kind, s.getBearing(), pos.getRow(), pos.getColumn());
+    }
+
+    /**
+     * Builds the ship object of a ship of a game, backed by the slot.
+     *
+     * @param slot the slot of the game
+     * @param ship the index of the ship
+     * @return a view of the ship
+     */
+    private IShip toShip(int slot, int ship) {
+        return new SlotShip(slot, getPlacement(slot, ship));
+    }
+
+    /**
+     * Prints a board marking the cells of a mask stored in a slot.
+     *
+     * @param slot the slot of the game
+     * @param at the offset of the mask inside the slot
+     * @param marker the character marking the cells of the mask
+     */
+    private void printMask(int slot, int at, char marker) {
+        ByteBuffer b = chunk(slot);
+        int o = offset(slot) + at;
+        for (int row = 0; row < IFleet.BOARD_SIZE; row++) {
+            for (int col = 0; col < IFleet.BOARD_SIZE; col++) {
+                int cell = Bitboard.cell(row, col);
+                boolean set = (b.getLong(o + (cell >>> 6) * Long.BYTES) & (1L << cell)) != 0L;
+                System.out.print(set ? marker : '.');
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * {@link IGame} view of a slot.
+     */
+    private final class SlotGame implements IGame {
+
+        /** The slot of the game. */
+        private final int slot;
+
+        /** Listeners notified of the shots fired through this view, copied on each change. */
+        private GameListener[] listeners = new GameListener[0];
+
+        /**
+         * Creates a view.
+         *
+         * @param slot the slot of the game
+         */
+        SlotGame(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public IShip fire(IPosition pos) {
+            int outcome = fireAt(pos.getRow(), pos.getColumn());
+            return ShotOutcome.isSunk(outcome) ? toShip(slot, ShotOutcome.ship(outcome)) : null;
+        }
+
+        @Override
+        public int fireAt(int row, int column) {
+            int outcome = GameArena.this.fire(slot, row, column);
+            if (listeners.length > 0)
+                dispatch(row, column, outcome);
+            return outcome;
+        }
+
+        /**
+         * Reports a shot to the listeners, with the events {@link Game} would send.
+         *
+         * @param row the row fired at
+         * @param column the column fired at
+         * @param outcome the outcome of the shot
+         */
+        private void dispatch(int row, int column, int outcome) {
+            switch (ShotOutcome.type(outcome)) {
+                case ShotOutcome.INVALID:
+                    for (GameListener l : listeners)
+                        l.invalidShot(row, column);
+                    return;
+                case ShotOutcome.REPEATED:
+                    for (GameListener l : listeners)
+                        l.repeatedShot(row, column);
+                    return;
+                default:
+                    for (GameListener l : listeners)
+                        l.shotFired(row, column);
+            }
+            if (!ShotOutcome.isHit(outcome))
+                return;
+            for (GameListener l : listeners)
+                l.shipHit(row, column);
+            if (!ShotOutcome.isSunk(outcome))
+                return;
+            IShip s = toShip(slot, ShotOutcome.ship(outcome));
+            for (GameListener l : listeners)
+                l.shipSunk(s);
+            if (ShotOutcome.isGameOver(outcome))
+                for (GameListener l : listeners)
+                    l.gameOver();
+        }
+
+        @Override
+        public void addListener(GameListener listener) {
+            assert listener != null;
+
+            GameListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+            updated[listeners.length] = listener;
+            listeners = updated;
+        }
+
+        @Override
+        public void removeListener(GameListener listener) {
+            for (int i = 0; i < listeners.length; i++)
+                if (listeners[i] == listener) {
+                    GameListener[] updated = new GameListener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, updated, 0, i);
+                    System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+                    listeners = updated;
+                    return;
+                }
+        }
+
+        @Override
+        public List<IPosition> getShots() {
+            List<IPosition> shots = new ArrayList<>();
+            for (int cell = 0; cell < Bitboard.CELLS; cell++)
+                if (isShot(slot, cell))
+                    shots.add(new Position(Bitboard.rowOf(cell), Bitboard.columnOf(cell)));
+            return shots;
+        }
+
+        @Override
+        public int getRepeatedShots() {
+            return GameArena.this.getRepeatedShots(slot);
+        }
+
+        @Override
+        public int getInvalidShots() {
+            return GameArena.this.getInvalidShots(slot);
+        }
+
+        @Override
+        public int getHits() {
+            return GameArena.this.getHits(slot);
+        }
+
+        @Override
+        public int getSunkShips() {
+            return GameArena.this.getSunkShips(slot);
+        }
+
+        @Override
+        public int getRemainingShips() {
+            return getShipCount(slot) - GameArena.this.getSunkShips(slot);
+        }
+
+        @Override
+        public void printValidShots() {
+            printMask(slot, SHOTS, 'X');
+        }
+
+        @Override
+        public void printFleet() {
+            long[] cells = Bitboard.newMask();
+            for (int i = 0; i < getShipCount(slot); i++)
+                index.orMask(getPlacement(slot, i), cells);
+            for (int row = 0; row < IFleet.BOARD_SIZE; row++) {
+                for (int col = 0; col < IFleet.BOARD_SIZE; col++)
+                    System.out.print(Bitboard.get(cells, Bitboard.cell(row, col)) ? '#' : '.');
+                System.out.println();
+            }
+        }
+    }
+
+    /**
+     * {@link IFleet} view of a slot.
+     */
+    private final class SlotFleet implements IFleet {
+
+        /** The slot of the game. */
+        private final int slot;
+
+        /** The views of the ships, in slot order, extended as ships are added. */
+        private final List<IShip> ships = new ArrayList<>(FLEET_SIZE);
+
+        /** Read-only view of {@link #ships}. */
+        private final List<IShip> shipsView = Collections.unmodifiableList(ships);
+
+        /**
+         * Creates a view.
+         *
+         * @param slot the slot of the game
+         */
+        SlotFleet(int slot) {
+            this.slot = slot;
+        }
+
+        /**
+         * Returns the ships of the game. The same view is returned for a ship
+         * on every call, and its hits are those of the slot.
+         *
+         * @return a read-only list of the ships
+         */
+        @Override
+        public List<IShip> getShips() {
+            for (int i = ships.size(); i < getShipCount(slot); i++)
+                ships.add(toShip(slot, i));
+            return shipsView;
+        }
+
+        /**
+         * Adds a ship to the layout of the game, provided it has a known
+         * kind, lies inside the board and does not touch the other ships.
+         *
+         * @param s the ship to add
+         * @return {@code true} if the ship was added
+         */
+        @Override
+        public boolean addShip(IShip s) {
+            int count = getShipCount(slot);
+            int p = placementOf(s);
+            if (count >= FLEET_SIZE || p < 0)
+                return false;
+            long[] cells = Bitboard.newMask();
+            index.orMask(p, cells);
+            for (int i = 0; i < count; i++)
+                if (index.haloIntersects(getPlacement(slot, i), cells))
+                    return false;
+            ByteBuffer b = chunk(slot);
+            int o = offset(slot);
+            b.putShort(o + SHIPS + 2 * count, (short) p);
+            b.put(o + SHIP_COUNT, (byte) (count + 1));
+            return true;
+        }
+
+        @Override
+        public List<IShip> getShipsLike(String category) {
+            ShipKind kind = ShipKind.byCategory(category);
+            List<IShip> shipsLike = new ArrayList<>();
+            List<IShip> all = getShips();
+            for (int i = 0; kind != null && i < all.size(); i++)
+                if (index.getKind(getPlacement(slot, i)) == kind.ordinal())
+                    shipsLike.add(all.get(i));
+            return Collections.unmodifiableList(shipsLike);
+        }
+
+        @Override
+        public List<IShip> getFloatingShips() {
+            List<IShip> all = getShips();
+            List<IShip> floating = new ArrayList<>();
+            for (int i = 0; i < all.size(); i++)
+                if (!isSunk(slot, i))
+                    floating.add(all.get(i));
+            return Collections.unmodifiableList(floating);
+        }
+
+        @Override
+        public IShip shipAt(IPosition pos) {
+            int i = shipIndexAt(pos.getRow(), pos.getColumn());
+            return i < 0 ? null : getShips().get(i);
+        }
+
+        @Override
+        public int shipIndexAt(int row, int column) {
+            if (!Bitboard.isInside(row, column))
+                return -1;
+            int cell = Bitboard.cell(row, column);
+            for (int i = 0; i < getShipCount(slot); i++)
+                if (index.covers(getPlacement(slot, i), cell))
+                    return i;
+            return -1;
+        }
+
+        @Override
+        public void printStatus() {
+            Fleet.printShips(getShips());
+            Fleet.printShips(getFloatingShips());
+        }
+    }
+
+    /**
+     * A ship of a slot. Its positions are those of its placement, and its
+     * hits are read from and written to the masks of the slot, so every view
+     * of the same ship shares one state.
+     */
+    private final class SlotShip extends Ship {
+
+        /** The slot of the game. */
+        private final int slot;
+
+        /** The placement id of the ship. */
+        private final int placement;
+
+        /**
+         * Creates the view of a ship.
+         *
+         * @param slot the slot of the game
+         * @param placement the placement id of the ship
+         */
+        SlotShip(int slot, int placement) {
+            super(ShipKind.get(index.getKind(placement)).getCategory(), index.getBearing(placement),
+                    new Position(index.getRow(placement), index.getColumn(placement)));
+            this.slot = slot;
+            this.placement = placement;
+            for (int cell : index.cellsOf(placement))
+                addPosition(Bitboard.rowOf(cell), Bitboard.columnOf(cell));
+        }
+
+        @Override
+        public Integer getSize() {
+            return index.cellsOf(placement).length;
+        }
+
+        @Override
+        public boolean stillFloating() {
+            return !GameArena.this.isSunk(chunk(slot), offset(slot), placement);
+        }
+
+        @Override
+        public int getHitCount() {
+            ByteBuffer b = chunk(slot);
+            int o = offset(slot);
+            return Long.bitCount(index.maskWord(placement, 0) & b.getLong(o + HITS))
+                    + Long.bitCount(index.maskWord(placement, 1) & b.getLong(o + HITS + Long.BYTES));
+        }
+
+        /**
+         * Registers a shot on the ship, marking the cell as shot at and hit
+         * in the slot and counting the ship as sunk once all its cells are hit.
+         *
+         * @param row the row of the shot
+         * @param column the column of the shot
+         */
+        @Override
+        public void shoot(int row, int column) {
+            if (!covers(row, column) || isHit(row, column))
+                return;
+            int cell = Bitboard.cell(row, column);
+            int word = (cell >>> 6) * Long.BYTES;
+            long bit = 1L << cell;
+            ByteBuffer b = chunk(slot);
+            int o = offset(slot);
+            b.putLong(o + SHOTS + word, b.getLong(o + SHOTS + word) | bit);
+            b.putLong(o + HITS + word, b.getLong(o + HITS + word) | bit);
+            if (!stillFloating())
+                b.put(o + SUNK_COUNT, (byte) (b.get(o + SUNK_COUNT) + 1));
+        }
+
+        /**
+         * Takes back a shot on the ship, clearing the cell from the masks of
+         * the slot and counting the ship as floating again if it was sunk.
+         *
+         * @param row the row of the shot
+         * @param column the column of the shot
+         */
+        @Override
+        public void unshoot(int row, int column) {
+            if (!isHit(row, column))
+                return;
+            ByteBuffer b = chunk(slot);
+            int o = offset(slot);
+            if (!stillFloating())
+                b.put(o + SUNK_COUNT, (byte) (b.get(o + SUNK_COUNT) - 1));
+            int cell = Bitboard.cell(row, column);
+            int word = (cell >>> 6) * Long.BYTES;
+            long bit = 1L << cell;
+            b.putLong(o + SHOTS + word, b.getLong(o + SHOTS + word) & ~bit);
+            b.putLong(o + HITS + word, b.getLong(o + HITS + word) & ~bit);
+        }
+
+        @Override
+        public boolean isHit(int row, int column) {
+            return covers(row, column) && GameArena.this.isHit(slot, Bitboard.cell(row, column));
+        }
+
+        /**
+         * Checks whether the ship occupies the given coordinates.
+         *
+         * @param row the row index
+         * @param column the column index
+         * @return {@code true} if the coordinates are a cell of the ship
+         */
+        private boolean covers(int row, int column) {
+            return Bitboard.isInside(row, column) && index.covers(placement, Bitboard.cell(row, column));
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Read-only, memory-mapped view of a dataset of recorded games, such as the
+ * corpora of fleets and shot sequences used for training and regression.
+ *
+ * <p>A dataset file starts with a {@value #HEADER_BYTES}-byte header holding
+ * {@link #MAGIC}, {@link #VERSION} and the number of records, followed by
+ * fixed-size records of {@value #RECORD_BYTES} bytes, all little-endian:</p>
+ *
+ * <pre>
+ *  0..23   fleet layout, as the {@link FleetCodec#WORDS} words of {@link FleetCodec}
+ *  24      number of valid shots
+ *  25..124 cell index of each shot, in the order they were fired
+ *  125..127 unused
+ * </pre>
+ *
+ * <p>The file is mapped with {@link FileChannel#map} in chunks of at most
+ * {@value #CHUNK_RECORDS} records, so files far larger than the 2 GB limit of
+ * a single mapping are supported, and the operating system pages the data in
+ * and out as needed. Records are read through a reusable {@link Record}
+ * flyweight that decodes fields on access, so scanning a dataset creates no
+ * objects; {@link Record#loadInto(GameArena)} replays a record into an
+ * off-heap game without creating any ship or position either.</p>
+ *
+ * <p>The dataset is safe to read from many threads, each with its own
+ * {@link Record}: {@link #split(int)} divides it into ranges for worker
+ * threads and {@link #forEach(long, long, Consumer)} scans one range.
+ * Datasets are written with {@link GameDatasetWriter}.</p>
+ */
+public class GameDataset implements AutoCloseable {
+
+    /** Identifier written at the start of dataset files ("BSDS"). */
+    public static final int MAGIC = 0x42534453;
+
+    /** Version of the dataset format. */
+    public static final int VERSION = 1;
+
+    /** Size of the file header in bytes. */
+    public static final int HEADER_BYTES = 16;
+
+    /** Size of each record in bytes. */
+    public static final int RECORD_BYTES = 128;
+
+    /** Offset of the number of shots inside a record. */
+    static final int SHOT_COUNT = 8 * FleetCodec.WORDS;
+
+    /** Offset of the shot cells inside a record. */
+    static final int SHOTS = SHOT_COUNT + 1;
+
+    /** Maximum number of records per mapped chunk (512 MiB). */
+    static final int CHUNK_RECORDS = 1 << 22;
+
+    /**
+     * Flyweight view of one record of the dataset. A record object can be
+     * moved to any record with {@link GameDataset#read(long, Record)}; it is
+     * not thread-safe and must not be shared between threads.
+     */
+    public static final class Record {
+
+        /** The chunk holding the current record. */
+        private ByteBuffer chunk;
+
+        /** Offset of the current record in its chunk. */
+        private int base;
+
+        /** Index of the current record in the dataset. */
+        private long index;
+
+        /** Scratch array receiving the fleet encoding. */
+        private final long[] code = new long[FleetCodec.WORDS];
+
+        /** Scratch array receiving placement ids. */
+        private final int[] placements = new int[4 * FleetCodec.WORDS];
+
+        /**
+         * Returns the index of the record in the dataset.
+         *
+         * @return the record index
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Copies the fleet encoding of the record.
+         *
+         * @param out the destination
+         * @param offset the index of the first word to write
+         */
+        public void getFleet(long[] out, int offset) {
+            for (int w = 0; w < FleetCodec.WORDS; w++)
+                out[offset + w] = chunk.getLong(base + 8 * w);
+        }
+
+        /**
+         * Returns the number of valid shots of the record.
+         *
+         * @return the number of shots, at most {@link Bitboard#CELLS}
+         * @throws IllegalArgumentException if the record holds more shots than cells
+         */
+        public int getShotCount() {
+            int shots = chunk.get(base + SHOT_COUNT) & 0xFF;
+            if (shots > Bitboard.CELLS)
+                throw new IllegalArgumentException("ERROR! invalid shot count " + shots);
+            return shots;
+        }
+
+        /**
+         * Returns the cell of a shot of the record.
+         *
+         * @param i the shot index, below {@link #getShotCount()}
+         * @return the cell index, see {@link Bitboard}
+         */
+        public int getShotCell(int i) {
+            assert i >= 0 && i < getShotCount();
+            return chunk.get(base + SHOTS + i) & 0xFF;
+        }
+
+        /**
+         * Allocates a game in an arena with the fleet of the record and fires
+         * its shots, without creating any object.
+         *
+         * @param arena the arena receiving the game
+         * @return the slot of the game
+         * @throws IllegalArgumentException if the record holds an invalid fleet or shot count
+         */
+        public int loadInto(GameArena arena) {
+            int shots = getShotCount();
+            getFleet(code, 0);
+            int slot = arena.allocate(placements, FleetCodec.placements(code, 0, placements));
+            for (int i = 0; i < shots; i++) {
+                int cell = chunk.get(base + SHOTS + i) & 0xFF;
+                arena.fire(slot, Bitboard.rowOf(cell), Bitboard.columnOf(cell));
+            }
+            return slot;
+        }
+
+        /**
+         * Rebuilds the fleet of the record.
+         *
+         * @return a new fleet with the recorded layout and no hits
+         * @throws IllegalArgumentException if the record holds an invalid fleet
+         */
+        public Fleet toFleet() {
+            getFleet(code, 0);
+            return FleetCodec.decode(code, 0);
+        }
+
+        /**
+         * Rebuilds the game of the record by firing its shots at its fleet.
+         *
+         * @return a new game in the recorded state
+         * @throws IllegalArgumentException if the record holds an invalid fleet or shot count
+         */
+        public Game toGame() {
+            int shots = getShotCount();
+            Game game = new Game(toFleet());
+            for (int i = 0; i < shots; i++) {
+                int cell = getShotCell(i);
+                game.fireAt(Bitboard.rowOf(cell), Bitboard.columnOf(cell));
+            }
+            return game;
+        }
+    }
+
+    /** The open file. */
+    private final FileChannel channel;
+
+    /** The mapped chunks of records. */
+    private final MappedByteBuffer[] chunks;
+
+    /** Number of records. */
+    private final long size;
+
+    /**
+     * Opens and maps a dataset file.
+     *
+     * @param file the dataset file
+     * @throws IOException if the file cannot be read or mapped
+     * @throws IllegalArgumentException if the file is not a dataset of a supported version
+     */
+    public GameDataset(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IllegalArgumentException("ERROR! not a dataset file: " + file);
+            size = header.getLong();
+            long bytes;
+            try {
+                bytes = Math.addExact(HEADER_BYTES, Math.multiplyExact(size, RECORD_BYTES));
+            } catch (ArithmeticException e) {
+                bytes = Long.MAX_VALUE;
+            }
+            if (size < 0 || channel.size() < bytes)
+                throw new IllegalArgumentException("ERROR! truncated dataset file: " + file);
+
+            chunks = new MappedByteBuffer[(int) ((size + CHUNK_RECORDS - 1) / CHUNK_RECORDS)];
+            for (int c = 0; c < chunks.length; c++) {
+                long records = Math.min(CHUNK_RECORDS, size - (long) c * CHUNK_RECORDS);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + (long) c * CHUNK_RECORDS * RECORD_BYTES, records * RECORD_BYTES);
+                chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return the size of the dataset
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Moves a record view to the record with the given index.
+     *
+     * @param i the record index
+     * @param record the view to move, or {@code null} to create one
+     * @return the view, positioned on the record
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public Record read(long i, Record record) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("ERROR! no record " + i);
+        Record r = record != null ? record : new Record();
+        r.chunk = chunks[(int) (i / CHUNK_RECORDS)];
+        r.base = (int) (i % CHUNK_RECORDS) * RECORD_BYTES;
+        r.index = i;
+        return r;
+    }
+
+    /**
+     * Applies an action to every record of a range, in order, through a
+     * single reused record view.
+     *
+     * @param from the index of the first record
+     * @param to the index after the last record
+     * @param action the action to apply; it must not keep the view
+     */
+    public void forEach(long from, long to, Consumer<Record> action) {
+        Record r = new Record();
+        for (long i = from; i < to; i++)
+            action.accept(read(i, r));
+    }
+
+    /**
+     * Divides the dataset into ranges of nearly equal size, one per worker.
+     *
+     * @param parts the number of ranges
+     * @return {@code parts + 1} record indexes; range {@code k} goes from
+     *         element {@code k} inclusive to element {@code k + 1} exclusive
+     */
+    public long[] split(int parts) {
+        assert parts > 0;
+
+        long[] bounds = new long[parts + 1];
+        for (int k = 0; k <= parts; k++)
+            bounds[k] = size * k / parts;
+        return bounds;
+    }
+
+    /**
+     * Closes the file. The mappings stay valid until they are garbage
+     * collected, but the dataset must not be used anymore.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,145 @@
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import iscteiul.ista.battleship.collections.IntArrayList;
+
+/**
+ * Writes dataset files in the format read by {@link GameDataset}.
+ *
+ * <p>Records are buffered and appended to the file in large blocks; the
+ * record count in the header is filled in by {@link #close()}, so a file is
+ * only valid once its writer has been closed. Not thread-safe.</p>
+ */
+public class GameDatasetWriter implements AutoCloseable {
+
+    /** Number of records buffered before each write. */
+    private static final int BUFFER_RECORDS = 512;
+
+    /** The file being written. */
+    private final FileChannel channel;
+
+    /** Records waiting to be written. */
+    private final ByteBuffer buffer;
+
+    /** Scratch array receiving fleet encodings. */
+    private final long[] code = new long[FleetCodec.WORDS];
+
+    /** Number of records added. */
+    private long count;
+
+    /**
+     * Creates a dataset file, replacing any existing file.
+     *
+     * @param file the file to create
+     * @throws IOException if the file cannot be created
+     */
+    public GameDatasetWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * GameDataset.RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(GameDataset.MAGIC).putInt(GameDataset.VERSION).putLong(0L);
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param fleet the array holding the fleet encoding, see {@link FleetCodec}
+     * @param offset the index of its first word
+     * @param shots the cell index of each valid shot, in order
+     * @param shotCount the number of shots
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if there are more shots than board cells
+     */
+    public void add(long[] fleet, int offset, int[] shots, int shotCount) throws IOException {
+        if (shotCount < 0 || shotCount > Bitboard.CELLS)
+            throw new IllegalArgumentException("ERROR! invalid number of shots");
+        ensureRoom();
+        int base = buffer.position();
+        for (int w = 0; w < FleetCodec.WORDS; w++)
+            buffer.putLong(fleet[offset + w]);
+        buffer.put((byte) shotCount);
+        for (int i = 0; i < shotCount; i++)
+            buffer.put((byte) shots[i]);
+        buffer.position(base + GameDataset.RECORD_BYTES);
+        count++;
+    }
+
+    /**
+     * Appends the record of a game: its fleet layout and its valid shots.
+     *
+     * @param game the game to record
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the fleet holds a ship of unknown kind or outside the board
+     */
+    public void add(Game game) throws IOException {
+        FleetCodec.encode(game.getFleet(), code, 0);
+        IntArrayList shots = game.getShotCells();
+        ensureRoom();
+        int base = buffer.position();
+        for (int w = 0; w < FleetCodec.WORDS; w++)
+            buffer.putLong(code[w]);
+        buffer.put((byte) shots.size());
+        for (int i = 0; i < shots.size(); i++)
+            buffer.put((byte) shots.get(i));
+        buffer.position(base + GameDataset.RECORD_BYTES);
+        count++;
+    }
+
+    /**
+     * Returns the number of records added so far.
+     *
+     * @return the number of records
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the buffered records and the record count, and closes the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(count).flip();
+            channel.write(header, GameDataset.HEADER_BYTES - Long.BYTES);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Makes room for one more record, writing the buffer if it is full.
+     * Unused record bytes are cleared.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void ensureRoom() throws IOException {
+        if (buffer.remaining() < GameDataset.RECORD_BYTES)
+            flush();
+        int base = buffer.position();
+        for (int i = 0; i < GameDataset.RECORD_BYTES; i += Long.BYTES)
+            buffer.putLong(base + i, 0L);
+    }
+
+    /**
+     * Writes the buffered bytes to the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
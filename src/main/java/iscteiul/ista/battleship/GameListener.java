@@ -0,0 +1,77 @@
+package iscteiul.ista.battleship;
+
+/**
+ * Receives the events produced by {@link IGame#fire(IPosition)} and by
+ * {@link Game#undo()}.
+ *
+ * <p>Events are delivered synchronously, on the thread that fires the shot,
+ * and carry only primitive coordinates (or the sunk ship), so dispatching
+ * them creates no objects. All methods have an empty default implementation,
+ * so a listener only needs to override the events it is interested in.
+ * Listeners that may be slow should be wrapped in an
+ * {@link AsyncGameListener}.</p>
+ */
+public interface GameListener {
+
+    /**
+     * Called when a valid, new shot is fired, before its outcome is reported.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    default void shotFired(int row, int column) {
+    }
+
+    /**
+     * Called when a shot hits a ship.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    default void shipHit(int row, int column) {
+    }
+
+    /**
+     * Called when a shot sinks a ship, right after {@link #shipHit}.
+     *
+     * @param ship the ship that was sunk
+     */
+    default void shipSunk(IShip ship) {
+    }
+
+    /**
+     * Called when a shot is fired outside the board.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    default void invalidShot(int row, int column) {
+    }
+
+    /**
+     * Called when a shot is fired at a position already targeted before.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    default void repeatedShot(int row, int column) {
+    }
+
+    /**
+     * Called once, when the last ship of the fleet is sunk.
+     */
+    default void gameOver() {
+    }
+
+    /**
+     * Called when a shot is taken back by {@link Game#undo()}, after the game
+     * and its fleet have been restored to their state before the shot. A
+     * shot fired again by {@link Game#redo()} is reported as any new shot.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     * @param outcome the outcome the shot had, as a {@link ShotOutcome} code
+     */
+    default void shotUndone(int row, int column, int outcome) {
+    }
+}
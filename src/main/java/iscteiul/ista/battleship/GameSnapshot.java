@@ -0,0 +1,149 @@
+package iscteiul.ista.battleship;
+
+import java.util.List;
+
+import iscteiul.ista.battleship.collections.IntArrayList;
+
+/**
+ * Compact binary form of a {@link Game}, used to keep idle games out of the
+ * heap and to rebuild them later.
+ *
+ * <p>A snapshot stores the fleet layout (kind, bearing and starting position
+ * of every ship), the valid shots in the order they were fired, and the
+ * invalid and repeated shot counters. The hit state of the ships is not
+ * stored: it is restored by replaying the valid shots on a fresh fleet.
+ * Listeners registered on the original game are not part of the
+ * snapshot.</p>
+ *
+ * <p>Layout, one byte per field unless noted: format version, number of
+ * ships, then for each ship its kind index, bearing ordinal, row and column;
+ * then the invalid and repeated counters (4 bytes each, big-endian), the
+ * number of valid shots (2 bytes) and the cell index of each shot.</p>
+ */
+public final class GameSnapshot {
+
+    /** Version of the snapshot format. */
+    private static final byte VERSION = 1;
+
+    /** Bytes used by each ship. */
+    private static final int SHIP_BYTES = 4;
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private GameSnapshot() {
+    }
+
+    /**
+     * Encodes a game.
+     *
+     * @param game the game to encode
+     * @return the snapshot bytes
+     * @throws IllegalArgumentException if the fleet holds a ship of unknown kind or outside the board
+     */
+    public static byte[] encode(Game game) {
+        assert game != null;
+
+        List<IShip> ships = game.getFleet().getShips();
+        IntArrayList shots = game.getShotCells();
+        byte[] data = new byte[2 + ships.size() * SHIP_BYTES + 10 + shots.size()];
+
+        int i = 0;
+        data[i++] = VERSION;
+        data[i++] = (byte) ships.size();
+        for (IShip s : ships) {
+            int kind = PlacementIndex.kindOf(s);
+            IPosition pos = s.getPosition();
+            if (kind < 0 || !Bitboard.isInside(pos.getRow(), pos.getColumn()))
+                throw new IllegalArgumentException("ERROR! ship cannot be encoded: " + s);
+            data[i++] = (byte) kind;
+            data[i++] = (byte) s.getBearing().ordinal();
+            data[i++] = (byte) pos.getRow();
+            data[i++] = (byte) pos.getColumn();
+        }
+        i = putInt(data, i, game.getInvalidShots());
+        i = putInt(data, i, game.getRepeatedShots());
+        data[i++] = (byte) (shots.size() >>> 8);
+        data[i++] = (byte) shots.size();
+        for (int s = 0; s < shots.size(); s++)
+            data[i++] = (byte) shots.get(s);
+        return data;
+    }
+
+    /**
+     * Rebuilds a game from a snapshot.
+     *
+     * @param data the snapshot bytes
+     * @return a new game in the same state as the encoded one
+     * @throws IllegalArgumentException if the data is not a valid snapshot
+     */
+    public static Game decode(byte[] data) {
+        assert data != null;
+
+        if (data.length < 2 || data[0] != VERSION)
+            throw new IllegalArgumentException("ERROR! unsupported snapshot");
+
+        int i = 1;
+        int ships = data[i++] & 0xFF;
+        if (data.length < i + ships * SHIP_BYTES + 10)
+            throw new IllegalArgumentException("ERROR! truncated snapshot");
+        Fleet fleet = new Fleet();
+        Compass[] bearings = Compass.values();
+        for (int s = 0; s < ships; s++) {
+            int kind = data[i++] & 0xFF;
+            int bearing = data[i++] & 0xFF;
+            int row = data[i++];
+            int column = data[i++];
+            if (kind >= ShipKind.count() || bearing >= bearings.length)
+                throw new IllegalArgumentException("ERROR! invalid ship in snapshot");
+            if (!fleet.addShip(ShipKind.get(kind).build(bearings[bearing], new Position(row, column))))
+                throw new IllegalArgumentException("ERROR! invalid fleet in snapshot");
+        }
+
+        int invalid = getInt(data, i);
+        int repeated = getInt(data, i + 4);
+        i += 8;
+        int shots = ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+        i += 2;
+        if (data.length != i + shots)
+            throw new IllegalArgumentException("ERROR! truncated snapshot");
+
+        Game game = new Game(fleet);
+        for (int s = 0; s < shots; s++) {
+            int cell = data[i++] & 0xFF;
+            if (cell >= Bitboard.CELLS)
+                throw new IllegalArgumentException("ERROR! invalid shot in snapshot");
+            game.fireAt(Bitboard.rowOf(cell), Bitboard.columnOf(cell));
+        }
+        game.restoreCounters(invalid, repeated);
+        return game;
+    }
+
+    /**
+     * Writes a big-endian integer.
+     *
+     * @param data the destination
+     * @param i the offset to write at
+     * @param value the value
+     * @return the offset after the value
+     */
+    private static int putInt(byte[] data, int i, int value) {
+        data[i] = (byte) (value >>> 24);
+        data[i + 1] = (byte) (value >>> 16);
+        data[i + 2] = (byte) (value >>> 8);
+        data[i + 3] = (byte) value;
+        return i + 4;
+    }
+
+    /**
+     * Reads a big-endian integer.
+     *
+     * @param data the source
+     * @param i the offset to read from
+     * @return the value
+     */
+    private static int getInt(byte[] data, int i) {
+        return ((data[i] & 0xFF) << 24) | ((data[i + 1] & 0xFF) << 16) |
+                ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+    }
+}
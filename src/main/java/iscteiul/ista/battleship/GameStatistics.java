@@ -0,0 +1,298 @@
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+
+/**
+ * Streaming accumulator of statistics over many simulated games.
+ *
+ * <p>The accumulator is fed one event at a time (shot, hit, sink, game
+ * over and undone shot) and keeps only fixed-size primitive counters, so its memory use does
+ * not grow with the number of games and no per-game history is ever stored.
+ * It collects:</p>
+ * <ul>
+ *     <li>per-cell heatmaps of shots and hits</li>
+ *     <li>per-kind placement frequencies, i.e. how often each cell holds a ship of each kind</li>
+ *     <li>per-kind histograms of the number of shots fired when a ship of that kind sank</li>
+ *     <li>a histogram of the number of shots needed to finish a game</li>
+ * </ul>
+ *
+ * <p>The accumulator is a {@link GameListener}, so it can follow a
+ * {@link Game} directly; {@link #attach(Game)} registers it and starts
+ * counting the shots of that game. Each game starts with
+ * {@link #recordFleet} or {@link #attach}, so that a game abandoned before
+ * it was over does not carry its shots into the next one. An instance is
+ * not thread-safe: each
+ * simulation thread should feed its own accumulator and the partial
+ * results combined with {@link #merge}.</p>
+ */
+public class GameStatistics implements GameListener {
+
+    /** Number of known ship kinds. */
+    private static final int KINDS = PlacementIndex.getInstance().getKindCount();
+
+    /** Highest shot count tracked by the histograms; a game has at most one valid shot per cell. */
+    private static final int MAX_SHOTS = Bitboard.CELLS;
+
+    /** Number of shots fired at each cell. */
+    private final long[] shots = new long[Bitboard.CELLS];
+
+    /** Number of hits at each cell. */
+    private final long[] hits = new long[Bitboard.CELLS];
+
+    /** Number of fleets with a ship of each kind at each cell, indexed by {@code kind * CELLS + cell}. */
+    private final long[] placements = new long[KINDS * Bitboard.CELLS];
+
+    /** Number of ships of each kind sunk after each shot count, indexed by {@code kind * (MAX_SHOTS + 1) + shots}. */
+    private final long[] shotsToSink = new long[KINDS * (MAX_SHOTS + 1)];
+
+    /** Number of games finished after each shot count. */
+    private final long[] shotsPerGame = new long[MAX_SHOTS + 1];
+
+    /** Number of fleets recorded. */
+    private long fleets;
+
+    /** Number of games finished. */
+    private long games;
+
+    /** Number of valid shots fired in the current game. */
+    private int gameShots;
+
+    /** Number of valid shots of the last game finished, restored if its last shot is undone. */
+    private int finishedShots;
+
+    /**
+     * Starts following a game: records its fleet, as {@link #recordFleet},
+     * and registers the accumulator as a listener of the game. The shots
+     * already fired in the game count towards the shots to sink and to
+     * finish it, but not towards the heatmaps.
+     *
+     * @param game the game to follow
+     */
+    public void attach(Game game) {
+        assert game != null;
+
+        recordFleet(game.getFleet());
+        gameShots = Math.min(game.getShots().size(), MAX_SHOTS);
+        game.addListener(this);
+    }
+
+    /**
+     * Records the layout of a fleet in the placement frequency maps and
+     * starts a new game, discarding the shots of a game not finished.
+     *
+     * @param fleet the fleet about to be played
+     */
+    public void recordFleet(IFleet fleet) {
+        assert fleet != null;
+
+        gameShots = 0;
+        for (IShip s : fleet.getShips()) {
+            int kind = PlacementIndex.kindOf(s);
+            if (kind < 0)
+                continue;
+            for (IPosition p : s.getPositions())
+                if (Bitboard.isInside(p.getRow(), p.getColumn()))
+                    placements[kind * Bitboard.CELLS + Bitboard.cell(p.getRow(), p.getColumn())]++;
+        }
+        fleets++;
+    }
+
+    /**
+     * Records a valid shot fired in the current game.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    @Override
+    public void shotFired(int row, int column) {
+        shots[Bitboard.cell(row, column)]++;
+        if (gameShots < MAX_SHOTS)
+            gameShots++;
+    }
+
+    /**
+     * Records a shot that hit a ship.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    @Override
+    public void shipHit(int row, int column) {
+        hits[Bitboard.cell(row, column)]++;
+    }
+
+    /**
+     * Records a ship sunk by the last shot of the current game.
+     *
+     * @param ship the sunk ship
+     */
+    @Override
+    public void shipSunk(IShip ship) {
+        int kind = PlacementIndex.kindOf(ship);
+        if (kind >= 0)
+            shotsToSink[kind * (MAX_SHOTS + 1) + gameShots]++;
+    }
+
+    /**
+     * Records the end of the current game and starts a new one.
+     */
+    @Override
+    public void gameOver() {
+        shotsPerGame[gameShots]++;
+        games++;
+        finishedShots = gameShots;
+        gameShots = 0;
+    }
+
+    /**
+     * Removes a shot taken back from the counters, reopening the last game
+     * finished if the shot ended it.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     * @param outcome the outcome the shot had
+     */
+    @Override
+    public void shotUndone(int row, int column, int outcome) {
+        if (!ShotOutcome.isValid(outcome))
+            return;
+        if (ShotOutcome.isGameOver(outcome)) {
+            shotsPerGame[finishedShots]--;
+            games--;
+            gameShots = finishedShots;
+        }
+        ShipKind kind = ShotOutcome.kind(outcome);
+        if (ShotOutcome.isSunk(outcome) && kind != null && kind.ordinal() < KINDS)
+            shotsToSink[kind.ordinal() * (MAX_SHOTS + 1) + gameShots]--;
+
+        int cell = Bitboard.cell(row, column);
+        shots[cell]--;
+        if (ShotOutcome.isHit(outcome))
+            hits[cell]--;
+        if (gameShots > 0)
+            gameShots--;
+    }
+
+    /**
+     * Adds the counters of another accumulator to this one. The game in
+     * progress in {@code other}, if any, is not included.
+     *
+     * @param other the accumulator to merge
+     */
+    public void merge(GameStatistics other) {
+        assert other != null;
+
+        BoardOps.add(shots, other.shots);
+        BoardOps.add(hits, other.hits);
+        BoardOps.add(placements, other.placements);
+        BoardOps.add(shotsToSink, other.shotsToSink);
+        BoardOps.add(shotsPerGame, other.shotsPerGame);
+        fleets += other.fleets;
+        games += other.games;
+    }
+
+    /**
+     * Returns the number of games finished.
+     *
+     * @return the number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of shots fired at a cell over all games.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return the number of shots
+     */
+    public long getShots(int row, int column) {
+        return shots[Bitboard.cell(row, column)];
+    }
+
+    /**
+     * Returns the number of hits at a cell over all games.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return the number of hits
+     */
+    public long getHits(int row, int column) {
+        return hits[Bitboard.cell(row, column)];
+    }
+
+    /**
+     * Returns the average number of shots fired when a ship of the given kind sank.
+     *
+     * @param shipKind the ship kind, as accepted by {@link Ship#buildShip}
+     * @return the average shot count, or {@code 0} if no such ship was sunk
+     */
+    public double getAverageShotsToSink(String shipKind) {
+        ShipKind k = ShipKind.byId(shipKind);
+        if (k == null || k.ordinal() >= KINDS)
+            return 0;
+        int kind = k.ordinal();
+        long n = 0;
+        long sum = 0;
+        for (int s = 0; s <= MAX_SHOTS; s++) {
+            long count = shotsToSink[kind * (MAX_SHOTS + 1) + s];
+            n += count;
+            sum += count * s;
+        }
+        return n == 0 ? 0 : (double) sum / n;
+    }
+
+    /**
+     * Writes the per-cell statistics as CSV, one line per cell, with the
+     * columns {@code row,column,shots,hits} followed by the placement
+     * frequency of each ship kind.
+     *
+     * @param out the destination of the CSV text
+     * @throws IOException if writing fails
+     */
+    public void writeCellsCsv(Appendable out) throws IOException {
+        out.append("row,column,shots,hits");
+        for (int kind = 0; kind < KINDS; kind++)
+            out.append(',').append(ShipKind.get(kind).getId());
+        out.append('\n');
+
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            out.append(Integer.toString(Bitboard.rowOf(cell))).append(',')
+                    .append(Integer.toString(Bitboard.columnOf(cell))).append(',')
+                    .append(Long.toString(shots[cell])).append(',')
+                    .append(Long.toString(hits[cell]));
+            for (int kind = 0; kind < KINDS; kind++)
+                out.append(',').append(Long.toString(placements[kind * Bitboard.CELLS + cell]));
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Writes the shot-count histograms as CSV, one line per shot count, with
+     * the columns {@code shots,games} followed by the number of ships of each
+     * kind sunk at that shot count. Shot counts never reached are omitted.
+     *
+     * @param out the destination of the CSV text
+     * @throws IOException if writing fails
+     */
+    public void writeShotsCsv(Appendable out) throws IOException {
+        out.append("shots,games");
+        for (int kind = 0; kind < KINDS; kind++)
+            out.append(',').append(ShipKind.get(kind).getId());
+        out.append('\n');
+
+        for (int s = 0; s <= MAX_SHOTS; s++) {
+            boolean used = shotsPerGame[s] != 0;
+            for (int kind = 0; kind < KINDS && !used; kind++)
+                used = shotsToSink[kind * (MAX_SHOTS + 1) + s] != 0;
+            if (!used)
+                continue;
+
+            out.append(Integer.toString(s)).append(',').append(Long.toString(shotsPerGame[s]));
+            for (int kind = 0; kind < KINDS; kind++)
+                out.append(',').append(Long.toString(shotsToSink[kind * (MAX_SHOTS + 1) + s]));
+            out.append('\n');
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package iscteiul.ista.battleship;
+
+import java.util.Random;
+
+/**
+ * An automated player using the classic hunt and target strategy.
+ *
+ * <p>While no damaged ship is known the player hunts, firing at random cells.
+ * After a hit it targets the horizontal and vertical neighbours of the hit
+ * cells until the ship sinks. Since ships may not touch, once a ship sinks
+ * every cell around it is known to be water and is never fired at.</p>
+ */
+public class HuntTargetPlayer implements IPlayer {
+
+    /** Source of randomness. */
+    private final Random rnd;
+
+    /** Cells fired at or known to be water. */
+    private final long[] known;
+
+    /** Cells waiting to be targeted, used as a stack. */
+    private final int[] targets;
+
+    /** Number of cells in the target stack. */
+    private int targetCount;
+
+    /** Cells not drawn yet by the hunt; the first {@code remaining} entries are valid. */
+    private final int[] cells;
+
+    /** Number of entries of {@code cells} still to draw. */
+    private int remaining;
+
+    /**
+     * Creates a hunt and target player.
+     *
+     * @param rnd the source of randomness
+     */
+    public HuntTargetPlayer(Random rnd) {
+        assert rnd != null;
+
+        this.rnd = rnd;
+        this.known = Bitboard.newMask();
+        this.targets = new int[4 * Bitboard.CELLS];
+        this.cells = new int[Bitboard.CELLS];
+        for (int c = 0; c < Bitboard.CELLS; c++)
+            cells[c] = c;
+        this.remaining = Bitboard.CELLS;
+    }
+
+    @Override
+    public IPosition nextShot() {
+        int cell = -1;
+        while (targetCount > 0 && cell < 0) {
+            int t = targets[--targetCount];
+            if (!Bitboard.get(known, t))
+                cell = t;
+        }
+        while (cell < 0 && remaining > 0) {
+            int i = rnd.nextInt(remaining);
+            int c = cells[i];
+            cells[i] = cells[--remaining];
+            if (!Bitboard.get(known, c))
+                cell = c;
+        }
+        if (cell < 0)
+            return null;
+        Bitboard.set(known, cell);
+        return new Position(Bitboard.rowOf(cell), Bitboard.columnOf(cell));
+    }
+
+    @Override
+    public void shotResult(IPosition shot, boolean hit, IShip sunk) {
+        if (sunk != null) {
+            for (IPosition p : sunk.getPositions())
+                if (Bitboard.isInside(p.getRow(), p.getColumn()))
+                    BoardGeometry.orNeighbourhood(Bitboard.cell(p.getRow(), p.getColumn()), known);
+        } else if (hit) {
+            push(shot.getRow() - 1, shot.getColumn());
+            push(shot.getRow() + 1, shot.getColumn());
+            push(shot.getRow(), shot.getColumn() - 1);
+            push(shot.getRow(), shot.getColumn() + 1);
+        }
+    }
+
+    /**
+     * Adds a cell to the target stack if it is on the board and not known yet.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     */
+    private void push(int row, int column) {
+        if (Bitboard.isInside(row, column) && !Bitboard.get(known, Bitboard.cell(row, column))
+                && targetCount < targets.length)
+            targets[targetCount++] = Bitboard.cell(row, column);
+    }
+}
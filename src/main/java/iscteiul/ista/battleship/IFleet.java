@@ -12,9 +12,10 @@ public interface IFleet {
      */
     Integer BOARD_SIZE = 10;
 
-    /** * The total number of ships a player has in their fleet. 
+    /** * The total number of ships a player has in their fleet:
+     * 1 galleon, 1 frigate, 2 carracks, 3 caravels and 4 barges.
      */
-    Integer FLEET_SIZE = 10;
+    Integer FLEET_SIZE = 11;
 
     /**
      * Retrieves all the ships currently in the fleet.
@@ -54,6 +55,20 @@ public interface IFleet {
      */
     IShip shipAt(IPosition pos);
 
+    /**
+     * Finds the ship located at the given coordinates. Implementations should
+     * override the default, which goes through {@link #shipAt(IPosition)}, to
+     * avoid creating any object.
+     *
+     * @param row The row to check.
+     * @param column The column to check.
+     * @return The index of the ship in {@link #getShips()}, or -1 if there is no ship at that coordinate.
+     */
+    default int shipIndexAt(int row, int column) {
+        IShip s = shipAt(new Position(row, column));
+        return s == null ? -1 : getShips().indexOf(s);
+    }
+
     /**
      * Prints the current status of the fleet to the console.
      * This may include details about floating and sunken ships.
@@ -16,6 +16,51 @@ public interface IGame {
      */
     IShip fire(IPosition pos);
 
+    /**
+     * Fires a shot at the specified coordinates and reports its full outcome.
+     * The shot is handled exactly as by {@link #fire(IPosition)}.
+     *
+     * <p>The default fires through {@link #fire(IPosition)} and derives the
+     * outcome from the counters of the game, so it reports the kind of a
+     * sunk ship but not the index of the ship hit. Implementations should
+     * override it to report the full outcome without creating any object.</p>
+     *
+     * @param row The row fired at.
+     * @param column The column fired at.
+     * @return The outcome of the shot, as a {@link ShotOutcome} code.
+     */
+    default int fireAt(int row, int column) {
+        int invalid = getInvalidShots();
+        int repeated = getRepeatedShots();
+        int hits = getHits();
+        IShip sunk = fire(new Position(row, column));
+        if (getInvalidShots() != invalid)
+            return ShotOutcome.INVALID;
+        if (getRepeatedShots() != repeated)
+            return ShotOutcome.REPEATED;
+        if (getHits() == hits)
+            return ShotOutcome.MISS;
+        if (sunk == null)
+            return ShotOutcome.hit(false, -1, -1, false);
+        ShipKind kind = ShipKind.of(sunk);
+        return ShotOutcome.hit(true, -1, kind == null ? -1 : kind.ordinal(), getRemainingShips() == 0);
+    }
+
+    /**
+     * Registers a listener to be notified of the outcome of every shot.
+     *
+     * @param listener The {@link GameListener} to add.
+     */
+    void addListener(GameListener listener);
+
+    /**
+     * Removes a previously registered listener. Nothing happens if the
+     * listener is not registered.
+     *
+     * @param listener The {@link GameListener} to remove.
+     */
+    void removeListener(GameListener listener);
+
     /**
      * Retrieves the history of all shots fired during the game.
      *
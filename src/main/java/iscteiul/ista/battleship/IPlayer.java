@@ -0,0 +1,27 @@
+package iscteiul.ista.battleship;
+
+/**
+ * Represents one side of a two-player {@link Match}: the source of the shots
+ * fired at the opponent's fleet, whether it is a person connected remotely
+ * or an automated strategy.
+ */
+public interface IPlayer {
+
+    /**
+     * Retrieves the next shot this player wants to fire.
+     * A player waiting for input that has not arrived yet returns null,
+     * and the match is resumed once the player has a shot available.
+     *
+     * @return The {@link IPosition} to fire at, or null if no shot is available yet.
+     */
+    IPosition nextShot();
+
+    /**
+     * Informs the player of the outcome of a shot it fired.
+     *
+     * @param shot The {@link IPosition} that was targeted.
+     * @param hit true if the shot hit a ship, false otherwise.
+     * @param sunk The {@link IShip} sunk by the shot, or null if no ship was sunk.
+     */
+    void shotResult(IPosition shot, boolean hit, IShip sunk);
+}
@@ -110,4 +110,12 @@ public interface IShip {
      * @param pos The {@link IPosition} where the ship was hit.
      */
     void shoot(IPosition pos);
+
+    /**
+     * Takes back a hit registered by {@link #shoot(IPosition)}, so that the
+     * position is no longer hit. Used by {@link Game#undo()}.
+     *
+     * @param pos The {@link IPosition} of the hit to take back.
+     */
+    void unshoot(IPosition pos);
 }
\ No newline at end of file
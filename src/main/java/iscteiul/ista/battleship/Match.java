@@ -0,0 +1,199 @@
+package iscteiul.ista.battleship;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A two-player Battleship match.
+ *
+ * <p>Each player owns a fleet and fires at the opponent's fleet through a
+ * {@link Game}. Players take turns firing volleys of
+ * {@link Tasks#NUMBER_SHOTS} shots, as in {@link Tasks#firingRound}, and the
+ * first player to sink every ship of the opponent's fleet wins.</p>
+ *
+ * <p>A match never blocks waiting for a player: {@link #step()} plays as much
+ * of the current volley as the player has shots available and then returns,
+ * keeping its progress, so that a single {@link MatchScheduler} thread can
+ * drive many matches at once.</p>
+ */
+public class Match {
+
+    /**
+     * The state of a match after a call to {@link #step()}.
+     */
+    public enum Status {
+        /** The match can keep playing immediately. */
+        READY,
+        /** The current player has no shot available; the match must be woken up when it has. */
+        WAITING,
+        /** The match is over. */
+        FINISHED
+    }
+
+    /** The two players. */
+    private final IPlayer[] players;
+
+    /** The fleets of the two players. */
+    private final IFleet[] fleets;
+
+    /** The game of each player, recording the shots it fired at the opponent's fleet. */
+    private final Game[] games;
+
+    /** Whether the match is currently in a scheduler's run queue. */
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    /** Index of the player whose turn it is. */
+    private int turn;
+
+    /** Number of shots already fired in the current volley. */
+    private int volleyShots;
+
+    /** Number of complete turns played. */
+    private int turns;
+
+    /** Index of the winner, or {@code -1} while the match is in progress. */
+    private int winner;
+
+    /**
+     * Creates a match between two players, the first of which starts.
+     *
+     * @param first the first player
+     * @param firstFleet the fleet of the first player
+     * @param second the second player
+     * @param secondFleet the fleet of the second player
+     */
+    public Match(IPlayer first, IFleet firstFleet, IPlayer second, IFleet secondFleet) {
+        assert first != null && second != null;
+        assert firstFleet != null && secondFleet != null;
+        assert firstFleet.getShips().size() == secondFleet.getShips().size();
+
+        players = new IPlayer[]{first, second};
+        fleets = new IFleet[]{firstFleet, secondFleet};
+        games = new Game[]{new Game(secondFleet), new Game(firstFleet)};
+        winner = -1;
+    }
+
+    /**
+     * Plays the current volley until it is complete, the current player runs
+     * out of available shots, or the match ends. When the volley is complete
+     * the turn passes to the other player.
+     *
+     * @return the state of the match after this step
+     */
+    public Status step() {
+        if (winner >= 0)
+            return Status.FINISHED;
+
+        IPlayer player = players[turn];
+        Game game = games[turn];
+        while (volleyShots < Tasks.NUMBER_SHOTS) {
+            IPosition shot = player.nextShot();
+            if (shot == null)
+                return Status.WAITING;
+
+            int outcome = game.fireAt(shot.getRow(), shot.getColumn());
+            volleyShots++;
+            IShip sunk = ShotOutcome.isSunk(outcome) ? fleets[1 - turn].getShips().get(ShotOutcome.ship(outcome)) : null;
+            player.shotResult(shot, ShotOutcome.isHit(outcome), sunk);
+
+            if (ShotOutcome.isGameOver(outcome)) {
+                winner = turn;
+                turns++;
+                return Status.FINISHED;
+            }
+        }
+
+        volleyShots = 0;
+        turn = 1 - turn;
+        turns++;
+        return Status.READY;
+    }
+
+    /**
+     * Plays the match to the end. All players must always have a shot available.
+     *
+     * @return the index of the winner (0 or 1)
+     * @throws IllegalStateException if a player has no shot available
+     */
+    public int play() {
+        Status status;
+        do {
+            status = step();
+            if (status == Status.WAITING)
+                throw new IllegalStateException("ERROR! player " + turn + " has no shot available");
+        } while (status != Status.FINISHED);
+        return winner;
+    }
+
+    /**
+     * Returns the index of the player whose turn it is.
+     *
+     * @return 0 for the first player, 1 for the second
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the number of complete turns played so far, counting the
+     * final, possibly incomplete, volley of a finished match.
+     *
+     * @return the number of turns
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * Returns the winner of the match.
+     *
+     * @return the index of the winner, or {@code -1} if the match is still in progress
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Checks whether the match is over.
+     *
+     * @return {@code true} if one of the players has won
+     */
+    public boolean isFinished() {
+        return winner >= 0;
+    }
+
+    /**
+     * Returns a player of the match.
+     *
+     * @param player the index of the player (0 or 1)
+     * @return the player
+     */
+    public IPlayer getPlayer(int player) {
+        return players[player];
+    }
+
+    /**
+     * Returns the game recording the shots fired by a player at the opponent.
+     *
+     * @param player the index of the player (0 or 1)
+     * @return the game of the player
+     */
+    public IGame getGame(int player) {
+        return games[player];
+    }
+
+    /**
+     * Marks the match as queued in a scheduler.
+     *
+     * @return {@code true} if the match was not queued before
+     */
+    boolean enqueue() {
+        return queued.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks the match as no longer queued in a scheduler.
+     */
+    void dequeue() {
+        queued.set(false);
+    }
+}
@@ -0,0 +1,160 @@
+package iscteiul.ista.battleship;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Drives many {@link Match}es from a single thread using a run queue.
+ *
+ * <p>Matches that can make progress are kept in a FIFO run queue. The
+ * scheduler thread repeatedly takes the match at the head of the queue and
+ * plays one volley with {@link Match#step()}; if the match can keep playing it
+ * goes back to the tail of the queue, so all ready matches progress fairly.
+ * A match whose current player has no shot available is parked outside the
+ * queue until {@link #wake(Match)} is called, typically by the thread that
+ * received the player's input. No thread is ever dedicated to a single
+ * match.</p>
+ *
+ * <p>{@link #submit(Match)}, {@link #wake(Match)} and {@link #stop()} may be
+ * called from any thread; the run loop itself must only be executed by one
+ * thread at a time.</p>
+ */
+public class MatchScheduler {
+
+    /** Time the scheduler thread sleeps when the run queue is empty. */
+    private static final long IDLE_NANOS = 1_000_000L;
+
+    /** Matches ready to play. */
+    private final Queue<Match> runQueue = new ConcurrentLinkedQueue<>();
+
+    /** Number of matches submitted and not finished yet. */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /** Called with each match as soon as it finishes. */
+    private final Consumer<Match> onFinished;
+
+    /** The thread executing {@link #run()}, if any. */
+    private volatile Thread runner;
+
+    /** Whether {@link #run()} should return. */
+    private volatile boolean stopped;
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param onFinished called, on the scheduler thread, with each match that finishes
+     */
+    public MatchScheduler(Consumer<Match> onFinished) {
+        assert onFinished != null;
+
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Adds a new match to the scheduler.
+     *
+     * @param match the match to play
+     */
+    public void submit(Match match) {
+        assert match != null;
+
+        active.incrementAndGet();
+        wake(match);
+    }
+
+    /**
+     * Puts a parked match back in the run queue, for instance after one of its
+     * players has received new input. Waking a match that is already queued
+     * has no effect.
+     *
+     * @param match the match to resume
+     */
+    public void wake(Match match) {
+        if (match.enqueue()) {
+            runQueue.add(match);
+            Thread t = runner;
+            if (t != null)
+                LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Plays one volley of the match at the head of the run queue.
+     *
+     * @return {@code false} if the run queue was empty
+     */
+    public boolean runOnce() {
+        Match match = runQueue.poll();
+        if (match == null)
+            return false;
+
+        match.dequeue();
+        Match.Status status = match.step();
+        if (status == Match.Status.READY) {
+            wake(match);
+        } else if (status == Match.Status.FINISHED) {
+            active.decrementAndGet();
+            onFinished.accept(match);
+        }
+        return true;
+    }
+
+    /**
+     * Plays queued matches until the run queue is empty, i.e. until every
+     * active match is finished or waiting for input.
+     *
+     * @return the number of volleys played
+     */
+    public long runUntilIdle() {
+        long steps = 0;
+        while (runOnce())
+            steps++;
+        return steps;
+    }
+
+    /**
+     * Runs the scheduler loop on the calling thread until {@link #stop()} is
+     * called, sleeping while no match is ready.
+     */
+    public void run() {
+        runner = Thread.currentThread();
+        try {
+            while (!stopped)
+                if (!runOnce())
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+        } finally {
+            runner = null;
+        }
+    }
+
+    /**
+     * Asks the scheduler loop to return.
+     */
+    public void stop() {
+        stopped = true;
+        Thread t = runner;
+        if (t != null)
+            LockSupport.unpark(t);
+    }
+
+    /**
+     * Returns the number of matches submitted and not finished yet.
+     *
+     * @return the number of active matches
+     */
+    public int getActiveMatches() {
+        return active.get();
+    }
+
+    /**
+     * Returns the number of matches currently ready to play.
+     *
+     * @return the size of the run queue
+     */
+    public int getQueuedMatches() {
+        return runQueue.size();
+    }
+}
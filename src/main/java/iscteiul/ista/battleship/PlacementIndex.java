@@ -0,0 +1,445 @@
+package iscteiul.ista.battleship;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precomputed index of every legal placement of each ship kind on the board.
+ * A placement is a ship kind together with a bearing and a starting position
+ * such that the whole ship lies inside the board.
+ *
+ * <p>For each placement the index stores the bitmask of the cells it occupies
+ * (see {@link Bitboard}) and the bitmask of its halo, i.e. the occupied cells
+ * plus all their neighbours, which is the area no other ship may touch.
+ * Placements of the same kind that occupy exactly the same cells (for example
+ * a Barge in any bearing, or a Carrack facing north or south) are stored only
+ * once, so enumerating the placements of a kind never yields the same layout
+ * twice.</p>
+ *
+ * <p>Since the board is fixed, the index is built once, on first use, and
+ * shared by every game.</p>
+ */
+public final class PlacementIndex {
+
+    /** The bearings used to generate placements. */
+    private static final Compass[] BEARINGS = {Compass.NORTH, Compass.SOUTH, Compass.EAST, Compass.WEST};
+
+    /** Number of bearings used to generate placements. */
+    private static final int NUM_BEARINGS = BEARINGS.length;
+
+    /**
+     * Lazy holder of the shared index instance.
+     */
+    private static final class Holder {
+        /** The shared index. */
+        private static final PlacementIndex INSTANCE = new PlacementIndex();
+    }
+
+    /**
+     * Returns the shared placement index, building it on first use.
+     *
+     * @return the placement index
+     */
+    public static PlacementIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the kind index of a ship, i.e. the {@link ShipKind#ordinal()} of its kind.
+     *
+     * @param s the ship
+     * @return the kind index, or {@code -1} if the ship is of a kind unknown to the index
+     */
+    static int kindOf(IShip s) {
+        ShipKind kind = ShipKind.of(s);
+        return kind != null && kind.ordinal() < getInstance().kindCount ? kind.ordinal() : -1;
+    }
+
+    // -----------------------------------------------------
+
+    /** Number of ship kinds in the index: those registered when it was built. */
+    private final int kindCount;
+
+    /** First placement of each kind; placements of kind k are in [kindStart[k], kindStart[k + 1]). */
+    private final int[] kindStart;
+
+    /** Kind of each placement. */
+    private final int[] kinds;
+
+    /** Bearing of each placement. */
+    private final Compass[] bearings;
+
+    /** Starting row of each placement. */
+    private final int[] rows;
+
+    /** Starting column of each placement. */
+    private final int[] columns;
+
+    /** Occupied cells of each placement, {@link Bitboard#WORDS} words per placement. */
+    private final long[] masks;
+
+    /** Halo (occupied cells plus neighbours) of each placement, {@link Bitboard#WORDS} words per placement. */
+    private final long[] halos;
+
+    /** Cells occupied by each placement, in increasing order. */
+    private final int[][] cells;
+
+    /** Placement at each (kind, bearing, cell), or {@code -1} if it falls off the board. */
+    private final int[] lookup;
+
+    /**
+     * Builds the index by constructing every ship kind in every bearing at
+     * every cell and keeping those that fit inside the board.
+     */
+    private PlacementIndex() {
+        kindCount = ShipKind.count();
+        kindStart = new int[kindCount + 1];
+        lookup = new int[kindCount * NUM_BEARINGS * Bitboard.CELLS];
+
+        List<int[]> found = new ArrayList<>();
+        List<long[]> foundMasks = new ArrayList<>();
+
+        for (int k = 0; k < kindCount; k++) {
+            kindStart[k] = found.size();
+            for (int b = 0; b < NUM_BEARINGS; b++) {
+                for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+                    int row = Bitboard.rowOf(cell);
+                    int column = Bitboard.columnOf(cell);
+                    Ship s = ShipKind.get(k).build(BEARINGS[b], new Position(row, column));
+                    long[] mask = Bitboard.of(s.getPositions());
+                    int id = -1;
+                    if (mask != null) {
+                        for (int p = kindStart[k]; p < found.size() && id < 0; p++)
+                            if (Arrays.equals(foundMasks.get(p), mask))
+                                id = p;
+                        if (id < 0) {
+                            id = found.size();
+                            found.add(new int[]{k, b, row, column});
+                            foundMasks.add(mask);
+                        }
+                    }
+                    lookup[(k * NUM_BEARINGS + b) * Bitboard.CELLS + cell] = id;
+                }
+            }
+        }
+        kindStart[kindCount] = found.size();
+
+        int n = found.size();
+        kinds = new int[n];
+        bearings = new Compass[n];
+        rows = new int[n];
+        columns = new int[n];
+        masks = new long[n * Bitboard.WORDS];
+        halos = new long[n * Bitboard.WORDS];
+        cells = new int[n][];
+        for (int p = 0; p < n; p++) {
+            int[] f = found.get(p);
+            kinds[p] = f[0];
+            bearings[p] = BEARINGS[f[1]];
+            rows[p] = f[2];
+            columns[p] = f[3];
+            long[] mask = foundMasks.get(p);
+            System.arraycopy(mask, 0, masks, p * Bitboard.WORDS, Bitboard.WORDS);
+            System.arraycopy(BoardGeometry.halo(mask), 0, halos, p * Bitboard.WORDS, Bitboard.WORDS);
+            cells[p] = new int[Bitboard.count(mask)];
+            for (int cell = 0, i = 0; cell < Bitboard.CELLS; cell++)
+                if (Bitboard.get(mask, cell))
+                    cells[p][i++] = cell;
+        }
+    }
+
+    /**
+     * Returns the number of ship kinds in the index, i.e. the kinds registered
+     * in {@link ShipKind} when the index was built.
+     *
+     * @return the number of kinds
+     */
+    public int getKindCount() {
+        return kindCount;
+    }
+
+    /**
+     * Returns the total number of placements in the index.
+     *
+     * @return the number of placements
+     */
+    public int size() {
+        return kinds.length;
+    }
+
+    /**
+     * Returns the first placement of the given kind.
+     *
+     * @param kind the kind index
+     * @return the first placement id of the kind
+     */
+    public int firstOf(int kind) {
+        return kindStart[kind];
+    }
+
+    /**
+     * Returns the placement following the last one of the given kind.
+     *
+     * @param kind the kind index
+     * @return the exclusive upper bound of the placement ids of the kind
+     */
+    public int endOf(int kind) {
+        return kindStart[kind + 1];
+    }
+
+    /**
+     * Looks up the placement of a ship kind with the given bearing and
+     * starting position.
+     *
+     * @param kind the kind index
+     * @param bearing the bearing of the ship
+     * @param row the starting row
+     * @param column the starting column
+     * @return the placement id, or {@code -1} if the ship would not fit inside the board
+     */
+    public int placementOf(int kind, Compass bearing, int row, int column) {
+        if (!Bitboard.isInside(row, column))
+            return -1;
+        for (int b = 0; b < NUM_BEARINGS; b++)
+            if (BEARINGS[b] == bearing)
+                return lookup[(kind * NUM_BEARINGS + b) * Bitboard.CELLS + Bitboard.cell(row, column)];
+        return -1;
+    }
+
+    /**
+     * Returns the kind of a placement.
+     *
+     * @param p the placement id
+     * @return the kind index
+     */
+    public int getKind(int p) {
+        return kinds[p];
+    }
+
+    /**
+     * Returns the bearing of a placement.
+     *
+     * @param p the placement id
+     * @return the bearing
+     */
+    public Compass getBearing(int p) {
+        return bearings[p];
+    }
+
+    /**
+     * Returns the starting row of a placement.
+     *
+     * @param p the placement id
+     * @return the starting row
+     */
+    public int getRow(int p) {
+        return rows[p];
+    }
+
+    /**
+     * Returns the starting column of a placement.
+     *
+     * @param p the placement id
+     * @return the starting column
+     */
+    public int getColumn(int p) {
+        return columns[p];
+    }
+
+    /**
+     * Checks whether a placement occupies the given cell.
+     *
+     * @param p the placement id
+     * @param cell the cell index
+     * @return {@code true} if the placement covers the cell
+     */
+    public boolean covers(int p, int cell) {
+        return (masks[p * Bitboard.WORDS + (cell >>> 6)] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Checks whether a placement occupies any cell of the given mask.
+     *
+     * @param p the placement id
+     * @param mask the cells to test
+     * @return {@code true} if the placement and the mask intersect
+     */
+    public boolean intersects(int p, long[] mask) {
+        int base = p * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            if ((masks[base + w] & mask[w]) != 0L)
+                return true;
+        return false;
+    }
+
+    /**
+     * Checks whether every cell of a placement is in the given mask.
+     *
+     * @param p the placement id
+     * @param mask the enclosing cells
+     * @return {@code true} if the placement lies entirely within the mask
+     */
+    public boolean isContainedIn(int p, long[] mask) {
+        int base = p * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            if ((masks[base + w] & ~mask[w]) != 0L)
+                return false;
+        return true;
+    }
+
+    /**
+     * Checks whether a placement occupies every cell of the given mask.
+     *
+     * @param p the placement id
+     * @param mask the cells that must be covered
+     * @return {@code true} if the mask lies entirely within the placement
+     */
+    public boolean coversAll(int p, long[] mask) {
+        int base = p * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            if ((mask[w] & ~masks[base + w]) != 0L)
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the cells occupied by a placement, in increasing order.
+     * The returned array is shared and must not be modified.
+     *
+     * @param p the placement id
+     * @return the cell indexes of the placement
+     */
+    int[] cellsOf(int p) {
+        return cells[p];
+    }
+
+    /**
+     * Returns one word of the mask of the cells occupied by a placement.
+     *
+     * @param p the placement id
+     * @param w the word index, below {@link Bitboard#WORDS}
+     * @return the word of the cell mask
+     */
+    long maskWord(int p, int w) {
+        return masks[p * Bitboard.WORDS + w];
+    }
+
+    /**
+     * Returns one word of the halo of a placement.
+     *
+     * @param p the placement id
+     * @param w the word index, below {@link Bitboard#WORDS}
+     * @return the word of the halo mask
+     */
+    long haloWord(int p, int w) {
+        return halos[p * Bitboard.WORDS + w];
+    }
+
+    /**
+     * Checks whether the halo of a placement touches any cell of the given mask,
+     * i.e. whether a ship in this placement would be too close to those cells.
+     *
+     * @param p the placement id
+     * @param mask the cells to test
+     * @return {@code true} if the halo and the mask intersect
+     */
+    public boolean haloIntersects(int p, long[] mask) {
+        int base = p * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            if ((halos[base + w] & mask[w]) != 0L)
+                return true;
+        return false;
+    }
+
+    /**
+     * Checks whether any cell of the given mask lies next to a placement
+     * without being covered by it. A hit in such a cell would belong to a
+     * ship touching this one, so the placement is then impossible.
+     *
+     * @param p the placement id
+     * @param mask the cells to test
+     * @return {@code true} if the border of the placement intersects the mask
+     */
+    public boolean borderIntersects(int p, long[] mask) {
+        int base = p * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            if ((halos[base + w] & ~masks[base + w] & mask[w]) != 0L)
+                return true;
+        return false;
+    }
+
+    /**
+     * Adds the cells of a placement to a mask.
+     *
+     * @param p the placement id
+     * @param target the mask to update
+     */
+    public void orMask(int p, long[] target) {
+        int base = p * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            target[w] |= masks[base + w];
+    }
+
+    /**
+     * Adds the halo of a placement to a mask.
+     *
+     * @param p the placement id
+     * @param target the mask to update
+     */
+    public void orHalo(int p, long[] target) {
+        int base = p * Bitboard.WORDS;
+        for (int w = 0; w < Bitboard.WORDS; w++)
+            target[w] |= halos[base + w];
+    }
+
+    /**
+     * Collects the placements of a kind that are compatible with the shots
+     * fired so far. A placement is compatible if it covers none of the
+     * {@code misses} and, when {@code hits} is not empty, covers at least
+     * one of the {@code hits}.
+     *
+     * @param kind the kind index
+     * @param misses the cells known to be water
+     * @param hits the cells known to hold a ship, or {@code null} for no constraint
+     * @param out the array receiving the compatible placement ids, at least
+     *            {@code endOf(kind) - firstOf(kind)} long
+     * @return the number of placement ids written to {@code out}
+     */
+    public int compatible(int kind, long[] misses, long[] hits, int[] out) {
+        boolean needHit = hits != null && !Bitboard.isEmpty(hits);
+        int n = 0;
+        for (int p = kindStart[kind]; p < kindStart[kind + 1]; p++)
+            if (!intersects(p, misses) && (!needHit || intersects(p, hits)))
+                out[n++] = p;
+        return n;
+    }
+
+    /**
+     * Counts the placements of a kind that are compatible with the shots
+     * fired so far, as defined in {@link #compatible(int, long[], long[], int[])}.
+     *
+     * @param kind the kind index
+     * @param misses the cells known to be water
+     * @param hits the cells known to hold a ship, or {@code null} for no constraint
+     * @return the number of compatible placements
+     */
+    public int countCompatible(int kind, long[] misses, long[] hits) {
+        boolean needHit = hits != null && !Bitboard.isEmpty(hits);
+        int n = 0;
+        for (int p = kindStart[kind]; p < kindStart[kind + 1]; p++)
+            if (!intersects(p, misses) && (!needHit || intersects(p, hits)))
+                n++;
+        return n;
+    }
+
+    /**
+     * Builds the ship corresponding to a placement.
+     *
+     * @param p the placement id
+     * @return a new ship in the given placement
+     */
+    public Ship toShip(int p) {
+        return ShipKind.get(kinds[p]).build(bearings[p], new Position(rows[p], columns[p]));
+    }
+}
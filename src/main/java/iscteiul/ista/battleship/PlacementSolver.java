@@ -0,0 +1,1588 @@
+package iscteiul.ista.battleship;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import iscteiul.ista.battleship.collections.IntArrayList;
+
+/**
+ * Backtracking search for complete fleet layouts satisfying extra
+ * constraints, for game modes where the usual placement rules are not enough.
+ *
+ * <p>A layout is a complete fleet, given as the placement ids of its ships in
+ * the {@link PlacementIndex}, where no two ships touch. On top of that the
+ * solver accepts:</p>
+ * <ul>
+ *     <li>forbidden cells, that no ship may cover, such as the
+ *     {@link #edgeCells() edges of the board}</li>
+ *     <li>pinned ships, fixed in place in every layout</li>
+ *     <li>a minimum gap, the number of empty cells required between ships
+ *     in every direction (1 with the usual rules)</li>
+ *     <li>arbitrary {@link Constraint} callbacks, checked for each ship
+ *     against the ships already placed</li>
+ * </ul>
+ *
+ * <p>Ships are placed one at a time, from the largest kind to the smallest,
+ * ships of the same kind in increasing placement order so that each layout
+ * is reached only once, and the cells blocked by the ships already placed
+ * are kept as a {@link Bitboard} mask. After each ship, the search checks
+ * that every kind still to place has at least as many free placements as it
+ * has ships, and backtracks at once otherwise. The search tree is split on the
+ * placements of the first ship and run on a {@link ForkJoinPool}.</p>
+ *
+ * <p>Without callbacks, layouts are counted by scanning the board cell by
+ * cell in row-major order instead, deciding at each cell whether a ship has
+ * its first cell there and which. The state reached at a cell is the number
+ * of ships still to place of each kind plus the blocked cells from that cell
+ * onwards, and the branches reaching the same state are merged into a
+ * {@link Layer} entry with the number of ways it is reached. Since ships
+ * only reach a few rows ahead, there are at most about a million states at
+ * any cell of the full board, and counting only keeps the states of the
+ * current cell. The states at a cell are split in parts on their hash;
+ * each step of the scan expands the parts in parallel on the
+ * {@link ForkJoinPool}, each into private parts of the next states, and
+ * then merges the private parts of each next part in parallel. Sampling
+ * also keeps the states at the start of each row, and then draws the ships
+ * of each row, from the last row up, among the ways of reaching the states
+ * drawn so far. Callbacks may depend on the whole layout and on the order
+ * in which ships are placed, so they disable the scan.</p>
+ *
+ * <p>The search by kind, used by {@link #find()} and with callbacks,
+ * records the states found to have no completions, and without callbacks
+ * the number of completions of each state, in a {@link Memo bounded memo
+ * table}, so that other branches reaching them are not searched again.</p>
+ *
+ * <p>{@link #count()} counts the layouts, {@link #sample(Random)} draws one
+ * uniformly at random among them, using the counts to weigh each choice, and
+ * {@link #find()} returns any of them as soon as it is found. The solver is
+ * configured before searching and must not be reconfigured during a search.</p>
+ */
+public class PlacementSolver {
+
+    /**
+     * Extra rule that the ships of a layout must satisfy.
+     */
+    @FunctionalInterface
+    public interface Constraint {
+
+        /**
+         * Checks whether the next ship may be placed in a placement, given
+         * the ships already placed. Pinned ships are placed first.
+         *
+         * @param p the placement id of the next ship
+         * @param layout the placement ids of the ships already placed, in its
+         *               first {@code placed} elements; must not be modified
+         * @param placed the number of ships already placed
+         * @return {@code true} if the placement is allowed
+         */
+        boolean allows(int p, int[] layout, int placed);
+    }
+
+    /**
+     * Number of placements of the first ship handled by a single task
+     * before it is split further.
+     */
+    private static final int SPLIT_THRESHOLD = 4;
+
+    /**
+     * Largest number of entries of the memo table of a search by kind
+     * (28 MiB). Once the table is full, new states evict older ones, which
+     * are searched again if reached again.
+     */
+    private static final int MEMO_ENTRIES = 1 << 20;
+
+    static {
+        // The memo table and the layers of the cell scan store blocked cells in two words.
+        if (Bitboard.WORDS != 2)
+            throw new ExceptionInInitializerError("ERROR! the solver needs masks of 2 words, not " + Bitboard.WORDS);
+    }
+
+    /**
+     * Bounded memo table of counts of sub-board states. A state is keyed on
+     * the two words of its mask of blocked cells plus a tag, a non-negative
+     * number standing for the rest of the state.
+     *
+     * <p>Entries are grouped in buckets of {@value #WAYS}, and a key is only
+     * stored in the bucket given by its hash. The table doubles whenever it
+     * is three quarters full, up to a maximum number of entries; from then
+     * on, a key stored in a full bucket evicts the oldest key of the bucket.
+     * The methods are synchronized, so the table may be shared by the tasks
+     * of a search.</p>
+     */
+    private static final class Memo {
+
+        /** Number of entries per bucket. */
+        private static final int WAYS = 4;
+
+        /** Initial number of entries. */
+        private static final int INITIAL_ENTRIES = 1 << 12;
+
+        /** Largest number of entries. */
+        private final int maxEntries;
+
+        /** The two mask words of the key of each entry. */
+        private long[] masks;
+
+        /** The tag of the key of each entry plus one, or {@code 0} for a free entry. */
+        private int[] tags;
+
+        /** The count of each entry. */
+        private long[] counts;
+
+        /** Number of keys stored. */
+        private int size;
+
+        /**
+         * Creates an empty table.
+         *
+         * @param maxEntries the largest number of entries, a power of two
+         */
+        Memo(int maxEntries) {
+            assert Integer.bitCount(maxEntries) == 1 && maxEntries >= WAYS;
+
+            this.maxEntries = maxEntries;
+            allocate(Math.min(INITIAL_ENTRIES, maxEntries));
+        }
+
+        /**
+         * Returns the count of a state.
+         *
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @param tag the rest of the state
+         * @return the count, or {@code -1} if the state is not in the table
+         */
+        synchronized long get(long b0, long b1, int tag) {
+            int first = bucket(b0, b1, tag);
+            for (int i = first; i < first + WAYS && tags[i] != 0; i++)
+                if (tags[i] == tag + 1 && masks[2 * i] == b0 && masks[2 * i + 1] == b1)
+                    return counts[i];
+            return -1;
+        }
+
+        /**
+         * Stores the count of a state. Storing a state already in the table,
+         * when two tasks count it at once, only wastes an entry.
+         *
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @param tag the rest of the state
+         * @param count the count
+         */
+        synchronized void put(long b0, long b1, int tag, long count) {
+            if (size >= tags.length / 4 * 3 && tags.length < maxEntries) {
+                long[] oldMasks = masks;
+                int[] oldTags = tags;
+                long[] oldCounts = counts;
+                allocate(tags.length * 2);
+                for (int i = 0; i < oldTags.length; i++)
+                    if (oldTags[i] != 0)
+                        store(oldMasks[2 * i], oldMasks[2 * i + 1], oldTags[i] - 1, oldCounts[i]);
+            }
+            store(b0, b1, tag, count);
+        }
+
+        /**
+         * Stores a key at the front of its bucket, shifting the other keys
+         * of the bucket back and dropping the last one if the bucket is full.
+         *
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @param tag the rest of the state
+         * @param count the count
+         */
+        private void store(long b0, long b1, int tag, long count) {
+            int first = bucket(b0, b1, tag);
+            int last = first + WAYS - 1;
+            if (tags[last] == 0)
+                size++;
+            System.arraycopy(masks, 2 * first, masks, 2 * first + 2, 2 * (WAYS - 1));
+            System.arraycopy(tags, first, tags, first + 1, WAYS - 1);
+            System.arraycopy(counts, first, counts, first + 1, WAYS - 1);
+            masks[2 * first] = b0;
+            masks[2 * first + 1] = b1;
+            tags[first] = tag + 1;
+            counts[first] = count;
+        }
+
+        /**
+         * Replaces the arrays by empty ones.
+         *
+         * @param entries the number of entries
+         */
+        private void allocate(int entries) {
+            masks = new long[2 * entries];
+            tags = new int[entries];
+            counts = new long[entries];
+            size = 0;
+        }
+
+        /**
+         * Returns the first entry of the bucket of a key.
+         *
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @param tag the rest of the state
+         * @return the entry index
+         */
+        private int bucket(long b0, long b1, int tag) {
+            return (int) (mix(b0, b1, tag) >>> 33) & (tags.length - WAYS);
+        }
+    }
+
+    /**
+     * States of the cell scan reached at one cell, each with the number of
+     * ways of reaching it, in an open-addressing hash table with linear
+     * probing. A state is the two words of its mask of blocked cells and the
+     * code of the numbers of ships still to place. Not thread-safe.
+     */
+    private static final class Layer {
+
+        /** The two mask words of the state of each entry. */
+        private long[] masks;
+
+        /** The code of the state of each entry plus one, or {@code 0} for a free entry. */
+        private int[] codes;
+
+        /** The number of ways of reaching the state of each entry. */
+        private long[] counts;
+
+        /** Number of states. */
+        private int size;
+
+        /**
+         * Creates an empty layer.
+         *
+         * @param expected the number of states expected, used to size the table
+         */
+        Layer(int expected) {
+            allocate(Integer.highestOneBit(Math.max(8, expected * 2) - 1) << 1);
+        }
+
+        /**
+         * Returns the number of entries of the table, free or not.
+         *
+         * @return the capacity
+         */
+        int capacity() {
+            return codes.length;
+        }
+
+        /**
+         * Returns the number of states.
+         *
+         * @return the size of the layer
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the code of the state of an entry.
+         *
+         * @param i the entry index
+         * @return the code, or {@code -1} for a free entry
+         */
+        int code(int i) {
+            return codes[i] - 1;
+        }
+
+        /**
+         * Returns a word of the blocked cells of the state of an entry.
+         *
+         * @param i the entry index
+         * @param w the word index
+         * @return the word of the mask
+         */
+        long mask(int i, int w) {
+            return masks[2 * i + w];
+        }
+
+        /**
+         * Returns the number of ways of reaching the state of an entry.
+         *
+         * @param i the entry index
+         * @return the count
+         */
+        long count(int i) {
+            return counts[i];
+        }
+
+        /**
+         * Adds ways of reaching a state.
+         *
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @param code the code of the ships still to place
+         * @param count the number of ways to add
+         * @throws ArithmeticException if the count of the state overflows a {@code long}
+         */
+        void add(long b0, long b1, int code, long count) {
+            int mask = codes.length - 1;
+            int i = (int) mix(b0, b1, code) & mask;
+            while (codes[i] != 0) {
+                if (codes[i] == code + 1 && masks[2 * i] == b0 && masks[2 * i + 1] == b1) {
+                    counts[i] = Math.addExact(counts[i], count);
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            masks[2 * i] = b0;
+            masks[2 * i + 1] = b1;
+            codes[i] = code + 1;
+            counts[i] = count;
+            if (++size > codes.length / 2) {
+                long[] oldMasks = masks;
+                int[] oldCodes = codes;
+                long[] oldCounts = counts;
+                allocate(codes.length * 2);
+                for (int j = 0; j < oldCodes.length; j++)
+                    if (oldCodes[j] != 0)
+                        add(oldMasks[2 * j], oldMasks[2 * j + 1], oldCodes[j] - 1, oldCounts[j]);
+            }
+        }
+
+        /**
+         * Adds the ways of reaching every state of another layer.
+         *
+         * @param other the layer to add
+         * @throws ArithmeticException if the count of a state overflows a {@code long}
+         */
+        void addAll(Layer other) {
+            for (int i = 0; i < other.codes.length; i++)
+                if (other.codes[i] != 0)
+                    add(other.masks[2 * i], other.masks[2 * i + 1], other.codes[i] - 1, other.counts[i]);
+        }
+
+        /**
+         * Replaces the arrays by empty ones.
+         *
+         * @param entries the number of entries, a power of two
+         */
+        private void allocate(int entries) {
+            masks = new long[2 * entries];
+            codes = new int[entries];
+            counts = new long[entries];
+            size = 0;
+        }
+    }
+
+    /**
+     * State of the draw of the ships of one row in {@link #sampleScan}: the
+     * state to reach at the end of the row and the ships drawn.
+     */
+    private static final class Walk {
+
+        /** The first word of the blocked cells of the state to reach. */
+        private long b0;
+
+        /** The second word of the blocked cells of the state to reach. */
+        private long b1;
+
+        /** The code of the state to reach. */
+        private int code;
+
+        /** The number of ways of reaching the state to reach. */
+        private long weight;
+
+        /** The rank of the way drawn among the ways still to consider. */
+        private long left;
+
+        /** The ships drawn in the row, in its first {@link #length} elements. */
+        private final int[] path = new int[IFleet.BOARD_SIZE];
+
+        /** Number of ships drawn in the row. */
+        private int length;
+
+        /** Scratch arrays listing the ships that may start at each cell of a row. */
+        private final int[][] options;
+
+        /**
+         * Creates a walk.
+         *
+         * @param maxOptions the largest number of ships that may start at a cell
+         */
+        Walk(int maxOptions) {
+            options = new int[IFleet.BOARD_SIZE][maxOptions];
+        }
+    }
+
+    /**
+     * Hashes a state of a search.
+     *
+     * @param b0 the first word of the blocked cells
+     * @param b1 the second word of the blocked cells
+     * @param tag the rest of the state
+     * @return a hash whose bits all depend on the whole state
+     */
+    private static long mix(long b0, long b1, int tag) {
+        long h = (b0 * 0x9E3779B97F4A7C15L) ^ (b1 * 0xC2B2AE3D27D4EB4FL) ^ (tag * 0x165667B19E3779F9L);
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+
+    /** The placement index used to enumerate ships. */
+    private final PlacementIndex index;
+
+    /** The pool running the search. */
+    private final ForkJoinPool pool;
+
+    /** Cells no ship may cover. */
+    private final long[] forbidden;
+
+    /** Placements of the pinned ships. */
+    private final IntArrayList pinned;
+
+    /** The constraint callbacks. */
+    private final List<Constraint> constraints;
+
+    /** The minimum gap between ships. */
+    private int gap = 1;
+
+    /** Cells blocked by each placement for the current gap, or {@code null} for a gap of 1. */
+    private long[][] spacing;
+
+    /**
+     * Creates a solver with no extra constraints, running on the common fork/join pool.
+     */
+    public PlacementSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a solver with no extra constraints, running on the given pool.
+     *
+     * @param pool the pool used to run the search
+     */
+    public PlacementSolver(ForkJoinPool pool) {
+        assert pool != null;
+
+        this.index = PlacementIndex.getInstance();
+        this.pool = pool;
+        this.forbidden = Bitboard.newMask();
+        this.pinned = new IntArrayList(IFleet.FLEET_SIZE);
+        this.constraints = new ArrayList<>();
+    }
+
+    /**
+     * Returns the cells on the edges of the board, to be passed to
+     * {@link #forbid(long[])} to keep ships away from the edges.
+     *
+     * @return a new mask with the cells of the first and last rows and columns
+     */
+    public static long[] edgeCells() {
+        long[] edges = Bitboard.newMask();
+        for (int i = 0; i < IFleet.BOARD_SIZE; i++) {
+            Bitboard.set(edges, Bitboard.cell(0, i));
+            Bitboard.set(edges, Bitboard.cell(IFleet.BOARD_SIZE - 1, i));
+            Bitboard.set(edges, Bitboard.cell(i, 0));
+            Bitboard.set(edges, Bitboard.cell(i, IFleet.BOARD_SIZE - 1));
+        }
+        return edges;
+    }
+
+    /**
+     * Forbids ships from covering the given cells, in addition to the cells
+     * already forbidden.
+     *
+     * @param cells the cells to forbid
+     */
+    public void forbid(long[] cells) {
+        assert cells != null;
+        Bitboard.or(forbidden, cells);
+    }
+
+    /**
+     * Pins a ship in place: every layout will hold a ship of the same kind,
+     * bearing and position. The ship counts towards the composition of the fleet.
+     *
+     * @param s the ship to pin
+     * @throws IllegalArgumentException if the ship is of an unknown kind, not
+     *                                  on the board, or exceeds the number of ships of its kind
+     */
+    public void pin(IShip s) {
+        assert s != null;
+
+        int kind = PlacementIndex.kindOf(s);
+        IPosition pos = s.getPosition();
+        int p = kind < 0 ? -1 : index.placementOf(kind, s.getBearing(), pos.getRow(), pos.getColumn());
+        if (p < 0)
+            throw new IllegalArgumentException("ERROR! ship cannot be pinned: " + s);
+        pin(p);
+    }
+
+    /**
+     * Pins a ship in place, given by its placement id.
+     *
+     * @param p the placement id
+     * @throws IllegalArgumentException if the fleet already has all the ships of that kind
+     */
+    public void pin(int p) {
+        assert p >= 0 && p < index.size();
+
+        int kind = index.getKind(p);
+        int same = 0;
+        for (int i = 0; i < pinned.size(); i++)
+            if (index.getKind(pinned.get(i)) == kind)
+                same++;
+        if (same >= ShipKind.get(kind).getCount())
+            throw new IllegalArgumentException("ERROR! too many pinned ships of kind " + ShipKind.get(kind));
+        pinned.add(p);
+    }
+
+    /**
+     * Sets the minimum number of empty cells between two ships, in every
+     * direction including diagonals. The usual rules correspond to a gap of 1.
+     *
+     * @param gap the minimum gap, at least 1
+     * @throws IllegalArgumentException if the gap is less than 1
+     */
+    public void setMinimumGap(int gap) {
+        if (gap < 1)
+            throw new IllegalArgumentException("ERROR! invalid gap " + gap);
+        this.gap = gap;
+        if (gap == 1) {
+            spacing = null;
+            return;
+        }
+        spacing = new long[index.size()][];
+        for (int p = 0; p < index.size(); p++) {
+            long[] mask = Bitboard.newMask();
+            index.orMask(p, mask);
+            for (int i = 0; i < gap; i++)
+                mask = BoardGeometry.halo(mask);
+            spacing[p] = mask;
+        }
+    }
+
+    /**
+     * Adds a constraint callback. Callbacks disable the cell scan and the
+     * memoization of sub-board states, so counting and sampling with them
+     * explore the whole search tree.
+     *
+     * @param constraint the constraint
+     */
+    public void addConstraint(Constraint constraint) {
+        assert constraint != null;
+        constraints.add(constraint);
+    }
+
+    /**
+     * Counts the layouts satisfying all constraints.
+     *
+     * @return the number of layouts
+     * @throws ArithmeticException if the count does not fit in a {@code long}
+     */
+    public long count() {
+        return count(new Search());
+    }
+
+    /**
+     * Counts the layouts of a search.
+     *
+     * @param search the search
+     * @return the number of layouts
+     */
+    private long count(Search search) {
+        if (!search.valid)
+            return 0;
+        if (search.kinds.length == 0)
+            return 1;
+        if (search.scanning) {
+            Layer[] layer = search.start();
+            for (int cell = 0; cell < Bitboard.CELLS; cell++)
+                layer = step(search, layer, cell);
+            return Search.done(layer);
+        }
+        return pool.invoke(new CountTask(search, index.firstOf(search.kinds[0]), index.endOf(search.kinds[0])));
+    }
+
+    /**
+     * Draws a layout uniformly at random among those satisfying all constraints.
+     *
+     * @param rnd the source of randomness
+     * @return the placement ids of the ships, pinned ships first, or
+     *         {@code null} if no layout satisfies the constraints
+     * @throws ArithmeticException if the number of layouts does not fit in a {@code long}
+     */
+    public int[] sample(Random rnd) {
+        assert rnd != null;
+
+        Search search = new Search();
+        if (search.valid && search.scanning && search.kinds.length > 0)
+            return sampleScan(search, rnd);
+        long total = count(search);
+        if (total == 0)
+            return null;
+
+        Worker w = search.newWorker();
+        int from = search.kinds.length == 0 ? 0 : index.firstOf(search.kinds[0]);
+        for (int depth = 0; depth < search.kinds.length; depth++) {
+            long r = rnd.nextLong(total);
+            int end = index.endOf(search.kinds[depth]);
+            for (int p = from; p < end; p++) {
+                if (!search.allows(w, depth, p))
+                    continue;
+                search.place(w, depth, p);
+                int next = search.nextFrom(depth + 1, p);
+                long c = search.count(w, depth + 1, next);
+                if (r < c) {
+                    total = c;
+                    from = next;
+                    break;
+                }
+                r -= c;
+            }
+        }
+        return w.layout.clone();
+    }
+
+    /**
+     * Draws a layout with the cell scan. The states at the start of each row
+     * are kept; then, from the last row up, the ships of the row are drawn
+     * among all the ways of reaching the state drawn for the end of the row
+     * from the states at its start, each weighted by the number of ways of
+     * reaching its start, which also draws the state at the start of the row.
+     *
+     * @param search the search, which must use the cell scan
+     * @param rnd the source of randomness
+     * @return the placement ids of the ships, pinned ships first, or
+     *         {@code null} if there is no layout
+     */
+    private int[] sampleScan(Search search, Random rnd) {
+        Layer[][] rows = new Layer[IFleet.BOARD_SIZE][];
+        Layer[] layer = search.start();
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            if (cell % IFleet.BOARD_SIZE == 0)
+                rows[cell / IFleet.BOARD_SIZE] = layer;
+            layer = step(search, layer, cell);
+        }
+        long total = Search.done(layer);
+        if (total == 0)
+            return null;
+
+        int[] layout = search.base.clone();
+        int placed = pinned.size();
+        Walk walk = new Walk(search.maxOptions);
+        walk.weight = total;
+        for (int row = IFleet.BOARD_SIZE - 1; row >= 0; row--) {
+            walk.left = rnd.nextLong(walk.weight);
+            search.walkRow(rows[row], row, walk);
+            for (int i = 0; i < walk.length; i++)
+                layout[placed++] = walk.path[i];
+        }
+        Arrays.sort(layout, pinned.size(), layout.length);
+        return layout;
+    }
+
+    /**
+     * Advances the cell scan of a search by one cell. Each part of the
+     * states at the cell is expanded once, into private parts of the next
+     * states, and the private parts are then merged part by part.
+     *
+     * @param search the search
+     * @param current the states at the cell, split in parts
+     * @param cell the cell to decide
+     * @return the states at the next cell, split in as many parts as the pool has threads
+     */
+    private Layer[] step(Search search, Layer[] current, int cell) {
+        int parts = pool.getParallelism();
+        Layer[][] expanded = new Layer[current.length][];
+        Layer[] next = new Layer[parts];
+        if (parts == 1) {
+            for (int i = 0; i < current.length; i++)
+                expanded[i] = search.expand(current[i], cell, parts);
+            next[0] = Search.merge(expanded, 0);
+        } else {
+            pool.invoke(new StepTask(search, current, expanded, null, cell, 0, current.length));
+            pool.invoke(new StepTask(search, current, expanded, next, cell, 0, parts));
+        }
+        return next;
+    }
+
+    /**
+     * Finds any layout satisfying all constraints, stopping the search as
+     * soon as one is found. Which layout is returned may change from one
+     * call to the next.
+     *
+     * @return the placement ids of the ships, pinned ships first, or
+     *         {@code null} if no layout satisfies the constraints
+     */
+    public int[] find() {
+        Search search = new Search();
+        if (!search.valid)
+            return null;
+        if (search.kinds.length == 0)
+            return search.base.clone();
+        AtomicReference<int[]> found = new AtomicReference<>();
+        pool.invoke(new FindTask(search, found, index.firstOf(search.kinds[0]), index.endOf(search.kinds[0])));
+        return found.get();
+    }
+
+    /**
+     * Scratch state of one thread of a search: the layout being built and
+     * the blocked cells at each depth.
+     */
+    private static final class Worker {
+
+        /** The layout being built, pinned ships first. */
+        private final int[] layout;
+
+        /** Blocked cells before placing the ship at each depth, plus one final mask. */
+        private final long[][] blocked;
+
+        /**
+         * Creates a worker.
+         *
+         * @param layout the initial layout, with the pinned ships
+         * @param blocked the cells blocked by the pinned ships
+         * @param depths the number of ships to place
+         */
+        Worker(int[] layout, long[] blocked, int depths) {
+            this.layout = layout.clone();
+            this.blocked = new long[depths + 1][];
+            this.blocked[0] = blocked.clone();
+            for (int d = 1; d <= depths; d++)
+                this.blocked[d] = Bitboard.newMask();
+        }
+    }
+
+    /**
+     * The state shared by all tasks of a single search.
+     */
+    private final class Search {
+
+        /** Kinds of the ships to place, in placement order. */
+        private final int[] kinds;
+
+        /** Layout with the pinned ships in front and room for the others. */
+        private final int[] base;
+
+        /** Cells blocked by the pinned ships, plus the forbidden cells. */
+        private final long[] blocked;
+
+        /** Whether the pinned ships are compatible with each other and with the constraints. */
+        private final boolean valid;
+
+        /** Copy of the constraint callbacks. */
+        private final Constraint[] callbacks;
+
+        /** Total size of the ships from each depth onwards. */
+        private final int[] remainingSize;
+
+        /**
+         * Partition of the board into square tiles of side {@code gap + 1}.
+         * Any two cells of a tile are closer than the gap, so a tile never
+         * holds cells of two different ships.
+         */
+        private final long[][] tiles;
+
+        /** Least number of tiles spanned by the ships from each depth onwards. */
+        private final int[] remainingTiles;
+
+        /** Memoized counts of sub-board states, or {@code null} when callbacks are present. */
+        private final Memo memo;
+
+        /**
+         * Whether layouts are counted by the cell scan: there are no callbacks
+         * and the codes of the ships still to place fit in an {@code int}.
+         */
+        private final boolean scanning;
+
+        /**
+         * Weight of each kind in the code of the numbers of ships still to
+         * place, a number in mixed radix with a digit per kind.
+         */
+        private final int[] radix;
+
+        /** Number of ships of each kind to place, besides the pinned ships. */
+        private final int[] missing;
+
+        /** Code of the numbers of ships still to place before placing any. */
+        private final int fullCode;
+
+        /** Cells blocked by each placement, {@link Bitboard#WORDS} words per placement. */
+        private final long[] blocks;
+
+        /**
+         * Placements whose first cell is each cell, for the kinds to place,
+         * clear of the cells blocked by the pinned ships and the forbidden cells.
+         */
+        private final int[][] anchored;
+
+        /** Largest number of placements starting at a cell. */
+        private final int maxOptions;
+
+        /** Size of the ships of each kind. */
+        private final int[] kindSize;
+
+        /**
+         * Prepares a search from the current configuration of the solver.
+         */
+        Search() {
+            callbacks = constraints.toArray(new Constraint[0]);
+
+            int ships = 0;
+            missing = new int[index.getKindCount()];
+            for (int k = 0; k < missing.length; k++) {
+                missing[k] = ShipKind.get(k).getCount();
+                ships += missing[k];
+            }
+            base = new int[ships];
+            blocked = Bitboard.newMask();
+            boolean ok = true;
+            for (int i = 0; i < pinned.size(); i++) {
+                int p = pinned.get(i);
+                ok &= !index.intersects(p, blocked) && !index.intersects(p, forbidden);
+                for (Constraint c : callbacks)
+                    ok &= c.allows(p, base, i);
+                base[i] = p;
+                block(p, blocked);
+                missing[index.getKind(p)]--;
+            }
+            valid = ok;
+            Bitboard.or(blocked, forbidden);
+
+            kinds = new int[ships - pinned.size()];
+            int d = 0;
+            for (int k = 0; k < missing.length; k++)
+                for (int i = 0; i < missing[k]; i++)
+                    kinds[d++] = k;
+            int side = gap + 1;
+            int perRow = (IFleet.BOARD_SIZE + side - 1) / side;
+            tiles = new long[perRow * perRow][];
+            for (int t = 0; t < tiles.length; t++)
+                tiles[t] = Bitboard.newMask();
+            for (int cell = 0; cell < Bitboard.CELLS; cell++)
+                Bitboard.set(tiles[Bitboard.rowOf(cell) / side * perRow + Bitboard.columnOf(cell) / side], cell);
+            remainingSize = new int[kinds.length + 1];
+            remainingTiles = new int[kinds.length + 1];
+            for (d = kinds.length - 1; d >= 0; d--) {
+                int p = index.firstOf(kinds[d]);
+                remainingSize[d] = remainingSize[d + 1] + index.cellsOf(p).length;
+                remainingTiles[d] = remainingTiles[d + 1] + (extent(p) + side - 1) / side;
+            }
+
+            radix = new int[missing.length];
+            long codes = 1;
+            for (int k = 0; k < missing.length && codes <= Integer.MAX_VALUE; k++) {
+                radix[k] = (int) codes;
+                codes *= missing[k] + 1;
+            }
+            memo = callbacks.length == 0 ? new Memo(MEMO_ENTRIES) : null;
+            scanning = callbacks.length == 0 && codes <= Integer.MAX_VALUE;
+            int code = 0;
+            for (int k = 0; k < missing.length && scanning; k++)
+                code += missing[k] * radix[k];
+            fullCode = code;
+            kindSize = new int[missing.length];
+            for (int k = 0; k < missing.length; k++)
+                kindSize[k] = ShipKind.get(k).getSize();
+
+            blocks = new long[index.size() * Bitboard.WORDS];
+            long[] mask = Bitboard.newMask();
+            List<List<Integer>> starting = new ArrayList<>();
+            for (int cell = 0; cell < Bitboard.CELLS; cell++)
+                starting.add(new ArrayList<>());
+            for (int p = 0; p < index.size(); p++) {
+                Bitboard.clearAll(mask);
+                block(p, mask);
+                System.arraycopy(mask, 0, blocks, p * Bitboard.WORDS, Bitboard.WORDS);
+                if (missing[index.getKind(p)] > 0 && !index.intersects(p, blocked))
+                    starting.get(index.cellsOf(p)[0]).add(p);
+            }
+            anchored = new int[Bitboard.CELLS][];
+            int most = 0;
+            for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+                anchored[cell] = starting.get(cell).stream().mapToInt(Integer::intValue).toArray();
+                most = Math.max(most, anchored[cell].length);
+            }
+            maxOptions = most;
+        }
+
+        /**
+         * Returns the length of a ship along its longest axis.
+         *
+         * @param p the placement of the ship
+         * @return the number of rows or columns spanned, whichever is larger
+         */
+        private int extent(int p) {
+            int minRow = Integer.MAX_VALUE;
+            int maxRow = Integer.MIN_VALUE;
+            int minColumn = Integer.MAX_VALUE;
+            int maxColumn = Integer.MIN_VALUE;
+            for (int cell : index.cellsOf(p)) {
+                minRow = Math.min(minRow, Bitboard.rowOf(cell));
+                maxRow = Math.max(maxRow, Bitboard.rowOf(cell));
+                minColumn = Math.min(minColumn, Bitboard.columnOf(cell));
+                maxColumn = Math.max(maxColumn, Bitboard.columnOf(cell));
+            }
+            return Math.max(maxRow - minRow, maxColumn - minColumn) + 1;
+        }
+
+        /**
+         * Creates the scratch state of a thread.
+         *
+         * @return a worker at depth 0
+         */
+        Worker newWorker() {
+            return new Worker(base, blocked, kinds.length);
+        }
+
+        /**
+         * Adds the cells where no other ship may be placed next to a ship.
+         *
+         * @param p the placement of the ship
+         * @param target the mask receiving the blocked cells
+         */
+        private void block(int p, long[] target) {
+            if (spacing == null)
+                index.orHalo(p, target);
+            else
+                Bitboard.or(target, spacing[p]);
+        }
+
+        /**
+         * Returns the lowest placement id allowed for the ship at the given
+         * depth after placing {@code p} at the previous depth.
+         *
+         * @param depth the depth of the next ship
+         * @param p the placement used at the previous depth
+         * @return the lowest placement id allowed
+         */
+        int nextFrom(int depth, int p) {
+            if (depth == kinds.length)
+                return 0;
+            return kinds[depth] == kinds[depth - 1] ? p + 1 : index.firstOf(kinds[depth]);
+        }
+
+        /**
+         * Checks whether the ship at {@code depth} may be placed in placement {@code p}.
+         *
+         * @param w the worker
+         * @param depth the depth of the ship
+         * @param p the placement id
+         * @return {@code true} if the placement satisfies all constraints
+         */
+        boolean allows(Worker w, int depth, int p) {
+            if (index.intersects(p, w.blocked[depth]))
+                return false;
+            int placed = pinned.size() + depth;
+            for (Constraint c : callbacks)
+                if (!c.allows(p, w.layout, placed))
+                    return false;
+            return true;
+        }
+
+        /**
+         * Places the ship at {@code depth} in placement {@code p}.
+         *
+         * @param w the worker
+         * @param depth the depth of the ship
+         * @param p the placement id
+         */
+        void place(Worker w, int depth, int p) {
+            w.layout[pinned.size() + depth] = p;
+            System.arraycopy(w.blocked[depth], 0, w.blocked[depth + 1], 0, Bitboard.WORDS);
+            block(p, w.blocked[depth + 1]);
+        }
+
+        /**
+         * Checks whether the ships still to place fit in the cells that are
+         * not blocked, whether there are enough {@link #tiles} with free
+         * cells for the ships to span, and whether each of their kinds has at least as
+         * many placements clear of the blocked cells as it has ships. This
+         * ignores the interactions between those ships and the callbacks, so
+         * it may accept states without completions, but never rejects a
+         * state with some.
+         *
+         * @param w the worker, holding the state
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id allowed for the next ship
+         * @return {@code false} if the state certainly has no completion
+         */
+        boolean feasible(Worker w, int depth, int from) {
+            long[] blocked = w.blocked[depth];
+            if (Bitboard.CELLS - Bitboard.count(blocked) < remainingSize[depth])
+                return false;
+            int open = 0;
+            for (long[] tile : tiles)
+                if (!Bitboard.containsAll(blocked, tile))
+                    open++;
+            if (open < remainingTiles[depth])
+                return false;
+            int d = depth;
+            while (d < kinds.length) {
+                int kind = kinds[d];
+                int ships = 0;
+                while (d + ships < kinds.length && kinds[d + ships] == kind)
+                    ships++;
+                int need = ships;
+                int end = index.endOf(kind);
+                for (int p = d == depth ? from : index.firstOf(kind); p < end && need > 0; p++)
+                    if (!index.intersects(p, blocked))
+                        need--;
+                if (need > 0)
+                    return false;
+                d += ships;
+            }
+            return true;
+        }
+
+        /**
+         * Counts the completions of the state where the ships from
+         * {@code depth} onwards remain to be placed, using the memo table.
+         *
+         * @param w the worker, holding the state
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id allowed for the next ship
+         * @return the number of completions
+         */
+        long count(Worker w, int depth, int from) {
+            if (depth == kinds.length)
+                return 1;
+            if (!feasible(w, depth, from))
+                return 0;
+            if (memo == null)
+                return countRange(w, depth, from, index.endOf(kinds[depth]));
+
+            long[] blocked = w.blocked[depth];
+            int tag = tag(depth, from);
+            long c = memo.get(blocked[0], blocked[1], tag);
+            if (c < 0) {
+                c = countRange(w, depth, from, index.endOf(kinds[depth]));
+                memo.put(blocked[0], blocked[1], tag, c);
+            }
+            return c;
+        }
+
+        /**
+         * Returns the tag of a state of the search by kind in the memo table.
+         *
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id allowed for the next ship
+         * @return the tag
+         */
+        private int tag(int depth, int from) {
+            return depth * index.size() + from;
+        }
+
+        /**
+         * Returns the states of the cell scan at the first cell: the state
+         * with the cells blocked by the pinned ships and all the other ships
+         * to place, if they fit.
+         *
+         * @return the states, in a single part
+         */
+        Layer[] start() {
+            Layer[] first = {new Layer(1)};
+            add(first, 0, fullCode, blocked[0], blocked[1], 1);
+            return first;
+        }
+
+        /**
+         * Returns the number of ways of reaching the end of the cell scan
+         * with every ship placed.
+         *
+         * @param last the states after the last cell
+         * @return the number of layouts
+         * @throws ArithmeticException if the count does not fit in a {@code long}
+         */
+        static long done(Layer[] last) {
+            long total = 0;
+            for (Layer layer : last)
+                for (int i = 0; i < layer.capacity(); i++)
+                    if (layer.code(i) == 0)
+                        total = Math.addExact(total, layer.count(i));
+            return total;
+        }
+
+        /**
+         * Advances the cell scan by one cell for one part of the states at
+         * the cell: each state either leaves the cell without a new ship or
+         * places a ship starting at it.
+         *
+         * @param layer the part of the states at the cell
+         * @param cell the cell to decide
+         * @param parts the number of parts the next states are split in
+         * @return the next states reached from the part, split in {@code parts} parts
+         * @throws ArithmeticException if a count does not fit in a {@code long}
+         */
+        Layer[] expand(Layer layer, int cell, int parts) {
+            Layer[] next = new Layer[parts];
+            for (int k = 0; k < parts; k++)
+                next[k] = new Layer(layer.size() / parts);
+            int[] options = new int[maxOptions];
+            for (int i = 0; i < layer.capacity(); i++) {
+                int code = layer.code(i);
+                if (code < 0)
+                    continue;
+                long b0 = layer.mask(i, 0);
+                long b1 = layer.mask(i, 1);
+                long count = layer.count(i);
+                add(next, cell + 1, code, b0, b1, count);
+                int n = options(cell, code, b0, b1, options);
+                for (int j = 0; j < n; j++) {
+                    int p = options[j];
+                    add(next, cell + 1, code - radix[index.getKind(p)],
+                            b0 | blocks[2 * p], b1 | blocks[2 * p + 1], count);
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Merges one part of the next states reached from each part of the
+         * states at a cell. The largest of them is reused.
+         *
+         * @param expanded the next states reached from each part, split in parts
+         * @param part the part to merge
+         * @return the states of the part
+         * @throws ArithmeticException if a count does not fit in a {@code long}
+         */
+        static Layer merge(Layer[][] expanded, int part) {
+            int largest = 0;
+            for (int i = 1; i < expanded.length; i++)
+                if (expanded[i][part].size() > expanded[largest][part].size())
+                    largest = i;
+            Layer merged = expanded[largest][part];
+            for (int i = 0; i < expanded.length; i++)
+                if (i != largest)
+                    merged.addAll(expanded[i][part]);
+            return merged;
+        }
+
+        /**
+         * Adds ways of reaching a state of the cell scan to the states of a
+         * part, once the cells before the next cell are dropped from its
+         * blocked cells. Once every ship is placed, the blocked cells are
+         * dropped altogether, so that all finished layouts share one state.
+         * States whose ships no longer fit in the cells left are dropped,
+         * and the others go to the part given by their hash.
+         *
+         * @param next the parts of the next states
+         * @param cell the next cell to decide
+         * @param code the code of the ships still to place
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @param count the number of ways of reaching the state
+         */
+        private void add(Layer[] next, int cell, int code, long b0, long b1, long count) {
+            if (code == 0) {
+                b0 = 0L;
+                b1 = 0L;
+            } else {
+                b0 = from(cell, b0, 0);
+                b1 = from(cell, b1, 1);
+                if (Bitboard.CELLS - cell - Long.bitCount(b0) - Long.bitCount(b1) < sizeOf(code))
+                    return;
+            }
+            int part = next.length == 1 ? 0 : (int) ((mix(b0, b1, code) >>> 32) * next.length >>> 32);
+            next[part].add(b0, b1, code, count);
+        }
+
+        /**
+         * Draws the ships of a row of the cell scan: among the ways of
+         * reaching the state to reach at the end of the row from the states
+         * at its start, each counted as many times as its start is reached,
+         * finds the one of rank {@code walk.left}, and makes its start the
+         * state to reach for the previous row.
+         *
+         * @param starts the states at the start of the row
+         * @param row the row
+         * @param walk the state to reach and the rank of the way to find
+         */
+        void walkRow(Layer[] starts, int row, Walk walk) {
+            int first = row * IFleet.BOARD_SIZE;
+            for (Layer layer : starts) {
+                for (int i = 0; i < layer.capacity(); i++) {
+                    int code = layer.code(i);
+                    if (code >= 0 && walk(walk, first, first, code, layer.mask(i, 0), layer.mask(i, 1),
+                            layer.count(i), 0)) {
+                        walk.b0 = layer.mask(i, 0);
+                        walk.b1 = layer.mask(i, 1);
+                        walk.code = code;
+                        walk.weight = layer.count(i);
+                        return;
+                    }
+                }
+            }
+            throw new IllegalStateException("ERROR! no way of reaching the state drawn");
+        }
+
+        /**
+         * Enumerates the ways of reaching the state to reach at the end of a
+         * row from a state inside the row, as {@link #walkRow} does, stopping
+         * at the way of rank {@code walk.left}.
+         *
+         * @param walk the state to reach, the rank and the ships drawn
+         * @param first the first cell of the row
+         * @param cell the next cell to decide
+         * @param code the code of the ships still to place
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @param weight the number of ways of reaching the start of the row
+         * @param depth the number of ships placed since the start of the row
+         * @return {@code true} if the way was found, with its ships in {@code walk.path}
+         */
+        private boolean walk(Walk walk, int first, int cell, int code, long b0, long b1, long weight, int depth) {
+            int end = first + IFleet.BOARD_SIZE;
+            if (code == 0) {
+                if (walk.code != 0)
+                    return false;
+                b0 = 0L;
+                b1 = 0L;
+            } else {
+                b0 = from(cell, b0, 0);
+                b1 = from(cell, b1, 1);
+                // Blocked cells are never cleared, so those past the row must be blocked in the state to reach.
+                if (walk.code != 0 && ((from(end, b0, 0) & ~walk.b0) != 0L || (from(end, b1, 1) & ~walk.b1) != 0L))
+                    return false;
+            }
+            if (cell == end) {
+                if (code != walk.code || b0 != walk.b0 || b1 != walk.b1)
+                    return false;
+                if (walk.left < weight) {
+                    walk.length = depth;
+                    return true;
+                }
+                walk.left -= weight;
+                return false;
+            }
+
+            if (walk(walk, first, cell + 1, code, b0, b1, weight, depth))
+                return true;
+            int[] options = walk.options[cell - first];
+            int n = options(cell, code, b0, b1, options);
+            for (int j = 0; j < n; j++) {
+                int p = options[j];
+                walk.path[depth] = p;
+                if (walk(walk, first, cell + 1, code - radix[index.getKind(p)],
+                        b0 | blocks[2 * p], b1 | blocks[2 * p + 1], weight, depth + 1))
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Drops the cells before a cell from a word of a mask.
+         *
+         * @param cell the first cell to keep
+         * @param word the word of the mask
+         * @param w the index of the word
+         * @return the word without the cells before {@code cell}
+         */
+        private long from(int cell, long word, int w) {
+            int shift = cell - w * Long.SIZE;
+            return shift <= 0 ? word : shift >= Long.SIZE ? 0L : word & (-1L << shift);
+        }
+
+        /**
+         * Returns the total size of the ships still to place.
+         *
+         * @param code the code of the ships still to place
+         * @return the number of cells they cover
+         */
+        private int sizeOf(int code) {
+            int size = 0;
+            for (int k = 0; k < radix.length; k++)
+                if (missing[k] > 0)
+                    size += code / radix[k] % (missing[k] + 1) * kindSize[k];
+            return size;
+        }
+
+        /**
+         * Lists the ships that may start at a cell in a state of the cell scan.
+         *
+         * @param cell the cell
+         * @param code the numbers of ships still to place of each kind, weighted by {@link #radix}
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @param out receives the placement ids, at least {@link #maxOptions} long
+         * @return the number of placements
+         */
+        int options(int cell, int code, long b0, long b1, int[] out) {
+            if (isBlocked(cell, b0, b1))
+                return 0;
+            int n = 0;
+            for (int p : anchored[cell]) {
+                int k = index.getKind(p);
+                if (code / radix[k] % (missing[k] + 1) != 0 && !intersects(p, b0, b1))
+                    out[n++] = p;
+            }
+            return n;
+        }
+
+        /**
+         * Checks whether a cell is blocked.
+         *
+         * @param cell the cell index
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @return {@code true} if the cell is blocked
+         */
+        private boolean isBlocked(int cell, long b0, long b1) {
+            return ((cell < Long.SIZE ? b0 : b1) & (1L << cell)) != 0L;
+        }
+
+        /**
+         * Checks whether a placement covers a blocked cell.
+         *
+         * @param p the placement id
+         * @param b0 the first word of the blocked cells
+         * @param b1 the second word of the blocked cells
+         * @return {@code true} if the placement intersects the blocked cells
+         */
+        private boolean intersects(int p, long b0, long b1) {
+            return (index.maskWord(p, 0) & b0) != 0L || (index.maskWord(p, 1) & b1) != 0L;
+        }
+
+        /**
+         * Counts the completions of a state for placements of the next ship
+         * in {@code [from, to)}.
+         *
+         * @param w the worker, holding the state
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id to try
+         * @param to the exclusive upper bound of placement ids to try
+         * @return the number of completions
+         */
+        long countRange(Worker w, int depth, int from, int to) {
+            long total = 0;
+            for (int p = from; p < to; p++) {
+                if (!allows(w, depth, p))
+                    continue;
+                if (depth == kinds.length - 1) {
+                    total++;
+                } else {
+                    place(w, depth, p);
+                    total = Math.addExact(total, count(w, depth + 1, nextFrom(depth + 1, p)));
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Searches for a completion of a state for placements of the next
+         * ship in {@code [from, to)}, giving up when another task found one.
+         *
+         * @param w the worker, holding the state
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id to try
+         * @param to the exclusive upper bound of placement ids to try
+         * @param found receives the first layout found
+         * @return {@code true} if a layout was found, by this or another task
+         */
+        boolean findRange(Worker w, int depth, int from, int to, AtomicReference<int[]> found) {
+            for (int p = from; p < to && found.get() == null; p++) {
+                if (!allows(w, depth, p))
+                    continue;
+                place(w, depth, p);
+                if (depth == kinds.length - 1) {
+                    found.compareAndSet(null, w.layout.clone());
+                    return true;
+                }
+                if (find(w, depth + 1, nextFrom(depth + 1, p), found))
+                    return true;
+            }
+            return found.get() != null;
+        }
+
+        /**
+         * Searches for a completion of the state where the ships from
+         * {@code depth} onwards remain to be placed. States found to have no
+         * completion are recorded in the memo table with a count of zero,
+         * so that other branches reaching them backtrack at once.
+         *
+         * @param w the worker, holding the state
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id allowed for the next ship
+         * @param found receives the first layout found
+         * @return {@code true} if a layout was found, by this or another task
+         */
+        private boolean find(Worker w, int depth, int from, AtomicReference<int[]> found) {
+            if (!feasible(w, depth, from))
+                return false;
+            if (memo == null)
+                return findRange(w, depth, from, index.endOf(kinds[depth]), found);
+
+            long[] blocked = w.blocked[depth];
+            int tag = tag(depth, from);
+            if (memo.get(blocked[0], blocked[1], tag) == 0)
+                return false;
+            if (findRange(w, depth, from, index.endOf(kinds[depth]), found))
+                return true;
+            memo.put(blocked[0], blocked[1], tag, 0L);
+            return false;
+        }
+    }
+
+    /**
+     * Task advancing the cell scan by one cell for a range of parts,
+     * splitting the range in halves until it is a single part. Without
+     * {@code next}, it expands parts of the states at the cell; with it, it
+     * merges parts of the next states.
+     */
+    private final class StepTask extends RecursiveAction {
+
+        /** Serialization version, required by {@link RecursiveAction}. */
+        private static final long serialVersionUID = 1L;
+
+        /** The search this task belongs to. */
+        private final transient Search search;
+
+        /** The states at the cell. */
+        private final transient Layer[] current;
+
+        /** The next states reached from each part of the states at the cell. */
+        private final transient Layer[][] expanded;
+
+        /** Receives the parts of the states at the next cell, or {@code null} to expand. */
+        private final transient Layer[] next;
+
+        /** The cell to decide. */
+        private final int cell;
+
+        /** The first part of the range. */
+        private final int from;
+
+        /** The exclusive end of the range. */
+        private final int to;
+
+        /**
+         * Creates a task for a range of parts.
+         *
+         * @param search the search this task belongs to
+         * @param current the states at the cell
+         * @param expanded the next states reached from each part of the states at the cell
+         * @param next receives the parts of the states at the next cell, or {@code null} to expand
+         * @param cell the cell to decide
+         * @param from the first part of the range
+         * @param to the exclusive end of the range
+         */
+        StepTask(Search search, Layer[] current, Layer[][] expanded, Layer[] next, int cell, int from, int to) {
+            this.search = search;
+            this.current = current;
+            this.expanded = expanded;
+            this.next = next;
+            this.cell = cell;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                if (next == null)
+                    expanded[from] = search.expand(current[from], cell, pool.getParallelism());
+                else
+                    next[from] = Search.merge(expanded, from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StepTask(search, current, expanded, next, cell, from, mid),
+                    new StepTask(search, current, expanded, next, cell, mid, to));
+        }
+    }
+
+    /**
+     * Task counting the layouts for a range of placements of the first ship,
+     * splitting the range in halves until it is small enough.
+     */
+    private final class CountTask extends RecursiveTask<Long> {
+
+        /** Serialization version, required by {@link RecursiveTask}. */
+        private static final long serialVersionUID = 1L;
+
+        /** The search this task belongs to. */
+        private final transient Search search;
+
+        /** The first placement of the range. */
+        private final int from;
+
+        /** The exclusive end of the range. */
+        private final int to;
+
+        /**
+         * Creates a task for a range of placements of the first ship.
+         *
+         * @param search the search this task belongs to
+         * @param from the first placement of the range
+         * @param to the exclusive end of the range
+         */
+        CountTask(Search search, int from, int to) {
+            this.search = search;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= SPLIT_THRESHOLD)
+                return search.countRange(search.newWorker(), 0, from, to);
+
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(search, from, mid);
+            left.fork();
+            long right = new CountTask(search, mid, to).compute();
+            return Math.addExact(left.join(), right);
+        }
+    }
+
+    /**
+     * Task looking for a layout in a range of placements of the first ship,
+     * splitting the range in halves until it is small enough.
+     */
+    private final class FindTask extends RecursiveTask<Boolean> {
+
+        /** Serialization version, required by {@link RecursiveTask}. */
+        private static final long serialVersionUID = 1L;
+
+        /** The search this task belongs to. */
+        private final transient Search search;
+
+        /** Receives the first layout found. */
+        private final transient AtomicReference<int[]> found;
+
+        /** The first placement of the range. */
+        private final int from;
+
+        /** The exclusive end of the range. */
+        private final int to;
+
+        /**
+         * Creates a task for a range of placements of the first ship.
+         *
+         * @param search the search this task belongs to
+         * @param found receives the first layout found
+         * @param from the first placement of the range
+         * @param to the exclusive end of the range
+         */
+        FindTask(Search search, AtomicReference<int[]> found, int from, int to) {
+            this.search = search;
+            this.found = found;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (found.get() != null)
+                return true;
+            if (to - from <= SPLIT_THRESHOLD)
+                return search.findRange(search.newWorker(), 0, from, to, found);
+
+            int mid = (from + to) >>> 1;
+            FindTask left = new FindTask(search, found, from, mid);
+            left.fork();
+            boolean right = new FindTask(search, found, mid, to).compute();
+            return left.join() || right;
+        }
+    }
+}
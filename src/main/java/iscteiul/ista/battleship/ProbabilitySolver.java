@@ -0,0 +1,454 @@
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Exact solver for the hit probability of every board cell in a partially
+ * revealed game.
+ *
+ * <p>Given the cells already known to be hit or missed, the ships already
+ * sunk and the kinds of the ships still afloat, the solver enumerates every
+ * arrangement of the remaining ships that is consistent with what has been
+ * revealed and returns, for each cell, the fraction of those arrangements in
+ * which the cell holds a remaining ship. An arrangement is consistent if:</p>
+ * <ul>
+ *     <li>no remaining ship covers a miss or touches another ship, following
+ *     the same rule as {@link Ship#tooCloseTo(IShip)}</li>
+ *     <li>every hit that is not part of a sunk ship is covered by a remaining ship</li>
+ *     <li>no remaining ship is fully hit, since it would then have been reported as sunk</li>
+ * </ul>
+ *
+ * <p>Placements are taken from the {@link PlacementIndex}. The search tree is
+ * split on the placements of the first remaining ship and run on a
+ * {@link ForkJoinPool}, and the result of each sub-board state (ships still
+ * to place, blocked cells and hits still uncovered) is memoized, so that
+ * different branches leading to the same state are solved only once.</p>
+ */
+public class ProbabilitySolver {
+
+    /**
+     * Number of placements of the first ship handled by a single task
+     * before it is split further.
+     */
+    private static final int SPLIT_THRESHOLD = 4;
+
+    /**
+     * Partial result of the search: the number of consistent completions of
+     * a state and, for each cell, how many of those completions cover it.
+     */
+    private static final class Result {
+
+        /** Result of a state with no consistent completion. */
+        static final Result EMPTY = new Result();
+
+        /** Number of consistent completions. */
+        double count;
+
+        /** Number of completions covering each cell. */
+        final double[] cover = new double[Bitboard.CELLS];
+
+        /**
+         * Adds a child result reached by placing a ship in placement {@code p}.
+         *
+         * @param child the result of the sub-board state
+         * @param p the placement leading to the child
+         * @param index the placement index
+         */
+        void add(Result child, int p, PlacementIndex index) {
+            count += child.count;
+            BoardOps.add(cover, child.cover);
+            for (int cell : index.cellsOf(p))
+                cover[cell] += child.count;
+        }
+    }
+
+    /**
+     * Key identifying a sub-board state in the memo table.
+     */
+    private static final class State {
+
+        /** Index of the next ship to place. */
+        private final int depth;
+
+        /** Lowest placement id allowed for the next ship. */
+        private final int from;
+
+        /** Cells where no further ship may be placed. */
+        private final long[] blocked;
+
+        /** Hit cells not yet covered by a ship. */
+        private final long[] uncovered;
+
+        /** Cached hash code. */
+        private final int hash;
+
+        /**
+         * Creates a state key.
+         *
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id allowed for the next ship
+         * @param blocked the blocked cells
+         * @param uncovered the uncovered hits
+         */
+        State(int depth, int from, long[] blocked, long[] uncovered) {
+            this.depth = depth;
+            this.from = from;
+            this.blocked = blocked;
+            this.uncovered = uncovered;
+            this.hash = 31 * (31 * (31 * depth + from) + Arrays.hashCode(blocked)) + Arrays.hashCode(uncovered);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof State))
+                return false;
+            State other = (State) o;
+            return depth == other.depth && from == other.from &&
+                    Arrays.equals(blocked, other.blocked) && Arrays.equals(uncovered, other.uncovered);
+        }
+    }
+
+    /** The placement index used to enumerate ships. */
+    private final PlacementIndex index;
+
+    /** The pool running the search. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a solver running on the common fork/join pool.
+     */
+    public ProbabilitySolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a solver running on the given pool.
+     *
+     * @param pool the pool used to run the search
+     */
+    public ProbabilitySolver(ForkJoinPool pool) {
+        assert pool != null;
+
+        this.index = PlacementIndex.getInstance();
+        this.pool = pool;
+    }
+
+    /**
+     * Computes the probability that each cell holds one of the remaining ships.
+     * Cells of sunk ships and misses always have probability 0, and uncovered
+     * hits have probability 1. If no arrangement is consistent with the
+     * given information, every cell has probability 0.
+     *
+     * @param hits the cells known to hold a ship, including those of sunk ships
+     * @param misses the cells known to be water
+     * @param sunk the ships already sunk
+     * @param remaining the kinds of the ships still afloat, as accepted by {@link Ship#buildShip}
+     * @return a {@code BOARD_SIZE x BOARD_SIZE} grid of probabilities, indexed by row and column
+     * @throws IllegalArgumentException if a ship kind is unknown or a sunk ship is not on the board
+     */
+    public double[][] solve(long[] hits, long[] misses, List<IShip> sunk, List<String> remaining) {
+        assert hits != null && misses != null && sunk != null && remaining != null;
+
+        int[] kinds = new int[remaining.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            ShipKind kind = ShipKind.byId(remaining.get(i));
+            kinds[i] = kind == null || kind.ordinal() >= index.getKindCount() ? -1 : kind.ordinal();
+            if (kinds[i] < 0)
+                throw new IllegalArgumentException("ERROR! unknown ship kind " + remaining.get(i));
+        }
+        Arrays.sort(kinds);
+
+        long[] blocked = misses.clone();
+        long[] uncovered = hits.clone();
+        for (IShip s : sunk) {
+            int p = placementOf(s);
+            index.orHalo(p, blocked);
+            for (int w = 0; w < Bitboard.WORDS; w++)
+                uncovered[w] &= ~blocked[w];
+        }
+
+        Search search = new Search(kinds, hits);
+        Result result = kinds.length == 0
+                ? (Bitboard.isEmpty(uncovered) ? leaf() : Result.EMPTY)
+                : pool.invoke(new SearchTask(search, blocked, uncovered,
+                index.firstOf(kinds[0]), index.endOf(kinds[0])));
+
+        double[][] grid = new double[IFleet.BOARD_SIZE][IFleet.BOARD_SIZE];
+        if (result.count > 0)
+            for (int cell = 0; cell < Bitboard.CELLS; cell++)
+                grid[Bitboard.rowOf(cell)][Bitboard.columnOf(cell)] = result.cover[cell] / result.count;
+        return grid;
+    }
+
+    /**
+     * Returns the placement of a sunk ship.
+     *
+     * @param s the ship
+     * @return the placement id
+     * @throws IllegalArgumentException if the ship is of an unknown kind or not on the board
+     */
+    private int placementOf(IShip s) {
+        int kind = PlacementIndex.kindOf(s);
+        int p = kind < 0 ? -1 : index.placementOf(kind, s.getBearing(),
+                s.getPosition().getRow(), s.getPosition().getColumn());
+        if (p < 0)
+            throw new IllegalArgumentException("ERROR! invalid sunk ship " + s);
+        return p;
+    }
+
+    /**
+     * Returns the result of a complete, consistent arrangement.
+     *
+     * @return a result counting a single arrangement
+     */
+    private static Result leaf() {
+        Result r = new Result();
+        r.count = 1;
+        return r;
+    }
+
+    /**
+     * The state shared by all tasks of a single call to {@link #solve}.
+     */
+    private final class Search {
+
+        /** Kinds of the ships to place, in placement order. */
+        private final int[] kinds;
+
+        /** All known hits, used to discard fully hit placements. */
+        private final long[] hits;
+
+        /** Total size of the ships from each depth onwards. */
+        private final int[] remainingSize;
+
+        /** Memoized results of sub-board states. */
+        private final Map<State, Result> memo = new ConcurrentHashMap<>();
+
+        /**
+         * Prepares a search for the given ships.
+         *
+         * @param kinds the kinds of the ships to place, sorted
+         * @param hits all known hits
+         */
+        Search(int[] kinds, long[] hits) {
+            this.kinds = kinds;
+            this.hits = hits;
+            this.remainingSize = new int[kinds.length + 1];
+            for (int d = kinds.length - 1; d >= 0; d--)
+                remainingSize[d] = remainingSize[d + 1] + sizeOf(kinds[d]);
+        }
+
+        /**
+         * Returns the number of cells occupied by ships of a kind.
+         *
+         * @param kind the kind index
+         * @return the ship size
+         */
+        private int sizeOf(int kind) {
+            return index.cellsOf(index.firstOf(kind)).length;
+        }
+
+        /**
+         * Returns the lowest placement id allowed for the ship at the given
+         * depth after placing {@code p} at the previous depth. Ships of the
+         * same kind are placed in increasing placement order, so that each
+         * arrangement is enumerated only once.
+         *
+         * @param depth the depth of the next ship
+         * @param p the placement used at the previous depth
+         * @return the lowest placement id allowed
+         */
+        int nextFrom(int depth, int p) {
+            return kinds[depth] == kinds[depth - 1] ? p + 1 : index.firstOf(kinds[depth]);
+        }
+
+        /**
+         * Tries placing the ship at {@code depth} in placement {@code p}.
+         *
+         * @param depth the depth of the ship
+         * @param p the placement id
+         * @param blocked the blocked cells before placing the ship
+         * @param uncovered the uncovered hits before placing the ship
+         * @param nextBlocked receives the blocked cells after placing the ship
+         * @param nextUncovered receives the uncovered hits after placing the ship
+         * @return {@code true} if the placement is allowed and the rest of the fleet may still cover all hits
+         */
+        boolean place(int depth, int p, long[] blocked, long[] uncovered, long[] nextBlocked, long[] nextUncovered) {
+            if (index.intersects(p, blocked) || index.isContainedIn(p, hits) || index.borderIntersects(p, uncovered))
+                return false;
+            System.arraycopy(blocked, 0, nextBlocked, 0, Bitboard.WORDS);
+            index.orHalo(p, nextBlocked);
+            for (int w = 0; w < Bitboard.WORDS; w++)
+                nextUncovered[w] = uncovered[w] & ~nextBlocked[w];
+            return Bitboard.count(nextUncovered) <= remainingSize[depth + 1];
+        }
+
+        /**
+         * Solves the sub-board state where the ships from {@code depth}
+         * onwards remain to be placed, for placements of the next ship in
+         * {@code [from, to)}.
+         *
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id to try
+         * @param to the exclusive upper bound of placement ids to try
+         * @param blocked the blocked cells
+         * @param uncovered the uncovered hits
+         * @return the result of the state
+         */
+        Result solveRange(int depth, int from, int to, long[] blocked, long[] uncovered) {
+            Result r = new Result();
+            long[] nextBlocked = Bitboard.newMask();
+            long[] nextUncovered = Bitboard.newMask();
+            boolean last = depth == kinds.length - 1;
+            boolean penultimate = depth == kinds.length - 2;
+
+            for (int p = from; p < to; p++) {
+                if (!place(depth, p, blocked, uncovered, nextBlocked, nextUncovered))
+                    continue;
+                if (last) {
+                    if (Bitboard.isEmpty(nextUncovered)) {
+                        r.count++;
+                        addCells(r.cover, p, 1);
+                    }
+                } else if (penultimate) {
+                    addLastShip(r, p, nextBlocked, nextUncovered);
+                } else {
+                    Result child = solveState(depth + 1, nextFrom(depth + 1, p), nextBlocked, nextUncovered);
+                    if (child.count > 0)
+                        r.add(child, p, index);
+                }
+            }
+            return r;
+        }
+
+        /**
+         * Solves the last ship after placing the previous one in {@code p},
+         * adding the completions directly to {@code r} without creating an
+         * intermediate result.
+         *
+         * @param r the result of the parent state
+         * @param p the placement of the previous ship
+         * @param blocked the blocked cells after placing the previous ship
+         * @param uncovered the uncovered hits after placing the previous ship
+         */
+        private void addLastShip(Result r, int p, long[] blocked, long[] uncovered) {
+            int depth = kinds.length - 1;
+            int end = index.endOf(kinds[depth]);
+            int completions = 0;
+            for (int q = nextFrom(depth, p); q < end; q++) {
+                if (index.intersects(q, blocked) || index.isContainedIn(q, hits))
+                    continue;
+                if (!index.coversAll(q, uncovered))
+                    continue;
+                completions++;
+                addCells(r.cover, q, 1);
+            }
+            if (completions > 0) {
+                r.count += completions;
+                addCells(r.cover, p, completions);
+            }
+        }
+
+        /**
+         * Adds {@code amount} to the coverage of every cell of a placement.
+         *
+         * @param cover the coverage counters
+         * @param p the placement id
+         * @param amount the amount to add
+         */
+        private void addCells(double[] cover, int p, double amount) {
+            for (int cell : index.cellsOf(p))
+                cover[cell] += amount;
+        }
+
+        /**
+         * Solves a complete sub-board state, using the memo table.
+         *
+         * @param depth the index of the next ship to place
+         * @param from the lowest placement id allowed for the next ship
+         * @param blocked the blocked cells
+         * @param uncovered the uncovered hits
+         * @return the result of the state
+         */
+        private Result solveState(int depth, int from, long[] blocked, long[] uncovered) {
+            State key = new State(depth, from, blocked.clone(), uncovered.clone());
+            Result r = memo.get(key);
+            if (r == null) {
+                r = solveRange(depth, from, index.endOf(kinds[depth]), blocked, uncovered);
+                if (r.count == 0)
+                    r = Result.EMPTY;
+                memo.putIfAbsent(key, r);
+            }
+            return r;
+        }
+    }
+
+    /**
+     * Task solving the root state for a range of placements of the first ship,
+     * splitting the range in halves until it is small enough.
+     */
+    private final class SearchTask extends RecursiveTask<Result> {
+
+        /** Serialization version, required by {@link RecursiveTask}. */
+        private static final long serialVersionUID = 1L;
+
+        /** The search this task belongs to. */
+        private final transient Search search;
+
+        /** The initially blocked cells. */
+        private final long[] blocked;
+
+        /** The initially uncovered hits. */
+        private final long[] uncovered;
+
+        /** The first placement of the range. */
+        private final int from;
+
+        /** The exclusive end of the range. */
+        private final int to;
+
+        /**
+         * Creates a task for a range of placements of the first ship.
+         *
+         * @param search the search this task belongs to
+         * @param blocked the initially blocked cells
+         * @param uncovered the initially uncovered hits
+         * @param from the first placement of the range
+         * @param to the exclusive end of the range
+         */
+        SearchTask(Search search, long[] blocked, long[] uncovered, int from, int to) {
+            this.search = search;
+            this.blocked = blocked;
+            this.uncovered = uncovered;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= SPLIT_THRESHOLD)
+                return search.solveRange(0, from, to, blocked, uncovered);
+
+            int mid = (from + to) >>> 1;
+            SearchTask left = new SearchTask(search, blocked, uncovered, from, mid);
+            left.fork();
+            Result right = new SearchTask(search, blocked, uncovered, mid, to).compute();
+            Result r = left.join();
+            r.count += right.count;
+            BoardOps.add(r.cover, right.cover);
+            return r;
+        }
+    }
+}
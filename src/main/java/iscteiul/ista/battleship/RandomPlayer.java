@@ -0,0 +1,50 @@
+package iscteiul.ista.battleship;
+
+import java.util.Random;
+
+/**
+ * An automated player that fires at board cells in random order, never
+ * firing twice at the same cell. It is the baseline strategy used in
+ * tournaments.
+ */
+public class RandomPlayer implements IPlayer {
+
+    /** Source of randomness. */
+    private final Random rnd;
+
+    /** Cells not fired at yet; the first {@code remaining} entries are valid. */
+    private final int[] cells;
+
+    /** Number of cells not fired at yet. */
+    private int remaining;
+
+    /**
+     * Creates a random player.
+     *
+     * @param rnd the source of randomness
+     */
+    public RandomPlayer(Random rnd) {
+        assert rnd != null;
+
+        this.rnd = rnd;
+        this.cells = new int[Bitboard.CELLS];
+        for (int c = 0; c < Bitboard.CELLS; c++)
+            cells[c] = c;
+        this.remaining = Bitboard.CELLS;
+    }
+
+    @Override
+    public IPosition nextShot() {
+        if (remaining == 0)
+            return null;
+        int i = rnd.nextInt(remaining);
+        int cell = cells[i];
+        cells[i] = cells[--remaining];
+        cells[remaining] = cell;
+        return new Position(Bitboard.rowOf(cell), Bitboard.columnOf(cell));
+    }
+
+    @Override
+    public void shotResult(IPosition shot, boolean hit, IShip sunk) {
+    }
+}
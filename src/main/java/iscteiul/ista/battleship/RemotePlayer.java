@@ -0,0 +1,72 @@
+package iscteiul.ista.battleship;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A player whose shots arrive from outside the scheduler thread, for example
+ * from a network connection. Shots are queued with {@link #submit} and
+ * consumed by the match when it is this player's turn; the match is woken up
+ * in its scheduler whenever a new shot arrives.
+ */
+public class RemotePlayer implements IPlayer {
+
+    /** Shots received and not fired yet. */
+    private final Queue<IPosition> pending = new ConcurrentLinkedQueue<>();
+
+    /** Number of shots fired that hit a ship. */
+    private final AtomicInteger hits = new AtomicInteger();
+
+    /** The scheduler driving the match of this player, written after {@code match}. */
+    private volatile MatchScheduler scheduler;
+
+    /** The match this player takes part in. */
+    private volatile Match match;
+
+    /**
+     * Associates the player with the match it plays and the scheduler
+     * driving it, so that new shots resume the match.
+     *
+     * @param scheduler the scheduler driving the match
+     * @param match the match of this player
+     */
+    public void attach(MatchScheduler scheduler, Match match) {
+        this.match = match;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Queues a shot received from the remote side and resumes the match.
+     *
+     * @param shot the position to fire at
+     */
+    public void submit(IPosition shot) {
+        assert shot != null;
+
+        pending.add(shot);
+        MatchScheduler s = scheduler;
+        if (s != null)
+            s.wake(match);
+    }
+
+    @Override
+    public IPosition nextShot() {
+        return pending.poll();
+    }
+
+    @Override
+    public void shotResult(IPosition shot, boolean hit, IShip sunk) {
+        if (hit)
+            hits.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of shots fired by this player that hit a ship.
+     *
+     * @return the number of hits
+     */
+    public int getHits() {
+        return hits.get();
+    }
+}
@@ -0,0 +1,388 @@
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory store of game sessions for a game server, keyed by game id.
+ *
+ * <p>Recently used games are kept as live {@link Game} objects. When the
+ * number of live games exceeds the memory budget, idle games are evicted to
+ * their compact {@link GameSnapshot} form, kept either as an on-heap byte
+ * array or in a file of a spill directory, and transparently rebuilt on the
+ * next {@link #fire}.</p>
+ *
+ * <p>Eviction follows the CLOCK policy, an approximation of least recently
+ * used: live sessions sit in a lock-free queue and are marked as referenced
+ * whenever they are used. The evictor takes sessions from the head of the
+ * queue, giving referenced ones a second chance at the tail and evicting the
+ * first one that was not used since its last visit. Each session is guarded
+ * by its own lock, so operations on different games never contend, and no
+ * global lock is ever taken.</p>
+ */
+public class SessionStore {
+
+    /** Rough number of heap bytes used by a live game, including its fleet. */
+    public static final int ESTIMATED_GAME_BYTES = 8 * 1024;
+
+    /**
+     * A game session, either live or evicted.
+     */
+    private static final class Session {
+
+        /** The game id. */
+        private final long id;
+
+        /** The live game, or {@code null} while evicted. */
+        private Game game;
+
+        /** The snapshot of the evicted game, when kept on the heap. */
+        private byte[] snapshot;
+
+        /** Whether the session was used since the evictor last looked at it. */
+        private volatile boolean referenced;
+
+        /** Whether the session was removed from the store. */
+        private boolean removed;
+
+        /**
+         * Creates a live session.
+         *
+         * @param id the game id
+         * @param game the live game
+         */
+        Session(long id, Game game) {
+            this.id = id;
+            this.game = game;
+        }
+    }
+
+    /** All sessions, by game id. */
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+
+    /** Live sessions in eviction order. */
+    private final Queue<Session> clock = new ConcurrentLinkedQueue<>();
+
+    /** Number of live sessions. */
+    private final AtomicInteger live = new AtomicInteger();
+
+    /** Number of evictions performed. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Number of games rebuilt from their snapshot. */
+    private final AtomicLong rehydrations = new AtomicLong();
+
+    /** Generator of game ids. */
+    private final AtomicLong nextId = new AtomicLong();
+
+    /** Maximum number of live games. */
+    private final int maxLive;
+
+    /** Directory receiving the snapshots of evicted games, or {@code null} to keep them on the heap. */
+    private final Path spillDirectory;
+
+    /**
+     * Creates a store keeping evicted games as on-heap byte arrays.
+     *
+     * @param memoryBudget the number of heap bytes available for live games
+     */
+    public SessionStore(long memoryBudget) {
+        this(memoryBudget, null);
+    }
+
+    /**
+     * Creates a store.
+     *
+     * @param memoryBudget the number of heap bytes available for live games
+     * @param spillDirectory the directory receiving the snapshots of evicted
+     *                       games, or {@code null} to keep them on the heap
+     */
+    public SessionStore(long memoryBudget, Path spillDirectory) {
+        this.maxLive = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / ESTIMATED_GAME_BYTES));
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Starts a new game session.
+     *
+     * @param fleet the fleet to be fired at
+     * @return the id of the new game
+     */
+    public long create(IFleet fleet) {
+        assert fleet != null;
+
+        long id = nextId.incrementAndGet();
+        Session s = new Session(id, new Game(fleet));
+        s.referenced = true;
+        sessions.put(id, s);
+        clock.add(s);
+        live.incrementAndGet();
+        evictIfNeeded();
+        return id;
+    }
+
+    /**
+     * Fires a shot in a game, rebuilding it first if it was evicted.
+     *
+     * @param id the game id
+     * @param pos the position to fire at
+     * @return the ship sunk by the shot, or {@code null} if no ship was sunk
+     * @throws IllegalArgumentException if there is no game with that id
+     */
+    public IShip fire(long id, IPosition pos) {
+        Session s = session(id);
+        boolean rehydrated;
+        IShip sunk;
+        synchronized (s) {
+            rehydrated = use(s);
+            sunk = s.game.fire(pos);
+        }
+        if (rehydrated)
+            revived(s);
+        return sunk;
+    }
+
+    /**
+     * Fires a shot in a game, rebuilding it first if it was evicted, and
+     * reports its full outcome. Apart from rebuilding an evicted game, the
+     * shot creates no object.
+     *
+     * @param id the game id
+     * @param row the row fired at
+     * @param column the column fired at
+     * @return the outcome of the shot, as a {@link ShotOutcome} code
+     * @throws IllegalArgumentException if there is no game with that id
+     */
+    public int fireAt(long id, int row, int column) {
+        Session s = session(id);
+        boolean rehydrated;
+        int outcome;
+        synchronized (s) {
+            rehydrated = use(s);
+            outcome = s.game.fireAt(row, column);
+        }
+        if (rehydrated)
+            revived(s);
+        return outcome;
+    }
+
+    /**
+     * Looks up a session.
+     *
+     * @param id the game id
+     * @return the session
+     * @throws IllegalArgumentException if there is no game with that id
+     */
+    private Session session(long id) {
+        Session s = sessions.get(id);
+        if (s == null)
+            throw new IllegalArgumentException("ERROR! unknown game " + id);
+        return s;
+    }
+
+    /**
+     * Prepares a session for use, rebuilding its game if it was evicted and
+     * marking it as referenced. Must be called while holding the session lock.
+     *
+     * @param s the session
+     * @return {@code true} if the game was rebuilt, in which case
+     *         {@link #revived(Session)} must be called once the lock is released
+     * @throws IllegalArgumentException if the session was removed
+     */
+    private boolean use(Session s) {
+        if (s.removed)
+            throw new IllegalArgumentException("ERROR! unknown game " + s.id);
+        boolean rehydrated = s.game == null;
+        if (rehydrated)
+            rehydrate(s);
+        s.referenced = true;
+        return rehydrated;
+    }
+
+    /**
+     * Puts a rebuilt session back among the live ones, evicting others if
+     * needed. Must be called without holding the session lock.
+     *
+     * @param s the rebuilt session
+     */
+    private void revived(Session s) {
+        clock.add(s);
+        live.incrementAndGet();
+        evictIfNeeded();
+    }
+
+    /**
+     * Removes a game session, for instance when the game is over.
+     *
+     * @param id the game id
+     */
+    public void remove(long id) {
+        Session s = sessions.remove(id);
+        if (s == null)
+            return;
+        synchronized (s) {
+            s.removed = true;
+            if (s.game != null) {
+                s.game = null;
+                live.decrementAndGet();
+            }
+            s.snapshot = null;
+            if (spillDirectory != null)
+                deleteSpill(s.id);
+        }
+    }
+
+    /**
+     * Returns the number of sessions in the store.
+     *
+     * @return the number of sessions
+     */
+    public int getSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of sessions currently held as live games.
+     *
+     * @return the number of live sessions
+     */
+    public int getLiveSessions() {
+        return live.get();
+    }
+
+    /**
+     * Returns the number of evictions performed so far.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of games rebuilt from their snapshot so far.
+     *
+     * @return the number of rehydrations
+     */
+    public long getRehydrations() {
+        return rehydrations.get();
+    }
+
+    /**
+     * Evicts idle sessions while there are more live games than allowed.
+     */
+    private void evictIfNeeded() {
+        int visits = 0;
+        while (live.get() > maxLive && visits < 2 * clock.size() + 1) {
+            Session s = clock.poll();
+            if (s == null)
+                return;
+            visits++;
+            if (s.referenced) {
+                s.referenced = false;
+                clock.add(s);
+            } else {
+                evict(s);
+            }
+        }
+    }
+
+    /**
+     * Replaces a live game by its snapshot. A session being used by another
+     * thread is put back in the queue instead.
+     *
+     * @param s the session to evict
+     */
+    private void evict(Session s) {
+        synchronized (s) {
+            if (s.removed || s.game == null)
+                return;
+            if (s.referenced) {
+                clock.add(s);
+                return;
+            }
+            byte[] data = GameSnapshot.encode(s.game);
+            if (spillDirectory != null)
+                writeSpill(s.id, data);
+            else
+                s.snapshot = data;
+            s.game = null;
+        }
+        live.decrementAndGet();
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * Rebuilds the live game of an evicted session. Must be called while
+     * holding the session lock.
+     *
+     * @param s the session to rebuild
+     */
+    private void rehydrate(Session s) {
+        byte[] data = spillDirectory != null ? readSpill(s.id) : s.snapshot;
+        s.game = GameSnapshot.decode(data);
+        s.snapshot = null;
+        rehydrations.incrementAndGet();
+    }
+
+    /**
+     * Returns the spill file of a session.
+     *
+     * @param id the game id
+     * @return the path of the spill file
+     */
+    private Path spillFile(long id) {
+        return spillDirectory.resolve(id + ".snap");
+    }
+
+    /**
+     * Writes the snapshot of a session to its spill file.
+     *
+     * @param id the game id
+     * @param data the snapshot bytes
+     */
+    private void writeSpill(long id, byte[] data) {
+        try {
+            Files.write(spillFile(id), data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the snapshot of a session from its spill file and deletes the file.
+     *
+     * @param id the game id
+     * @return the snapshot bytes
+     */
+    private byte[] readSpill(long id) {
+        try {
+            byte[] data = Files.readAllBytes(spillFile(id));
+            Files.delete(spillFile(id));
+            return data;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes the spill file of a session, if it exists.
+     *
+     * @param id the game id
+     */
+    private void deleteSpill(long id) {
+        try {
+            Files.deleteIfExists(spillFile(id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
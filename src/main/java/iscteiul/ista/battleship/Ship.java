@@ -1,6 +1,7 @@
 package iscteiul.ista.battleship;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -12,75 +13,78 @@ import java.util.List;
  * <p>This class implements the {@link IShip} interface and provides shared
  * behavior for all ship types, including hit detection, adjacency checks,
  * boundary calculations and collision proximity rules. Concrete ship types
- * must define their size and initialize their occupied positions.</p>
+ * must define their size and add their occupied positions with
+ * {@link #addPosition(int, int)}.</p>
+ *
+ * <p>The occupied positions are kept as coordinates, and the hits as a
+ * bitmask with one bit per position: a shot is a lookup of the ordinal of
+ * the cell plus an OR, and the ship is still floating as long as the mask
+ * is not full. The {@link IPosition} objects of {@link #getPositions()} are
+ * only created on first request, as views whose hit state is that of the
+ * ship.</p>
  */
 public abstract class Ship implements IShip {
 
-    /** Identifier for a Galleon ship. */
-    private static final String GALEAO = "galeao";
-
-    /** Identifier for a Frigate ship. */
-    private static final String FRAGATA = "fragata";
-
-    /** Identifier for a Carrack ship. */
-    private static final String NAU = "nau";
-
-    /** Identifier for a Caravel ship. */
-    private static final String CARAVELA = "caravela";
-
-    /** Identifier for a Barge ship. */
-    private static final String BARCA = "barca";
-
     /**
-     * Factory method that builds a specific ship instance based on its category.
+     * Factory method that builds a specific ship instance based on its kind
+     * identifier, as registered in {@link ShipKind}.
      * The created ship is oriented according to the given bearing and placed
      * starting at the given position.
      *
-     * @param shipKind the category of the ship to create
+     * @param shipKind the identifier of the kind of ship to create, such as {@code "nau"}
      * @param bearing the orientation of the ship
      * @param pos the starting position of the ship
-     * @return a concrete {@link Ship} instance, or {@code null} if the category is invalid
+     * @return a concrete {@link Ship} instance, or {@code null} if the kind is unknown
      */
     static Ship buildShip(String shipKind, Compass bearing, Position pos) {
-        Ship s;
-        switch (shipKind) {
-            case BARCA:
-                s = new Barge(bearing, pos);
-                break;
-            case CARAVELA:
-                s = new Caravel(bearing, pos);
-                break;
-            case NAU:
-                s = new Carrack(bearing, pos);
-                break;
-            case FRAGATA:
-                s = new Frigate(bearing, pos);
-                break;
-            case GALEAO:
-                s = new Galleon(bearing, pos);
-                break;
-            default:
-                s = null;
-        }
-        return s;
+        ShipKind kind = ShipKind.byId(shipKind);
+        return kind == null ? null : kind.build(bearing, pos);
     }
 
-    /** The category of this ship (e.g., "fragata", "caravela"). */
+    /** The category of this ship (e.g., "Fragata", "Caravel"). */
     private String category;
 
+    /** The registered kind of this ship, or {@code null} for an unregistered category. */
+    private final ShipKind kind;
+
     /** The orientation of the ship on the board. */
     private Compass bearing;
 
     /** The starting position of the ship. */
     private IPosition pos;
 
-    /** The list of all board positions occupied by this ship. */
-    protected List<IPosition> positions;
+    /** Rows of the positions occupied by this ship, in the order they were added. */
+    private int[] rows;
+
+    /** Columns of the positions occupied by this ship, in the order they were added. */
+    private int[] columns;
+
+    /** Number of positions occupied by this ship. */
+    private int count;
+
+    /**
+     * The hit positions, one bit per position. For a ship inside the board
+     * bit {@code k} stands for the {@code k}-th of its cells in board order,
+     * and otherwise for the {@code k}-th position added.
+     */
+    private long hits;
+
+    /** Read-only view of the positions, created on first use; {@code null} until then. */
+    private List<IPosition> positions;
+
+    /** Cells occupied by this ship, computed on first use; {@code null} until then. */
+    private long[] cells;
+
+    /** Occupied cells plus all cells touching them, computed with {@link #cells}. */
+    private long[] halo;
+
+    /** Whether the ship lies entirely inside the board, valid once {@link #cells} is computed. */
+    private boolean insideBoard;
 
     /**
      * Creates a ship with the given category, bearing, and starting position.
-     * Subclasses are responsible for populating the {@code positions} list
-     * according to the ship's size and orientation.
+     * Subclasses are responsible for adding the occupied positions according
+     * to the ship's size and orientation.
      *
      * @param category the category of the ship
      * @param bearing the orientation of the ship
@@ -91,9 +95,31 @@ public abstract class Ship implements IShip {
         assert pos != null;
 
         this.category = category;
+        this.kind = ShipKind.byCategory(category);
         this.bearing = bearing;
         this.pos = pos;
-        positions = new ArrayList<>();
+    }
+
+    /**
+     * Adds a position occupied by this ship. Called by the constructors of
+     * the subclasses, once per position.
+     *
+     * @param row the row of the position
+     * @param column the column of the position
+     */
+    protected final void addPosition(int row, int column) {
+        assert cells == null && positions == null && count < Long.SIZE;
+
+        if (rows == null) {
+            rows = new int[getSize()];
+            columns = new int[rows.length];
+        } else if (count == rows.length) {
+            rows = Arrays.copyOf(rows, count + 1);
+            columns = Arrays.copyOf(columns, count + 1);
+        }
+        rows[count] = row;
+        columns[count] = column;
+        count++;
     }
 
     /**
@@ -107,11 +133,28 @@ public abstract class Ship implements IShip {
     }
 
     /**
-     * Returns the list of positions occupied by this ship.
+     * Returns the registered kind of this ship.
+     *
+     * @return the ship kind, or {@code null} if the category is not registered
+     */
+    public ShipKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the list of positions occupied by this ship, as views that
+     * report and register the hits of the ship. The views are created on
+     * the first call.
      *
-     * @return the list of occupied positions
+     * @return a read-only list of the occupied positions
      */
     public List<IPosition> getPositions() {
+        if (positions == null) {
+            IPosition[] views = new IPosition[count];
+            for (int i = 0; i < count; i++)
+                views[i] = new Segment(rows[i], columns[i]);
+            positions = Collections.unmodifiableList(Arrays.asList(views));
+        }
         return positions;
     }
 
@@ -145,10 +188,16 @@ public abstract class Ship implements IShip {
      */
     @Override
     public boolean stillFloating() {
-        for (int i = 0; i < getSize(); i++)
-            if (!getPositions().get(i).isHit())
-                return true;
-        return false;
+        return hits != fullMask();
+    }
+
+    /**
+     * Returns the number of positions of this ship that have been hit.
+     *
+     * @return the number of hits
+     */
+    public int getHitCount() {
+        return Long.bitCount(hits);
     }
 
     /**
@@ -158,10 +207,10 @@ public abstract class Ship implements IShip {
      */
     @Override
     public int getTopMostPos() {
-        int top = getPositions().get(0).getRow();
-        for (int i = 1; i < getSize(); i++)
-            if (getPositions().get(i).getRow() < top)
-                top = getPositions().get(i).getRow();
+        int top = rows[0];
+        for (int i = 1; i < count; i++)
+            if (rows[i] < top)
+                top = rows[i];
         return top;
     }
 
@@ -172,10 +221,10 @@ public abstract class Ship implements IShip {
      */
     @Override
     public int getBottomMostPos() {
-        int bottom = getPositions().get(0).getRow();
-        for (int i = 1; i < getSize(); i++)
-            if (getPositions().get(i).getRow() > bottom)
-                bottom = getPositions().get(i).getRow();
+        int bottom = rows[0];
+        for (int i = 1; i < count; i++)
+            if (rows[i] > bottom)
+                bottom = rows[i];
         return bottom;
     }
 
@@ -186,10 +235,10 @@ public abstract class Ship implements IShip {
      */
     @Override
     public int getLeftMostPos() {
-        int left = getPositions().get(0).getColumn();
-        for (int i = 1; i < getSize(); i++)
-            if (getPositions().get(i).getColumn() < left)
-                left = getPositions().get(i).getColumn();
+        int left = columns[0];
+        for (int i = 1; i < count; i++)
+            if (columns[i] < left)
+                left = columns[i];
         return left;
     }
 
@@ -200,10 +249,10 @@ public abstract class Ship implements IShip {
      */
     @Override
     public int getRightMostPos() {
-        int right = getPositions().get(0).getColumn();
-        for (int i = 1; i < getSize(); i++)
-            if (getPositions().get(i).getColumn() > right)
-                right = getPositions().get(i).getColumn();
+        int right = columns[0];
+        for (int i = 1; i < count; i++)
+            if (columns[i] > right)
+                right = columns[i];
         return right;
     }
 
@@ -218,16 +267,14 @@ public abstract class Ship implements IShip {
     public boolean occupies(IPosition pos) {
         assert pos != null;
 
-        for (int i = 0; i < getSize(); i++)
-            if (getPositions().get(i).equals(pos))
-                return true;
-        return false;
+        return ordinal(pos.getRow(), pos.getColumn()) >= 0;
     }
 
     /**
      * Determines whether this ship is too close to another ship.
      * Two ships are considered too close if any of their positions
-     * are adjacent.
+     * are adjacent. When both ships are inside the board this is a
+     * single intersection of precomputed masks (see {@link BoardGeometry}).
      *
      * @param other the ship to compare with
      * @return {@code true} if the ships are adjacent or touching,
@@ -237,6 +284,9 @@ public abstract class Ship implements IShip {
     public boolean tooCloseTo(IShip other) {
         assert other != null;
 
+        if (other instanceof Ship && computeMasks() && ((Ship) other).computeMasks())
+            return Bitboard.intersects(halo, ((Ship) other).cells);
+
         Iterator<IPosition> otherPos = other.getPositions().iterator();
         while (otherPos.hasNext())
             if (tooCloseTo(otherPos.next()))
@@ -255,12 +305,87 @@ public abstract class Ship implements IShip {
      */
     @Override
     public boolean tooCloseTo(IPosition pos) {
-        for (int i = 0; i < this.getSize(); i++)
-            if (getPositions().get(i).isAdjacentTo(pos))
+        if (computeMasks() && Bitboard.isInside(pos.getRow(), pos.getColumn()))
+            return Bitboard.get(halo, Bitboard.cell(pos.getRow(), pos.getColumn()));
+
+        for (int i = 0; i < count; i++)
+            if (Math.abs(rows[i] - pos.getRow()) <= 1 && Math.abs(columns[i] - pos.getColumn()) <= 1)
                 return true;
         return false;
     }
 
+    /**
+     * Returns the cells occupied by this ship as a board mask.
+     *
+     * @return the occupied cells, or {@code null} if the ship is not entirely inside the board
+     */
+    long[] getCellMask() {
+        return computeMasks() ? cells : null;
+    }
+
+    /**
+     * Returns the cells occupied by this ship plus all cells touching them,
+     * i.e. the cells where no other ship may be placed.
+     *
+     * @return the halo of the ship, or {@code null} if the ship is not entirely inside the board
+     */
+    long[] getHaloMask() {
+        return computeMasks() ? halo : null;
+    }
+
+    /**
+     * Computes the cell and halo masks of this ship on first use. They cannot
+     * be computed in the constructor because subclasses add the positions
+     * after calling it.
+     *
+     * @return {@code true} if the ship lies entirely inside the board
+     */
+    private boolean computeMasks() {
+        if (cells == null) {
+            long[] mask = Bitboard.newMask();
+            boolean inside = true;
+            for (int i = 0; i < count && inside; i++) {
+                inside = Bitboard.isInside(rows[i], columns[i]);
+                if (inside)
+                    Bitboard.set(mask, Bitboard.cell(rows[i], columns[i]));
+            }
+            insideBoard = inside;
+            halo = inside ? BoardGeometry.halo(mask) : null;
+            cells = mask;
+        }
+        return insideBoard;
+    }
+
+    /**
+     * Returns the ordinal of a position among the positions of this ship,
+     * i.e. the index of its bit in the hit mask.
+     *
+     * @param row the row of the position
+     * @param column the column of the position
+     * @return the ordinal, or {@code -1} if the ship does not occupy the position
+     */
+    private int ordinal(int row, int column) {
+        if (computeMasks()) {
+            if (!Bitboard.isInside(row, column))
+                return -1;
+            int cell = Bitboard.cell(row, column);
+            return Bitboard.get(cells, cell) ? Bitboard.rank(cells, cell) : -1;
+        }
+        for (int i = 0; i < count; i++)
+            if (rows[i] == row && columns[i] == column)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the hit mask of a ship with all its positions hit.
+     *
+     * @return the full mask
+     */
+    private long fullMask() {
+        return count == Long.SIZE ? -1L : (1L << count) - 1;
+    }
+
     /**
      * Registers a shot on this ship at the given position.
      * If the position matches one of the ship's segments, that segment
@@ -272,10 +397,57 @@ public abstract class Ship implements IShip {
     public void shoot(IPosition pos) {
         assert pos != null;
 
-        for (IPosition position : getPositions()) {
-            if (position.equals(pos))
-                position.shoot();
-        }
+        shoot(pos.getRow(), pos.getColumn());
+    }
+
+    /**
+     * Registers a shot at the given coordinates, as {@link #shoot(IPosition)},
+     * without creating any object.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    public void shoot(int row, int column) {
+        int k = ordinal(row, column);
+        if (k >= 0)
+            hits |= 1L << k;
+    }
+
+    /**
+     * Takes back a hit at the given position, so that it is no longer hit.
+     *
+     * @param pos the position of the hit
+     */
+    @Override
+    public void unshoot(IPosition pos) {
+        assert pos != null;
+
+        unshoot(pos.getRow(), pos.getColumn());
+    }
+
+    /**
+     * Takes back a shot at the given coordinates, as
+     * {@link #unshoot(IPosition)}, without creating any object.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    public void unshoot(int row, int column) {
+        int k = ordinal(row, column);
+        if (k >= 0)
+            hits &= ~(1L << k);
+    }
+
+    /**
+     * Checks whether a position of this ship has been hit.
+     *
+     * @param row the row of the position
+     * @param column the column of the position
+     * @return {@code true} if the ship occupies the position and it was hit
+     */
+    public boolean isHit(int row, int column) {
+        int k = ordinal(row, column);
+        return k >= 0 && (hits >>> k & 1L) != 0;
     }
 
     /**
@@ -288,4 +460,31 @@ public abstract class Ship implements IShip {
     public String toString() {
         return "[" + category + " " + bearing + " " + pos + "]";
     }
-}
\ No newline at end of file
+
+    /**
+     * A position of the ship, as listed by {@link #getPositions()}. Its hit
+     * state is read from and written to the hit mask of the ship.
+     */
+    private final class Segment extends Position {
+
+        /**
+         * Creates the view of a position of the ship.
+         *
+         * @param row the row of the position
+         * @param column the column of the position
+         */
+        Segment(int row, int column) {
+            super(row, column);
+        }
+
+        @Override
+        public void shoot() {
+            Ship.this.shoot(getRow(), getColumn());
+        }
+
+        @Override
+        public boolean isHit() {
+            return Ship.this.isHit(getRow(), getColumn());
+        }
+    }
+}
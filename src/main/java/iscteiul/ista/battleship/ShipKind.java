@@ -0,0 +1,247 @@
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the kinds of ship that can be built and placed on the board.
+ *
+ * <p>Each kind has an ordinal id, assigned in registration order, so that
+ * code needing per-kind data can keep it in arrays indexed by
+ * {@link #ordinal()} and compare kinds as integers instead of category
+ * strings. A kind also holds the identifier used in commands (such as
+ * {@code "nau"}), the category reported by its ships through
+ * {@link IShip#getCategory()} (such as {@code "Nau"}), its size, the number
+ * of ships of the kind in a complete fleet and the factory building them.</p>
+ *
+ * <p>The five kinds of the Age of Discoveries fleet are registered first,
+ * in decreasing size. New kinds, such as custom variants, can be added with
+ * {@link #register}; they must be registered before the first game starts,
+ * since tables such as the {@link PlacementIndex} are built once, from the
+ * kinds known at that time.</p>
+ */
+public final class ShipKind {
+
+    /**
+     * Builds the ships of a kind.
+     */
+    @FunctionalInterface
+    public interface Factory {
+
+        /**
+         * Builds a ship.
+         *
+         * @param bearing the orientation of the ship
+         * @param pos the starting position of the ship
+         * @return the new ship
+         */
+        Ship build(Compass bearing, IPosition pos);
+    }
+
+    /** The registered kinds, by ordinal, replaced by a longer copy on each registration. */
+    private static volatile ShipKind[] kinds = new ShipKind[0];
+
+    /** The registered kinds, by identifier. */
+    private static final Map<String, ShipKind> BY_ID = new ConcurrentHashMap<>();
+
+    /** The registered kinds, by category. */
+    private static final Map<String, ShipKind> BY_CATEGORY = new ConcurrentHashMap<>();
+
+    /** The galleon, 5 positions in a T shape. */
+    public static final ShipKind GALEAO = register("galeao", "Galeao", 5, 1, Galleon::new);
+
+    /** The frigate, 4 positions in a line. */
+    public static final ShipKind FRAGATA = register("fragata", "Fragata", 4, 1, Frigate::new);
+
+    /** The carrack, 3 positions in a line. */
+    public static final ShipKind NAU = register("nau", "Nau", 3, 2, Carrack::new);
+
+    /** The caravel, 2 positions in a line. */
+    public static final ShipKind CARAVELA = register("caravela", "Caravel", 2, 3, Caravel::new);
+
+    /** The barge, a single position. */
+    public static final ShipKind BARCA = register("barca", "Barge", 1, 4, Barge::new);
+
+    /** The ordinal id of the kind. */
+    private final int ordinal;
+
+    /** The identifier of the kind in commands. */
+    private final String id;
+
+    /** The category reported by the ships of the kind. */
+    private final String category;
+
+    /** The number of positions occupied by a ship of the kind. */
+    private final int size;
+
+    /** The number of ships of the kind in a complete fleet. */
+    private final int count;
+
+    /** The factory building the ships of the kind. */
+    private final Factory factory;
+
+    /**
+     * Creates a kind.
+     *
+     * @param ordinal the ordinal id
+     * @param id the identifier in commands
+     * @param category the category reported by the ships
+     * @param size the number of positions of a ship
+     * @param count the number of ships in a complete fleet
+     * @param factory the factory building the ships
+     */
+    private ShipKind(int ordinal, String id, String category, int size, int count, Factory factory) {
+        this.ordinal = ordinal;
+        this.id = id;
+        this.category = category;
+        this.size = size;
+        this.count = count;
+        this.factory = factory;
+    }
+
+    /**
+     * Registers a new kind of ship.
+     *
+     * @param id the identifier of the kind in commands, such as {@code "nau"}
+     * @param category the category reported by the ships of the kind, such as {@code "Nau"}
+     * @param size the number of positions occupied by a ship of the kind
+     * @param count the number of ships of the kind in a complete fleet
+     * @param factory the factory building the ships of the kind
+     * @return the new kind
+     * @throws IllegalArgumentException if the identifier or category is already registered
+     */
+    public static synchronized ShipKind register(String id, String category, int size, int count, Factory factory) {
+        assert id != null && category != null && factory != null;
+
+        if (BY_ID.containsKey(id) || BY_CATEGORY.containsKey(category))
+            throw new IllegalArgumentException("ERROR! ship kind already registered: " + id);
+        ShipKind kind = new ShipKind(kinds.length, id, category, size, count, factory);
+        ShipKind[] updated = Arrays.copyOf(kinds, kinds.length + 1);
+        updated[kind.ordinal] = kind;
+        BY_ID.put(id, kind);
+        BY_CATEGORY.put(category, kind);
+        kinds = updated;
+        return kind;
+    }
+
+    /**
+     * Returns the number of registered kinds.
+     *
+     * @return the number of kinds
+     */
+    public static int count() {
+        return kinds.length;
+    }
+
+    /**
+     * Returns the kind with the given ordinal id.
+     *
+     * @param ordinal the ordinal id
+     * @return the kind
+     * @throws ArrayIndexOutOfBoundsException if there is no such kind
+     */
+    public static ShipKind get(int ordinal) {
+        return kinds[ordinal];
+    }
+
+    /**
+     * Returns all registered kinds, in ordinal order.
+     *
+     * @return a new array with the kinds
+     */
+    public static ShipKind[] values() {
+        return kinds.clone();
+    }
+
+    /**
+     * Looks up a kind by its identifier in commands, such as {@code "nau"}.
+     *
+     * @param id the identifier
+     * @return the kind, or {@code null} if the identifier is unknown
+     */
+    public static ShipKind byId(String id) {
+        return id == null ? null : BY_ID.get(id);
+    }
+
+    /**
+     * Looks up a kind by the category reported by its ships, such as {@code "Nau"}.
+     *
+     * @param category the category
+     * @return the kind, or {@code null} if the category is unknown
+     */
+    public static ShipKind byCategory(String category) {
+        return category == null ? null : BY_CATEGORY.get(category);
+    }
+
+    /**
+     * Returns the kind of a ship.
+     *
+     * @param s the ship
+     * @return the kind, or {@code null} if the ship is of an unregistered kind
+     */
+    public static ShipKind of(IShip s) {
+        return s instanceof Ship ? ((Ship) s).getKind() : byCategory(s.getCategory());
+    }
+
+    /**
+     * Builds a ship of this kind.
+     *
+     * @param bearing the orientation of the ship
+     * @param pos the starting position of the ship
+     * @return the new ship
+     */
+    public Ship build(Compass bearing, IPosition pos) {
+        return factory.build(bearing, pos);
+    }
+
+    /**
+     * Returns the ordinal id of the kind.
+     *
+     * @return the ordinal id, from {@code 0} to {@code count() - 1}
+     */
+    public int ordinal() {
+        return ordinal;
+    }
+
+    /**
+     * Returns the identifier of the kind in commands.
+     *
+     * @return the identifier, such as {@code "nau"}
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the category reported by the ships of the kind.
+     *
+     * @return the category, such as {@code "Nau"}
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Returns the number of positions occupied by a ship of the kind.
+     *
+     * @return the ship size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of ships of the kind in a complete fleet.
+     *
+     * @return the number of ships
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
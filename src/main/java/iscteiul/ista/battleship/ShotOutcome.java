@@ -0,0 +1,157 @@
+package iscteiul.ista.battleship;
+
+/**
+ * Outcome codes of a shot, as returned by {@link IGame#fireAt(int, int)}.
+ *
+ * <p>The full outcome of a shot is packed into a single {@code int}, so that
+ * it can be reported without creating any object:</p>
+ *
+ * <pre>
+ *  bits 0..2   type: {@link #INVALID}, {@link #REPEATED}, {@link #MISS}, {@link #HIT} or {@link #SUNK}
+ *  bit  3      set if the shot sank the last floating ship of the fleet
+ *  bits 8..15  index of the ship hit in {@link IFleet#getShips()}, plus one; zero if no ship was hit or unknown
+ *  bits 16..23 ordinal of the {@link ShipKind} of the ship hit, plus one; zero if none or unregistered
+ * </pre>
+ *
+ * <p>The static methods of this class decode the fields of a code.</p>
+ */
+public final class ShotOutcome {
+
+    /** The shot was outside the board. */
+    public static final int INVALID = 0;
+
+    /** The shot targeted a cell already shot at. */
+    public static final int REPEATED = 1;
+
+    /** The shot hit the water. */
+    public static final int MISS = 2;
+
+    /** The shot hit a ship that is still floating. */
+    public static final int HIT = 3;
+
+    /** The shot hit and sank a ship. */
+    public static final int SUNK = 4;
+
+    /** Flag set when the shot sank the last floating ship. */
+    private static final int GAME_OVER = 1 << 3;
+
+    /** Mask of the type field. */
+    private static final int TYPE_MASK = 7;
+
+    /** Position of the ship field. */
+    private static final int SHIP_SHIFT = 8;
+
+    /** Position of the kind field. */
+    private static final int KIND_SHIFT = 16;
+
+    /** Mask of the ship and kind fields, once shifted. */
+    private static final int FIELD_MASK = 0xFF;
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private ShotOutcome() {
+    }
+
+    /**
+     * Builds the code of a shot that hit a ship.
+     *
+     * @param sunk whether the shot sank the ship
+     * @param ship the index of the ship in the fleet, or {@code -1} if unknown
+     * @param kind the ordinal of the kind of the ship, or {@code -1} if unregistered
+     * @param gameOver whether the shot sank the last floating ship
+     * @return the outcome code
+     */
+    static int hit(boolean sunk, int ship, int kind, boolean gameOver) {
+        assert ship >= -1 && ship < FIELD_MASK && kind < FIELD_MASK;
+
+        return (sunk ? SUNK : HIT) | (gameOver ? GAME_OVER : 0)
+                | (ship + 1) << SHIP_SHIFT | (kind + 1) << KIND_SHIFT;
+    }
+
+    /**
+     * Returns the type of an outcome.
+     *
+     * @param outcome the outcome code
+     * @return one of {@link #INVALID}, {@link #REPEATED}, {@link #MISS}, {@link #HIT} and {@link #SUNK}
+     */
+    public static int type(int outcome) {
+        return outcome & TYPE_MASK;
+    }
+
+    /**
+     * Checks whether a shot was inside the board and not repeated, i.e.
+     * whether it was recorded among the shots of the game.
+     *
+     * @param outcome the outcome code
+     * @return {@code true} for a miss, a hit or a sink
+     */
+    public static boolean isValid(int outcome) {
+        return type(outcome) >= MISS;
+    }
+
+    /**
+     * Checks whether a shot hit a ship, whether or not it sank it.
+     *
+     * @param outcome the outcome code
+     * @return {@code true} for a hit or a sink
+     */
+    public static boolean isHit(int outcome) {
+        return type(outcome) >= HIT;
+    }
+
+    /**
+     * Checks whether a shot sank a ship.
+     *
+     * @param outcome the outcome code
+     * @return {@code true} for a sink
+     */
+    public static boolean isSunk(int outcome) {
+        return type(outcome) == SUNK;
+    }
+
+    /**
+     * Checks whether a shot sank the last floating ship of the fleet.
+     *
+     * @param outcome the outcome code
+     * @return {@code true} if the game is over
+     */
+    public static boolean isGameOver(int outcome) {
+        return (outcome & GAME_OVER) != 0;
+    }
+
+    /**
+     * Returns the ship hit by a shot.
+     *
+     * @param outcome the outcome code
+     * @return the index of the ship in {@link IFleet#getShips()}, or {@code -1} if no ship was hit or the index is unknown
+     */
+    public static int ship(int outcome) {
+        return (outcome >>> SHIP_SHIFT & FIELD_MASK) - 1;
+    }
+
+    /**
+     * Returns the kind of the ship hit by a shot.
+     *
+     * @param outcome the outcome code
+     * @return the kind, or {@code null} if no ship was hit or its kind is not registered
+     */
+    public static ShipKind kind(int outcome) {
+        int kind = (outcome >>> KIND_SHIFT & FIELD_MASK) - 1;
+        return kind < 0 ? null : ShipKind.get(kind);
+    }
+
+    /**
+     * Describes an outcome, for logging and debugging.
+     *
+     * @param outcome the outcome code
+     * @return a short description, such as {@code "SUNK nau #3"}
+     */
+    public static String toString(int outcome) {
+        String[] names = {"INVALID", "REPEATED", "MISS", "HIT", "SUNK"};
+        String s = type(outcome) < names.length ? names[type(outcome)] : "?";
+        if (isHit(outcome))
+            s += " " + kind(outcome) + " #" + ship(outcome);
+        return isGameOver(outcome) ? s + " GAME OVER" : s;
+    }
+}
@@ -0,0 +1,405 @@
+package iscteiul.ista.battleship;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the board of a game to spectators as compact deltas.
+ *
+ * <p>Instead of redrawing the whole board for every viewer, the renderer
+ * keeps a log of the cells that changed, in the order of
+ * {@link Game#getShots()}, and remembers for each viewer how much of the log
+ * it has already received. {@link #delta(int)} returns only the changes a
+ * viewer has not seen yet, so the cost grows with the number of shots, not
+ * with the board area times the number of viewers. A new viewer first
+ * receives the whole board, encoded as changes from an empty board, so the
+ * log only keeps the changes some viewer has not received yet, and the ids
+ * of removed viewers are handed out again.</p>
+ *
+ * <p>Each change takes one byte:</p>
+ * <ul>
+ *     <li>{@code 0..99}: the cell with that index is water;</li>
+ *     <li>{@code 100..199}: the cell with index {@code code - 100} was hit;</li>
+ *     <li>{@code 200 + n}: {@code n} cells of sunk ships follow, one byte each; each sunk ship is
+ *     announced by one such code;</li>
+ *     <li>{@code 255}: the shot at the cell in the next byte was undone, so the cell is unknown again.</li>
+ * </ul>
+ *
+ * <p>When a shot that sank a ship is undone, the other cells of the ship are
+ * sent again as hit before the undone cell.</p>
+ *
+ * <p>A viewer decodes the deltas with {@link #apply(byte[], char[][])}. The
+ * renderer follows the game as a {@link GameListener}; its methods are
+ * synchronized, so viewers may be served from other threads.</p>
+ */
+public class SpectatorRenderer implements GameListener {
+
+    /** Code of the first hit cell. */
+    private static final int HIT = Bitboard.CELLS;
+
+    /** Code announcing a sunk ship, plus its size. */
+    private static final int SUNK = 2 * Bitboard.CELLS;
+
+    /** Code announcing an undone shot. */
+    private static final int UNDONE = 255;
+
+    /** Board symbol of a cell not shot at. */
+    public static final char UNKNOWN = '.';
+
+    /** Board symbol of water. */
+    public static final char WATER = 'o';
+
+    /** Board symbol of a hit cell of a floating ship. */
+    public static final char HIT_CELL = 'X';
+
+    /** Board symbol of a cell of a sunk ship. */
+    public static final char SUNK_CELL = '#';
+
+    /** Largest number of cells announced by a single {@link #SUNK} code. */
+    private static final int MAX_GROUP = UNDONE - SUNK - 1;
+
+    /** Cursor of a viewer that has not received the board yet. */
+    private static final int FRESH = -2;
+
+    /** Cursor of a removed viewer, whose id can be handed out again. */
+    private static final int REMOVED = -1;
+
+    /** The current board, by row and column. */
+    private final char[][] board = newBoard();
+
+    /** The fleet of the game followed. */
+    private final IFleet fleet;
+
+    /** The changes of the board not yet received by every viewer, in order. */
+    private byte[] log = new byte[64];
+
+    /** Number of bytes in the log. */
+    private int length;
+
+    /** Position of each viewer in the log, or {@link #FRESH} or {@link #REMOVED}. */
+    private int[] cursors = new int[4];
+
+    /** Number of viewer ids handed out. */
+    private int viewers;
+
+    /** Number of viewers reading the log, i.e. neither fresh nor removed. */
+    private int readers;
+
+    /**
+     * Creates a renderer for a game, recording the shots already fired and
+     * registering as a listener for the next ones.
+     *
+     * @param game the game to follow
+     */
+    public SpectatorRenderer(Game game) {
+        assert game != null;
+
+        fleet = game.getFleet();
+        Map<IShip, Integer> hitsLeft = new HashMap<>();
+        for (IPosition shot : game.getShots()) {
+            IShip s = fleet.shipAt(shot);
+            shotFired(shot.getRow(), shot.getColumn());
+            if (s != null) {
+                shipHit(shot.getRow(), shot.getColumn());
+                int left = hitsLeft.getOrDefault(s, s.getSize()) - 1;
+                hitsLeft.put(s, left);
+                if (left == 0)
+                    shipSunk(s);
+            }
+        }
+        game.addListener(this);
+    }
+
+    /**
+     * Adds a viewer, who will first receive the whole board as it is when
+     * the viewer asks for its first delta. The id of a removed viewer may be
+     * handed out again.
+     *
+     * @return the viewer id
+     */
+    public synchronized int addViewer() {
+        for (int viewer = 0; viewer < viewers; viewer++)
+            if (cursors[viewer] == REMOVED) {
+                cursors[viewer] = FRESH;
+                return viewer;
+            }
+        if (viewers == cursors.length)
+            cursors = Arrays.copyOf(cursors, 2 * cursors.length);
+        cursors[viewers] = FRESH;
+        return viewers++;
+    }
+
+    /**
+     * Removes a viewer, freeing its id and the changes only it was waiting for.
+     *
+     * @param viewer the viewer id
+     */
+    public synchronized void removeViewer(int viewer) {
+        checkViewer(viewer);
+        if (cursors[viewer] >= 0)
+            readers--;
+        cursors[viewer] = REMOVED;
+        compact();
+    }
+
+    /**
+     * Returns the changes a viewer has not received yet and marks them as received.
+     *
+     * @param viewer the viewer id
+     * @return the encoded changes, empty if there are none
+     * @throws IllegalArgumentException if there is no such viewer
+     */
+    public synchronized byte[] delta(int viewer) {
+        checkViewer(viewer);
+        byte[] delta;
+        if (cursors[viewer] == FRESH) {
+            delta = snapshot();
+            readers++;
+        } else {
+            delta = Arrays.copyOfRange(log, cursors[viewer], length);
+        }
+        cursors[viewer] = length;
+        compact();
+        return delta;
+    }
+
+    /**
+     * Returns the number of bytes a viewer has not received yet.
+     *
+     * @param viewer the viewer id
+     * @return the size of the next delta
+     * @throws IllegalArgumentException if there is no such viewer
+     */
+    public synchronized int pending(int viewer) {
+        checkViewer(viewer);
+        return cursors[viewer] == FRESH ? snapshot().length : length - cursors[viewer];
+    }
+
+    /**
+     * Records a shot, as water until {@link #shipHit} says otherwise.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    @Override
+    public synchronized void shotFired(int row, int column) {
+        board[row][column] = WATER;
+        append(Bitboard.cell(row, column));
+    }
+
+    /**
+     * Turns the shot just recorded into a hit.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     */
+    @Override
+    public synchronized void shipHit(int row, int column) {
+        int cell = Bitboard.cell(row, column);
+        board[row][column] = HIT_CELL;
+        if (length > 0 && log[length - 1] == (byte) cell)
+            log[length - 1] = (byte) (HIT + cell);
+        else
+            append(HIT + cell);
+    }
+
+    /**
+     * Records the cells of a sunk ship.
+     *
+     * @param ship the ship that was sunk
+     */
+    @Override
+    public synchronized void shipSunk(IShip ship) {
+        int[] cells = cellsOf(ship);
+        append(SUNK + cells.length);
+        for (int cell : cells) {
+            board[Bitboard.rowOf(cell)][Bitboard.columnOf(cell)] = SUNK_CELL;
+            append(cell);
+        }
+    }
+
+    /**
+     * Records a shot taken back: the cell is unknown again and, if the shot
+     * sank a ship, the other cells of the ship are only hit.
+     *
+     * @param row the row of the shot
+     * @param column the column of the shot
+     * @param outcome the outcome the shot had
+     */
+    @Override
+    public synchronized void shotUndone(int row, int column, int outcome) {
+        if (!ShotOutcome.isValid(outcome))
+            return;
+        int cell = Bitboard.cell(row, column);
+        if (ShotOutcome.isSunk(outcome))
+            for (int other : cellsOf(fleet.getShips().get(ShotOutcome.ship(outcome))))
+                if (other != cell) {
+                    board[Bitboard.rowOf(other)][Bitboard.columnOf(other)] = HIT_CELL;
+                    append(HIT + other);
+                }
+        board[row][column] = UNKNOWN;
+        append(UNDONE);
+        append(cell);
+    }
+
+    /**
+     * Applies a delta to a viewer's copy of the board. A new board must be
+     * filled with {@link #UNKNOWN}.
+     *
+     * @param delta the changes, as returned by {@link #delta(int)}
+     * @param board the board to update, by row and column
+     * @throws IllegalArgumentException if the delta is malformed
+     */
+    public static void apply(byte[] delta, char[][] board) {
+        int i = 0;
+        while (i < delta.length) {
+            int code = delta[i++] & 0xFF;
+            if (code < HIT) {
+                board[Bitboard.rowOf(code)][Bitboard.columnOf(code)] = WATER;
+            } else if (code < SUNK) {
+                board[Bitboard.rowOf(code - HIT)][Bitboard.columnOf(code - HIT)] = HIT_CELL;
+            } else if (code == UNDONE) {
+                if (i == delta.length)
+                    throw new IllegalArgumentException("ERROR! truncated delta");
+                int cell = delta[i++] & 0xFF;
+                if (cell >= Bitboard.CELLS)
+                    throw new IllegalArgumentException("ERROR! malformed delta");
+                board[Bitboard.rowOf(cell)][Bitboard.columnOf(cell)] = UNKNOWN;
+            } else {
+                int end = i + code - SUNK;
+                if (end > delta.length)
+                    throw new IllegalArgumentException("ERROR! truncated delta");
+                for (; i < end; i++) {
+                    int cell = delta[i] & 0xFF;
+                    if (cell >= Bitboard.CELLS)
+                        throw new IllegalArgumentException("ERROR! malformed delta");
+                    board[Bitboard.rowOf(cell)][Bitboard.columnOf(cell)] = SUNK_CELL;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an empty board for a viewer.
+     *
+     * @return a board filled with {@link #UNKNOWN}
+     */
+    public static char[][] newBoard() {
+        char[][] board = new char[IFleet.BOARD_SIZE][IFleet.BOARD_SIZE];
+        for (char[] row : board)
+            Arrays.fill(row, UNKNOWN);
+        return board;
+    }
+
+    /**
+     * Prints a viewer's board.
+     *
+     * @param board the board, by row and column
+     * @param out the stream to print to
+     */
+    public static void print(char[][] board, PrintStream out) {
+        for (char[] row : board)
+            out.println(row);
+    }
+
+    /**
+     * Appends one byte to the log, unless no viewer is reading it.
+     *
+     * @param code the byte
+     */
+    private void append(int code) {
+        if (readers == 0)
+            return;
+        if (length == log.length)
+            log = Arrays.copyOf(log, 2 * log.length);
+        log[length++] = (byte) code;
+    }
+
+    /**
+     * Drops the start of the log once every reader has received it, when
+     * that is at least half of the log, so the log only grows with the
+     * backlog of the slowest viewer.
+     */
+    private void compact() {
+        int min = length;
+        for (int viewer = 0; viewer < viewers; viewer++)
+            if (cursors[viewer] >= 0)
+                min = Math.min(min, cursors[viewer]);
+        if (min == 0 || 2 * min < length)
+            return;
+        System.arraycopy(log, min, log, 0, length - min);
+        length -= min;
+        for (int viewer = 0; viewer < viewers; viewer++)
+            if (cursors[viewer] >= 0)
+                cursors[viewer] -= min;
+    }
+
+    /**
+     * Encodes the current board as a delta for a new viewer: its water and
+     * hit cells, then its sunk cells in groups of at most {@link #MAX_GROUP}.
+     *
+     * @return the encoded board
+     */
+    private byte[] snapshot() {
+        byte[] out = new byte[Bitboard.CELLS + Bitboard.CELLS / MAX_GROUP + 1];
+        int n = 0;
+        int sunk = 0;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++) {
+            char c = board[Bitboard.rowOf(cell)][Bitboard.columnOf(cell)];
+            if (c == WATER)
+                out[n++] = (byte) cell;
+            else if (c == HIT_CELL)
+                out[n++] = (byte) (HIT + cell);
+            else if (c == SUNK_CELL)
+                sunk++;
+        }
+        for (int cell = 0; sunk > 0; ) {
+            int group = Math.min(sunk, MAX_GROUP);
+            out[n++] = (byte) (SUNK + group);
+            for (int i = 0; i < group; cell++)
+                if (board[Bitboard.rowOf(cell)][Bitboard.columnOf(cell)] == SUNK_CELL) {
+                    out[n++] = (byte) cell;
+                    i++;
+                }
+            sunk -= group;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Returns the cells of a ship. Ships of a registered kind are looked up
+     * in the {@link PlacementIndex}, without building their positions.
+     *
+     * @param ship the ship
+     * @return the cell indexes of the ship, not to be modified
+     */
+    private static int[] cellsOf(IShip ship) {
+        int kind = PlacementIndex.kindOf(ship);
+        if (kind >= 0) {
+            IPosition pos = ship.getPosition();
+            PlacementIndex index = PlacementIndex.getInstance();
+            int p = index.placementOf(kind, ship.getBearing(), pos.getRow(), pos.getColumn());
+            if (p >= 0)
+                return index.cellsOf(p);
+        }
+        List<IPosition> positions = ship.getPositions();
+        int[] cells = new int[positions.size()];
+        for (int i = 0; i < cells.length; i++)
+            cells[i] = Bitboard.cell(positions.get(i).getRow(), positions.get(i).getColumn());
+        return cells;
+    }
+
+    /**
+     * Checks that a viewer id is valid.
+     *
+     * @param viewer the viewer id
+     * @throws IllegalArgumentException if there is no such viewer
+     */
+    private void checkViewer(int viewer) {
+        if (viewer < 0 || viewer >= viewers || cursors[viewer] == REMOVED)
+            throw new IllegalArgumentException("ERROR! unknown viewer " + viewer);
+    }
+}
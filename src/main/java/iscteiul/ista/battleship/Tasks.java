@@ -1,6 +1,8 @@
 package iscteiul.ista.battleship;
 
-import java.util.Scanner;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -18,11 +20,18 @@ import org.apache.logging.log4j.Logger;
  */
 public class Tasks {
 
-    /** Logger used to output task results and diagnostic messages. */
-    private static final Logger LOGGER = LogManager.getLogger();
+    /**
+     * Holder of the logger, so that log4j is initialized when a task first
+     * logs a message, and not at all by sessions printing to a stream.
+     */
+    private static final class Log {
+
+        /** Logger used to output task results and diagnostic messages. */
+        static final Logger LOGGER = LogManager.getLogger(Tasks.class);
+    }
 
     /** Number of shots fired in a single firing round. */
-    private static final int NUMBER_SHOTS = 3;
+    static final int NUMBER_SHOTS = 3;
 
     /** Message displayed when the user exits a task. */
     private static final String GOODBYE_MESSAGE = "Bons ventos!";
@@ -55,13 +64,13 @@ public class Tasks {
      * occupies each of them.
      */
     public static void taskA() {
-        Scanner in = new Scanner(System.in);
+        CommandReader in = new CommandReader(System.in);
         while (in.hasNext()) {
             Ship s = readShip(in);
             if (s != null)
                 for (int i = 0; i < NUMBER_SHOTS; i++) {
                     Position p = readPosition(in);
-                    LOGGER.info("{} {}", p, s.occupies(p));
+                    Log.LOGGER.info("{} {}", p, s.occupies(p));
                 }
         }
     }
@@ -71,7 +80,7 @@ public class Tasks {
      * request its status. Unknown commands are ignored in this task.
      */
     public static void taskB() {
-        Scanner in = new Scanner(System.in);
+        CommandReader in = new CommandReader(System.in);
         IFleet fleet = null;
         String command = in.next();
 
@@ -85,11 +94,11 @@ public class Tasks {
                         fleet.printStatus();
                     break;
                 default:
-                    LOGGER.info("Que comando é esse??? Repete lá ...");
+                    Log.LOGGER.info("Que comando é esse??? Repete lá ...");
             }
             command = in.next();
         }
-        LOGGER.info(GOODBYE_MESSAGE);
+        Log.LOGGER.info(GOODBYE_MESSAGE);
     }
 
     /**
@@ -97,7 +106,7 @@ public class Tasks {
      * fleet layout. Useful for verifying ship placement and collision rules.
      */
     public static void taskC() {
-        Scanner in = new Scanner(System.in);
+        CommandReader in = new CommandReader(System.in);
         IFleet fleet = null;
         String command = in.next();
 
@@ -111,14 +120,14 @@ public class Tasks {
                         fleet.printStatus();
                     break;
                 case BATOTA:
-                    LOGGER.info(fleet);
+                    Log.LOGGER.info(fleet);
                     break;
                 default:
-                    LOGGER.info("Que comando é esse??? Repete lá ...");
+                    Log.LOGGER.info("Que comando é esse??? Repete lá ...");
             }
             command = in.next();
         }
-        LOGGER.info(GOODBYE_MESSAGE);
+        Log.LOGGER.info(GOODBYE_MESSAGE);
     }
 
     /**
@@ -127,48 +136,81 @@ public class Tasks {
      * shots and remaining ships.
      */
     public static void taskD() {
+        playSession(new CommandReader(System.in), System.out, Log.LOGGER::info);
+    }
 
-        Scanner in = new Scanner(System.in);
-        IFleet fleet = null;
-        IGame game = null;
-        String command = in.next();
+    /**
+     * Plays a full game session as {@link #taskD()}, printing every message
+     * to {@code out} along with the boards. This is the start-up path of
+     * short scripted sessions: it does not initialize log4j.
+     *
+     * @param in the source of the commands
+     * @param out the stream receiving the output of the session
+     * @return the number of commands executed
+     */
+    public static int playSession(Reader in, PrintStream out) {
+        return playSession(new CommandReader(in), out, out::println);
+    }
 
-        while (!command.equals(DESISTIR)) {
+    /**
+     * Plays a full game session driven by a command script, as in
+     * {@link #taskD()}, until the exit command or the end of the input.
+     * Boards and fleet listings are printed to {@code out}, and every other
+     * message is passed to {@code log}, so the same session can run
+     * interactively or headless.
+     *
+     * @param in the reader of the commands
+     * @param out the stream receiving boards and fleet listings
+     * @param log the sink receiving the messages of the session
+     * @return the number of commands executed
+     */
+    static int playSession(CommandReader in, PrintStream out, Consumer<String> log) {
+        assert in != null && out != null && log != null;
+
+        Fleet fleet = null;
+        Game game = null;
+        int commands = 0;
+
+        while (in.hasNext()) {
+            String command = in.next();
+            commands++;
+            if (command.equals(DESISTIR))
+                break;
             switch (command) {
                 case NOVAFROTA:
-                    fleet = buildFleet(in);
+                    fleet = buildFleet(in, log);
                     game = new Game(fleet);
                     break;
                 case STATUS:
                     if (fleet != null)
-                        fleet.printStatus();
+                        fleet.printStatus(out);
                     break;
                 case BATOTA:
                     if (fleet != null)
-                        game.printFleet();
+                        game.printFleet(out);
                     break;
                 case RAJADA:
                     if (game != null) {
-                        firingRound(in, game);
+                        firingRound(in, game, log);
 
-                        LOGGER.info("Hits: {} Inv: {} Rep: {} Restam {} navios.",
+                        log.accept(String.format("Hits: %d Inv: %d Rep: %d Restam %d navios.",
                                 game.getHits(), game.getInvalidShots(),
-                                game.getRepeatedShots(), game.getRemainingShips());
+                                game.getRepeatedShots(), game.getRemainingShips()));
 
                         if (game.getRemainingShips() == 0)
-                            LOGGER.info("Maldito sejas, Java Sparrow, eu voltarei, glub glub glub...");
+                            log.accept("Maldito sejas, Java Sparrow, eu voltarei, glub glub glub...");
                     }
                     break;
                 case VERTIROS:
                     if (game != null)
-                        game.printValidShots();
+                        game.printValidShots(out);
                     break;
                 default:
-                    LOGGER.info("Que comando é esse??? Repete ...");
+                    log.accept("Que comando é esse??? Repete ...");
             }
-            command = in.next();
         }
-        LOGGER.info(GOODBYE_MESSAGE);
+        log.accept(GOODBYE_MESSAGE);
+        return commands;
     }
 
     // -------------------------------------------------------------------------
@@ -180,28 +222,40 @@ public class Tasks {
      * reaches its maximum size. Invalid ships or invalid placements are
      * reported through the logger.
      *
-     * @param in the scanner used to read user input
+     * @param in the reader of the user input
      * @return the constructed fleet
      */
-    static Fleet buildFleet(Scanner in) {
+    static Fleet buildFleet(CommandReader in) {
+        return buildFleet(in, Log.LOGGER::info);
+    }
+
+    /**
+     * Builds a fleet as {@link #buildFleet(CommandReader)}, reporting invalid ships
+     * to the given message sink.
+     *
+     * @param in the reader of the user input
+     * @param log the sink receiving the messages
+     * @return the constructed fleet
+     */
+    static Fleet buildFleet(CommandReader in, Consumer<String> log) {
         assert in != null;
 
         Fleet fleet = new Fleet();
         int i = 0;
 
-        while (i <= Fleet.FLEET_SIZE) {
+        while (i < Fleet.FLEET_SIZE) {
             IShip s = readShip(in);
             if (s != null) {
                 boolean success = fleet.addShip(s);
                 if (success)
                     i++;
                 else
-                    LOGGER.info("Falha na criacao de {} {} {}", s.getCategory(), s.getBearing(), s.getPosition());
+                    log.accept(String.format("Falha na criacao de %s %s %s", s.getCategory(), s.getBearing(), s.getPosition()));
             } else {
-                LOGGER.info("Navio desconhecido!");
+                log.accept("Navio desconhecido!");
             }
         }
-        LOGGER.info("{} navios adicionados com sucesso!", i);
+        log.accept(String.format("%d navios adicionados com sucesso!", i));
         return fleet;
     }
 
@@ -209,10 +263,10 @@ public class Tasks {
      * Reads ship data from the input, constructs the corresponding ship, and
      * returns it.
      *
-     * @param in the scanner used to read user input
+     * @param in the reader of the user input
      * @return the constructed ship, or {@code null} if the category is invalid
      */
-    static Ship readShip(Scanner in) {
+    static Ship readShip(CommandReader in) {
         String shipKind = in.next();
         Position pos = readPosition(in);
         char c = in.next().charAt(0);
@@ -223,10 +277,10 @@ public class Tasks {
     /**
      * Reads a board position from the input.
      *
-     * @param in the scanner used to read user input
+     * @param in the reader of the user input
      * @return the position that was read
      */
-    static Position readPosition(Scanner in) {
+    static Position readPosition(CommandReader in) {
         int row = in.nextInt();
         int column = in.nextInt();
         return new Position(row, column);
@@ -236,15 +290,31 @@ public class Tasks {
      * Executes a firing round consisting of three shots in the context of a
      * game. Each shot is read from the input and applied to the game state.
      *
-     * @param in the scanner used to read user input
+     * @param in the reader of the user input
+     * @param game the game instance on which shots are fired
+     */
+    static void firingRound(CommandReader in, IGame game) {
+        firingRound(in, game, Log.LOGGER::info);
+    }
+
+    /**
+     * Executes a firing round as {@link #firingRound(CommandReader, IGame)},
+     * reporting sunk ships to the given message sink.
+     *
+     * @param in the reader of the user input
      * @param game the game instance on which shots are fired
+     * @param log the sink receiving the messages
      */
-    static void firingRound(Scanner in, IGame game) {
+    static void firingRound(CommandReader in, IGame game, Consumer<String> log) {
         for (int i = 0; i < NUMBER_SHOTS; i++) {
-            IPosition pos = readPosition(in);
-            IShip sh = game.fire(pos);
-            if (sh != null)
-                LOGGER.info("Mas... mas... {}s nao sao a prova de bala? :-(", sh.getCategory());
+            int row = in.nextInt();
+            int column = in.nextInt();
+            int outcome = game.fireAt(row, column);
+            if (ShotOutcome.isSunk(outcome)) {
+                ShipKind kind = ShotOutcome.kind(outcome);
+                log.accept(String.format("Mas... mas... %ss nao sao a prova de bala? :-(",
+                        kind != null ? kind.getCategory() : "Navio"));
+            }
         }
     }
 }
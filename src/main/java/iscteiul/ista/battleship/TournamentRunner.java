@@ -0,0 +1,385 @@
+package iscteiul.ista.battleship;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+/**
+ * Round-robin tournament between automated playing strategies.
+ *
+ * <p>Every pair of strategies plays a series of {@link Match}es, run in
+ * batches on a {@link ForkJoinPool} so that idle workers steal matches from
+ * busy ones. To reduce the variance of the comparison, the series use common
+ * random numbers: match {@code m} of every pairing uses the same two fleets
+ * and the same player seeds, and consecutive matches swap which strategy
+ * starts. The fleets and seeds stay with the starting seat, so they swap
+ * along with the starter, and over each pair of matches both strategies
+ * play with both fleets and both seeds. A series stops as soon as the 95%
+ * Wilson confidence interval of the first strategy's win rate is narrower
+ * than the requested half-width, or when the maximum number of matches is
+ * reached.</p>
+ *
+ * <p>The outcome of every match is written to a compact binary result file:
+ * a header with {@link #MAGIC}, {@link #VERSION} and the strategy names,
+ * followed by one block per batch holding the two strategy indexes, the
+ * number of matches and one {@code short} per match, equal to twice the
+ * number of turns played plus 1 if the first strategy won.</p>
+ */
+public class TournamentRunner {
+
+    /** Identifier written at the start of result files ("BSTR"). */
+    public static final int MAGIC = 0x42535452;
+
+    /** Version of the result file format. */
+    public static final int VERSION = 1;
+
+    /** Maximum number of strategies, since strategy indexes are written as one byte. */
+    public static final int MAX_STRATEGIES = 255;
+
+    /** Number of matches below which a task is not split further. */
+    private static final int SPLIT_THRESHOLD = 64;
+
+    /** Normal quantile of the 95% confidence interval. */
+    private static final double Z_95 = 1.96;
+
+    /**
+     * Summary of the series played by a pair of strategies.
+     */
+    public static final class PairingResult {
+
+        /** Index of the first strategy. */
+        private final int first;
+
+        /** Index of the second strategy. */
+        private final int second;
+
+        /** Number of matches played. */
+        private int matches;
+
+        /** Number of matches won by the first strategy. */
+        private int firstWins;
+
+        /** Total number of turns played. */
+        private long turns;
+
+        /**
+         * Creates an empty result.
+         *
+         * @param first the index of the first strategy
+         * @param second the index of the second strategy
+         */
+        PairingResult(int first, int second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        /**
+         * Returns the index of the first strategy.
+         *
+         * @return the strategy index
+         */
+        public int getFirst() {
+            return first;
+        }
+
+        /**
+         * Returns the index of the second strategy.
+         *
+         * @return the strategy index
+         */
+        public int getSecond() {
+            return second;
+        }
+
+        /**
+         * Returns the number of matches played.
+         *
+         * @return the number of matches
+         */
+        public int getMatches() {
+            return matches;
+        }
+
+        /**
+         * Returns the fraction of matches won by the first strategy.
+         *
+         * @return the win rate of the first strategy
+         */
+        public double getWinRate() {
+            return matches == 0 ? 0 : (double) firstWins / matches;
+        }
+
+        /**
+         * Returns the half-width of the 95% Wilson score interval of the win
+         * rate. Unlike the normal approximation, it does not shrink to zero
+         * when one strategy has won or lost every match so far, so a series
+         * does not stop after a lucky first batch.
+         *
+         * @return the half-width of the confidence interval
+         */
+        public double getHalfWidth() {
+            if (matches == 0)
+                return Double.POSITIVE_INFINITY;
+            double p = getWinRate();
+            double z2n = Z_95 * Z_95 / matches;
+            return Z_95 / (1 + z2n) * Math.sqrt(p * (1 - p) / matches + z2n / (4.0 * matches));
+        }
+
+        /**
+         * Returns the average number of turns per match.
+         *
+         * @return the average number of turns
+         */
+        public double getAverageTurns() {
+            return matches == 0 ? 0 : (double) turns / matches;
+        }
+    }
+
+    /** Names of the strategies. */
+    private final List<String> names = new ArrayList<>();
+
+    /** Factories creating a player of each strategy from a seed. */
+    private final List<LongFunction<IPlayer>> strategies = new ArrayList<>();
+
+    /** Maximum number of matches per pairing. */
+    private final int maxMatches;
+
+    /** Number of matches played between two confidence checks. */
+    private final int batchSize;
+
+    /** Target half-width of the confidence interval. */
+    private final double halfWidth;
+
+    /** Base seed of all fleets and players. */
+    private final long seed;
+
+    /** The pool running the matches. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a tournament running on the common fork/join pool.
+     *
+     * @param maxMatches the maximum number of matches per pairing
+     * @param batchSize the number of matches played between two confidence checks
+     * @param halfWidth the target half-width of the win rate confidence interval
+     * @param seed the base seed of all fleets and players
+     */
+    public TournamentRunner(int maxMatches, int batchSize, double halfWidth, long seed) {
+        this(maxMatches, batchSize, halfWidth, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a tournament.
+     *
+     * @param maxMatches the maximum number of matches per pairing
+     * @param batchSize the number of matches played between two confidence checks
+     * @param halfWidth the target half-width of the win rate confidence interval
+     * @param seed the base seed of all fleets and players
+     * @param pool the pool running the matches
+     */
+    public TournamentRunner(int maxMatches, int batchSize, double halfWidth, long seed, ForkJoinPool pool) {
+        assert maxMatches > 0 && batchSize > 0 && pool != null;
+
+        this.maxMatches = maxMatches;
+        this.batchSize = batchSize + (batchSize & 1);
+        this.halfWidth = halfWidth;
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    /**
+     * Adds a strategy to the tournament.
+     *
+     * @param name the name of the strategy
+     * @param factory creates a player of the strategy from a seed
+     * @throws IllegalArgumentException if the tournament already has {@value #MAX_STRATEGIES} strategies
+     */
+    public void addStrategy(String name, LongFunction<IPlayer> factory) {
+        assert name != null && factory != null;
+
+        if (names.size() == MAX_STRATEGIES)
+            throw new IllegalArgumentException("ERROR! a tournament has at most " + MAX_STRATEGIES + " strategies");
+        names.add(name);
+        strategies.add(factory);
+    }
+
+    /**
+     * Returns the names of the strategies, in the order they were added.
+     *
+     * @return the strategy names
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Plays every pairing of strategies and writes the outcome of each match.
+     *
+     * @param out the destination of the result file
+     * @return the summary of each pairing
+     * @throws IOException if writing the results fails
+     */
+    public List<PairingResult> run(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeByte(names.size());
+        for (String name : names)
+            out.writeUTF(name);
+
+        List<PairingResult> results = new ArrayList<>();
+        for (int a = 0; a < strategies.size(); a++)
+            for (int b = a + 1; b < strategies.size(); b++)
+                results.add(runPairing(a, b, out));
+        out.flush();
+        return results;
+    }
+
+    /**
+     * Plays the series between two strategies, batch by batch, until the
+     * confidence interval is narrow enough or the maximum is reached.
+     *
+     * @param a the index of the first strategy
+     * @param b the index of the second strategy
+     * @param out the destination of the result file
+     * @return the summary of the series
+     * @throws IOException if writing the results fails
+     */
+    private PairingResult runPairing(int a, int b, DataOutputStream out) throws IOException {
+        PairingResult result = new PairingResult(a, b);
+        short[] codes = new short[batchSize];
+        while (result.matches < maxMatches) {
+            int from = result.matches;
+            int to = Math.min(from + batchSize, maxMatches);
+            long[] totals = pool.invoke(new BatchTask(a, b, from, to, from, codes));
+
+            out.writeByte(a);
+            out.writeByte(b);
+            out.writeInt(to - from);
+            for (int i = 0; i < to - from; i++)
+                out.writeShort(codes[i]);
+
+            result.matches = to;
+            result.firstWins += (int) totals[0];
+            result.turns += totals[1];
+            if (result.getHalfWidth() <= halfWidth)
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * Plays a single match between two strategies.
+     *
+     * @param a the index of the first strategy
+     * @param b the index of the second strategy
+     * @param m the number of the match in the series
+     * @return the match outcome, as stored in the result file
+     */
+    private short playMatch(int a, int b, int m) {
+        int pair = m >>> 1;
+        Fleet fleet0 = FleetGenerator.randomFleet(new Random(mix(seed, 4L * pair)));
+        Fleet fleet1 = FleetGenerator.randomFleet(new Random(mix(seed, 4L * pair + 1)));
+        long seed0 = mix(seed, 4L * pair + 2);
+        long seed1 = mix(seed, 4L * pair + 3);
+
+        boolean swapped = (m & 1) != 0;
+        int starter = swapped ? b : a;
+        int other = swapped ? a : b;
+        Match match = new Match(strategies.get(starter).apply(seed0), fleet0,
+                strategies.get(other).apply(seed1), fleet1);
+        int winner = match.play();
+        boolean firstWon = (winner == 0) != swapped;
+        return (short) ((Math.min(match.getTurns(), Short.MAX_VALUE >> 1) << 1) | (firstWon ? 1 : 0));
+    }
+
+    /**
+     * Derives a well-distributed seed from a base seed and a counter.
+     *
+     * @param base the base seed
+     * @param n the counter
+     * @return the derived seed
+     */
+    private static long mix(long base, long n) {
+        long z = base + n * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Task playing a range of matches of a series, split in halves until
+     * small enough. It returns the number of wins of the first strategy and
+     * the total number of turns, and stores each match outcome in the batch
+     * buffer.
+     */
+    private final class BatchTask extends RecursiveTask<long[]> {
+
+        /** Serialization version, required by {@link RecursiveTask}. */
+        private static final long serialVersionUID = 1L;
+
+        /** Index of the first strategy. */
+        private final int a;
+
+        /** Index of the second strategy. */
+        private final int b;
+
+        /** First match of the range. */
+        private final int from;
+
+        /** Exclusive end of the range. */
+        private final int to;
+
+        /** Number of the first match of the batch, used to index the buffer. */
+        private final int base;
+
+        /** Buffer receiving the outcome of each match of the batch. */
+        private final short[] codes;
+
+        /**
+         * Creates a task for a range of matches.
+         *
+         * @param a the index of the first strategy
+         * @param b the index of the second strategy
+         * @param from the first match of the range
+         * @param to the exclusive end of the range
+         * @param base the number of the first match of the batch
+         * @param codes the buffer receiving the outcomes
+         */
+        BatchTask(int a, int b, int from, int to, int base, short[] codes) {
+            this.a = a;
+            this.b = b;
+            this.from = from;
+            this.to = to;
+            this.base = base;
+            this.codes = codes;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                long[] totals = new long[2];
+                for (int m = from; m < to; m++) {
+                    short code = playMatch(a, b, m);
+                    codes[m - base] = code;
+                    totals[0] += code & 1;
+                    totals[1] += code >> 1;
+                }
+                return totals;
+            }
+
+            int mid = (from + to) >>> 1;
+            BatchTask left = new BatchTask(a, b, from, mid, base, codes);
+            left.fork();
+            long[] right = new BatchTask(a, b, mid, to, base, codes).compute();
+            long[] totals = left.join();
+            totals[0] += right[0];
+            totals[1] += right[1];
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package iscteiul.ista.battleship.collections;
+
+import java.util.Arrays;
+
+/**
+ * Set of small non-negative integers with a capacity fixed at creation,
+ * stored as an array of {@code long} words, for instance one bit per cell
+ * of the board.
+ *
+ * <p>Unlike {@link java.util.BitSet} it never grows, so every operation is a
+ * plain array access. Not thread-safe.</p>
+ */
+public class FixedBitSet {
+
+    /** The bits, 64 per word. */
+    private final long[] words;
+
+    /** Number of bits in the set. */
+    private final int bits;
+
+    /**
+     * Creates an empty set.
+     *
+     * @param bits the number of bits, i.e. one more than the largest value the set may hold
+     */
+    public FixedBitSet(int bits) {
+        this.bits = bits;
+        this.words = new long[(bits + 63) >>> 6];
+    }
+
+    /**
+     * Checks whether a value is in the set.
+     *
+     * @param i the value, below the capacity
+     * @return {@code true} if the bit is set
+     */
+    public boolean get(int i) {
+        assert i >= 0 && i < bits;
+        return (words[i >>> 6] & (1L << i)) != 0L;
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param i the value, below the capacity
+     */
+    public void set(int i) {
+        assert i >= 0 && i < bits;
+        words[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param i the value, below the capacity
+     */
+    public void clear(int i) {
+        assert i >= 0 && i < bits;
+        words[i >>> 6] &= ~(1L << i);
+    }
+
+    /**
+     * Removes every value.
+     */
+    public void clearAll() {
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return the number of bits set
+     */
+    public int cardinality() {
+        int n = 0;
+        for (long word : words)
+            n += Long.bitCount(word);
+        return n;
+    }
+
+    /**
+     * Returns the smallest value in the set not below {@code from}.
+     *
+     * @param from the value to start from
+     * @return the value, or {@code -1} if there is none
+     */
+    public int nextSetBit(int from) {
+        int w = from >>> 6;
+        if (w >= words.length)
+            return -1;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0L)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length)
+                return -1;
+            word = words[w];
+        }
+    }
+
+    /**
+     * Returns the capacity of the set.
+     *
+     * @return the number of bits
+     */
+    public int capacity() {
+        return bits;
+    }
+
+    /**
+     * Returns the words of the set, for bulk mask operations. The array is
+     * shared and must not be modified.
+     *
+     * @return the words, 64 bits each
+     */
+    public long[] words() {
+        return words;
+    }
+}
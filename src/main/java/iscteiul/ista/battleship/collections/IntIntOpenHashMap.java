@@ -0,0 +1,199 @@
+package iscteiul.ista.battleship.collections;
+
+import java.util.Arrays;
+
+/**
+ * Map from {@code int} keys to {@code int} values, without boxing.
+ *
+ * <p>Entries are stored in two parallel arrays using open addressing with
+ * linear probing; removals shift the following entries back, so no
+ * tombstones are left behind. Key {@code 0} marks a free entry in the
+ * arrays and is therefore kept apart. Lookups of absent keys return the
+ * missing value given at construction. Not thread-safe.</p>
+ */
+public class IntIntOpenHashMap {
+
+    /** Key marking a free entry. */
+    private static final int FREE = 0;
+
+    /** The keys of the entries. */
+    private int[] keys;
+
+    /** The values of the entries. */
+    private int[] values;
+
+    /** Number of entries minus one; the number of entries is a power of two. */
+    private int mask;
+
+    /** Number of keys in the map, including key {@code 0}. */
+    private int size;
+
+    /** Whether key {@code 0} is in the map. */
+    private boolean hasFreeKey;
+
+    /** The value of key {@code 0}. */
+    private int freeValue;
+
+    /** Value returned for absent keys. */
+    private final int missingValue;
+
+    /**
+     * Creates an empty map.
+     *
+     * @param expected the number of keys expected, used to size the arrays
+     * @param missingValue the value returned for absent keys
+     */
+    public IntIntOpenHashMap(int expected, int missingValue) {
+        int capacity = Integer.highestOneBit(Math.max(8, expected * 2) - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        this.missingValue = missingValue;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or the missing value if the key is absent
+     */
+    public int get(int key) {
+        if (key == FREE)
+            return hasFreeKey ? freeValue : missingValue;
+        int i = slot(key);
+        return keys[i] == FREE ? missingValue : values[i];
+    }
+
+    /**
+     * Checks whether a key is in the map.
+     *
+     * @param key the key
+     * @return {@code true} if the key is present
+     */
+    public boolean containsKey(int key) {
+        return key == FREE ? hasFreeKey : keys[slot(key)] != FREE;
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or the missing value if the key was absent
+     */
+    public int put(int key, int value) {
+        if (key == FREE) {
+            int previous = hasFreeKey ? freeValue : missingValue;
+            if (!hasFreeKey)
+                size++;
+            hasFreeKey = true;
+            freeValue = value;
+            return previous;
+        }
+        int i = slot(key);
+        if (keys[i] != FREE) {
+            int previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) / 2)
+            grow();
+        return missingValue;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key
+     * @return the value it had, or the missing value if the key was absent
+     */
+    public int remove(int key) {
+        if (key == FREE) {
+            if (!hasFreeKey)
+                return missingValue;
+            hasFreeKey = false;
+            size--;
+            return freeValue;
+        }
+        int i = slot(key);
+        if (keys[i] == FREE)
+            return missingValue;
+        int previous = values[i];
+        size--;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == FREE)
+                break;
+            int home = hash(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        return previous;
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the size of the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key, keeping the capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * Finds the entry of a non-zero key, or the free entry where it belongs.
+     *
+     * @param key the key
+     * @return the entry index
+     */
+    private int slot(int key) {
+        int i = hash(key) & mask;
+        while (keys[i] != FREE && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * Doubles the arrays and reinserts every entry.
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldKeys[i] != FREE) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+    }
+
+    /**
+     * Scrambles a key so that consecutive keys spread over the table.
+     *
+     * @param key the key
+     * @return the hash
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,129 @@
+package iscteiul.ista.battleship.collections;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive {@code long} values, without boxing.
+ *
+ * <p>Not thread-safe.</p>
+ */
+public class LongArrayList {
+
+    /** The values; only the first {@code size} are valid. */
+    private long[] values;
+
+    /** Number of values in the list. */
+    private int size;
+
+    /**
+     * Creates an empty list with a default capacity.
+     */
+    public LongArrayList() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty list.
+     *
+     * @param capacity the number of values the list can hold before growing
+     */
+    public LongArrayList(int capacity) {
+        values = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value the value to append
+     */
+    public void add(long value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, 2 * values.length);
+        values[size++] = value;
+    }
+
+    /**
+     * Returns the value at an index.
+     *
+     * @param i the index
+     * @return the value
+     * @throws IndexOutOfBoundsException if the index is not below {@link #size()}
+     */
+    public long get(int i) {
+        if (i >= size)
+            throw new IndexOutOfBoundsException(i);
+        return values[i];
+    }
+
+    /**
+     * Replaces the value at an index.
+     *
+     * @param i the index
+     * @param value the new value
+     * @throws IndexOutOfBoundsException if the index is not below {@link #size()}
+     */
+    public void set(int i, long value) {
+        if (i >= size)
+            throw new IndexOutOfBoundsException(i);
+        values[i] = value;
+    }
+
+    /**
+     * Removes and returns the last value.
+     *
+     * @return the value removed
+     * @throws IndexOutOfBoundsException if the list is empty
+     */
+    public long removeLast() {
+        if (size == 0)
+            throw new IndexOutOfBoundsException(-1);
+        return values[--size];
+    }
+
+    /**
+     * Removes the first values, shifting the others to the front.
+     *
+     * @param count the number of values to remove
+     * @throws IndexOutOfBoundsException if the list holds fewer values
+     */
+    public void removeFirst(int count) {
+        if (count < 0 || count > size)
+            throw new IndexOutOfBoundsException(count);
+        System.arraycopy(values, count, values, 0, size - count);
+        size -= count;
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return the size of the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the list is empty.
+     *
+     * @return {@code true} if the list holds no value
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every value, keeping the capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the values to a new array.
+     *
+     * @return an array with the values, in order
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
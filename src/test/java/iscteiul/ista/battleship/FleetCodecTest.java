@@ -0,0 +1,102 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the canonical encoding of {@link FleetCodec}.
+ */
+public class FleetCodecTest {
+
+    /**
+     * Maps a layout through a rotation by a quarter turn, or a reflection
+     * across the main diagonal.
+     */
+    private static int[] transform(int[] layout, boolean rotate) {
+        PlacementIndex index = PlacementIndex.getInstance();
+        int[] image = new int[layout.length];
+        for (int i = 0; i < layout.length; i++) {
+            int[] cells = index.cellsOf(layout[i]);
+            int[] moved = new int[cells.length];
+            for (int c = 0; c < cells.length; c++) {
+                int row = Bitboard.rowOf(cells[c]);
+                int column = Bitboard.columnOf(cells[c]);
+                moved[c] = rotate ? Bitboard.cell(column, IFleet.BOARD_SIZE - 1 - row) : Bitboard.cell(column, row);
+            }
+            Arrays.sort(moved);
+            image[i] = -1;
+            int kind = index.getKind(layout[i]);
+            for (int p = index.firstOf(kind); p < index.endOf(kind) && image[i] < 0; p++)
+                if (Arrays.equals(index.cellsOf(p), moved))
+                    image[i] = p;
+        }
+        return image;
+    }
+
+    /**
+     * Returns the canonical encoding of a layout.
+     */
+    private static long[] canonical(int[] layout) {
+        long[] code = FleetCodec.encode(FleetGenerator.fleetOf(layout));
+        FleetCodec.canonicalize(code, 0, code, 0);
+        return code;
+    }
+
+    @Test
+    public void encodingIgnoresTheOrderOfTheShips() {
+        int[] layout = FleetGenerator.randomLayout(new Random(1));
+        int[] reversed = new int[layout.length];
+        for (int i = 0; i < layout.length; i++)
+            reversed[i] = layout[layout.length - 1 - i];
+
+        assertArrayEquals(FleetCodec.encode(FleetGenerator.fleetOf(layout)),
+                FleetCodec.encode(FleetGenerator.fleetOf(reversed)));
+    }
+
+    @Test
+    public void decodeRestoresTheLayout() {
+        long[] code = FleetCodec.encode(FleetGenerator.randomFleet(new Random(2)));
+        assertArrayEquals(code, FleetCodec.encode(FleetCodec.decode(code, 0)));
+    }
+
+    @Test
+    public void symmetricLayoutsShareOneCanonicalEncoding() {
+        Random rnd = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            int[] layout = FleetGenerator.randomLayout(rnd);
+            long[] expected = canonical(layout);
+            int[] image = layout;
+            for (int turn = 0; turn < 4; turn++) {
+                image = transform(image, true);
+                assertArrayEquals(expected, canonical(image));
+                assertArrayEquals(expected, canonical(transform(image, false)));
+            }
+        }
+    }
+
+    @Test
+    public void canonicalEncodingIsTheSmallestImage() {
+        int[] layout = FleetGenerator.randomLayout(new Random(4));
+        long[] code = FleetCodec.encode(FleetGenerator.fleetOf(layout));
+        long[] canonical = canonical(layout);
+
+        assertTrue(FleetCodec.compare(canonical, 0, code, 0) <= 0);
+        long[] again = canonical.clone();
+        FleetCodec.canonicalize(again, 0, again, 0);
+        assertArrayEquals(canonical, again);
+    }
+
+    @Test
+    public void differentLayoutsKeepDifferentEncodings() {
+        Random rnd = new Random(5);
+        long[] a = canonical(FleetGenerator.randomLayout(rnd));
+        long[] b = canonical(FleetGenerator.randomLayout(rnd));
+        assertFalse(Arrays.equals(a, b));
+    }
+}
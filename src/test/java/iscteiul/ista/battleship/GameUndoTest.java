@@ -0,0 +1,149 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link Game#undo()} and {@link Game#redo()}.
+ */
+public class GameUndoTest {
+
+    /** Layout shared by the games of a test. */
+    private final int[] layout = FleetGenerator.randomLayout(new Random(42));
+
+    /**
+     * Describes the state of a game and of the ships of its fleet.
+     */
+    private static String state(Game game) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(game.getHits()).append(' ').append(game.getSunkShips()).append(' ')
+                .append(game.getRemainingShips()).append(' ').append(game.getInvalidShots()).append(' ')
+                .append(game.getRepeatedShots()).append(' ').append(game.getShots());
+        for (IShip s : game.getFleet().getShips())
+            sb.append(' ').append(((Ship) s).getHitCount());
+        return sb.toString();
+    }
+
+    /**
+     * Fires at every cell of the fleet, then at a few invalid, repeated and missed cells.
+     */
+    private static void fireAll(Game game) {
+        for (IShip s : game.getFleet().getShips())
+            for (IPosition p : s.getPositions())
+                game.fireAt(p.getRow(), p.getColumn());
+        game.fireAt(-1, 3);
+        game.fireAt(0, IFleet.BOARD_SIZE);
+        IPosition first = game.getFleet().getShips().get(0).getPositions().get(0);
+        game.fireAt(first.getRow(), first.getColumn());
+        for (int cell = 0; cell < Bitboard.CELLS; cell++)
+            if (game.getFleet().shipIndexAt(Bitboard.rowOf(cell), Bitboard.columnOf(cell)) < 0) {
+                game.fireAt(Bitboard.rowOf(cell), Bitboard.columnOf(cell));
+                break;
+            }
+    }
+
+    @Test
+    public void undoEverythingRestoresANewGame() {
+        Game game = new Game(FleetGenerator.fleetOf(layout));
+        String fresh = state(game);
+        fireAll(game);
+        assertEquals(0, game.getRemainingShips());
+
+        int shots = game.getUndoDepth();
+        for (int i = 0; i < shots; i++)
+            assertTrue(game.undo() >= 0);
+        assertEquals(-1, game.undo());
+        assertEquals(fresh, state(game));
+        assertEquals(IFleet.FLEET_SIZE.intValue(), game.getFleet().getFloatingShips().size());
+        assertEquals(shots, game.getRedoDepth());
+    }
+
+    @Test
+    public void redoReplaysTheSameOutcomes() {
+        Game game = new Game(FleetGenerator.fleetOf(layout));
+        fireAll(game);
+        String end = state(game);
+
+        List<Integer> undone = new ArrayList<>();
+        while (game.getUndoDepth() > 0)
+            undone.add(game.undo());
+        for (int i = undone.size() - 1; i >= 0; i--)
+            assertEquals(undone.get(i).intValue(), game.redo());
+        assertEquals(-1, game.redo());
+        assertEquals(end, state(game));
+    }
+
+    @Test
+    public void undoneGameMatchesAReplayedGame() {
+        Random rnd = new Random(7);
+        Game game = new Game(FleetGenerator.fleetOf(layout));
+        List<int[]> live = new ArrayList<>();
+        for (int k = 0; k < 500; k++) {
+            int op = rnd.nextInt(10);
+            if (op < 6) {
+                int[] shot = {rnd.nextInt(IFleet.BOARD_SIZE + 1), rnd.nextInt(IFleet.BOARD_SIZE)};
+                game.fireAt(shot[0], shot[1]);
+                live.add(shot);
+            } else if (op < 9) {
+                if (game.undo() >= 0)
+                    live.remove(live.size() - 1);
+            }
+        }
+
+        Game replayed = new Game(FleetGenerator.fleetOf(layout));
+        for (int[] shot : live)
+            replayed.fireAt(shot[0], shot[1]);
+        assertEquals(state(replayed), state(game));
+    }
+
+    @Test
+    public void firingDiscardsTheShotsToRedo() {
+        Game game = new Game(FleetGenerator.fleetOf(layout));
+        game.fireAt(0, 0);
+        game.fireAt(1, 1);
+        game.undo();
+        assertEquals(1, game.getRedoDepth());
+
+        game.fireAt(2, 2);
+        assertEquals(0, game.getRedoDepth());
+        assertEquals(-1, game.redo());
+    }
+
+    @Test
+    public void listenersSeeUndoneShots() {
+        Game game = new Game(FleetGenerator.fleetOf(layout));
+        List<Integer> outcomes = new ArrayList<>();
+        game.addListener(new GameListener() {
+            @Override
+            public void shotUndone(int row, int column, int outcome) {
+                outcomes.add(outcome);
+            }
+        });
+
+        IPosition p = game.getFleet().getShips().get(0).getPositions().get(0);
+        int hit = game.fireAt(p.getRow(), p.getColumn());
+        int invalid = game.fireAt(-1, -1);
+        game.undo();
+        game.undo();
+        assertEquals(List.of(invalid, hit), outcomes);
+    }
+
+    @Test
+    public void undoLimitForgetsTheOldestShots() {
+        Game game = new Game(FleetGenerator.fleetOf(layout));
+        game.setUndoLimit(3);
+        for (int i = 0; i < 10; i++)
+            game.fireAt(-1, i);
+        assertEquals(3, game.getUndoDepth());
+
+        while (game.getUndoDepth() > 0)
+            game.undo();
+        assertEquals(7, game.getInvalidShots());
+    }
+}
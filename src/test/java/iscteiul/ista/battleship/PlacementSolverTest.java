@@ -0,0 +1,127 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link PlacementSolver#count()} and {@link PlacementSolver#sample(Random)}
+ * on fleets with most ships pinned, small enough to enumerate by hand.
+ */
+public class PlacementSolverTest {
+
+    /** Number of ships pinned; the remaining ones are barges. */
+    private static final int PINNED = 8;
+
+    /** Layout whose first ships are pinned. */
+    private final int[] layout = FleetGenerator.randomLayout(new Random(2024));
+
+    /**
+     * Creates a solver with the first ships of the layout pinned.
+     */
+    private PlacementSolver pinned() {
+        PlacementSolver solver = new PlacementSolver();
+        for (int i = 0; i < PINNED; i++)
+            solver.pin(layout[i]);
+        return solver;
+    }
+
+    /**
+     * Counts the ways to add the remaining barges, one cell each, so that no
+     * two ships touch, by brute force.
+     */
+    private long bruteForce() {
+        PlacementIndex index = PlacementIndex.getInstance();
+        long[] blocked = Bitboard.newMask();
+        for (int i = 0; i < PINNED; i++)
+            index.orHalo(layout[i], blocked);
+
+        int[] free = new int[Bitboard.CELLS];
+        int n = 0;
+        for (int cell = 0; cell < Bitboard.CELLS; cell++)
+            if (!Bitboard.get(blocked, cell))
+                free[n++] = cell;
+
+        long count = 0;
+        for (int a = 0; a < n; a++)
+            for (int b = a + 1; b < n; b++)
+                for (int c = b + 1; c < n; c++)
+                    if (apart(free[a], free[b]) && apart(free[a], free[c]) && apart(free[b], free[c]))
+                        count++;
+        return count;
+    }
+
+    /**
+     * Checks whether two cells neither coincide nor touch.
+     */
+    private static boolean apart(int a, int b) {
+        return Math.abs(Bitboard.rowOf(a) - Bitboard.rowOf(b)) > 1
+                || Math.abs(Bitboard.columnOf(a) - Bitboard.columnOf(b)) > 1;
+    }
+
+    @Test
+    public void layoutsOfTheRemainingBargesAreLeftToPlace() {
+        for (int i = PINNED; i < layout.length; i++)
+            assertEquals("barca", ShipKind.get(PlacementIndex.getInstance().getKind(layout[i])).getId());
+    }
+
+    @Test
+    public void countMatchesBruteForce() {
+        assertEquals(bruteForce(), pinned().count());
+    }
+
+    @Test
+    public void countWithCallbacksMatchesTheCellScan() {
+        PlacementSolver solver = pinned();
+        solver.addConstraint((p, placed, n) -> true);
+        assertEquals(pinned().count(), solver.count());
+    }
+
+    @Test
+    public void samplesAreValidAndCoverEveryLayout() {
+        PlacementSolver solver = pinned();
+        long count = solver.count();
+        assertTrue(count > 1);
+        Random rnd = new Random(5);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 40 * count; i++) {
+            int[] sample = solver.sample(rnd);
+            assertNotNull(sample);
+            assertEquals(IFleet.FLEET_SIZE.intValue(), sample.length);
+            assertArrayEquals(Arrays.copyOf(layout, PINNED), Arrays.copyOf(sample, PINNED));
+            FleetGenerator.fleetOf(sample);
+
+            int[] rest = Arrays.copyOfRange(sample, PINNED, sample.length);
+            Arrays.sort(rest);
+            seen.add(Arrays.toString(rest));
+        }
+        assertEquals(count, seen.size());
+    }
+
+    @Test
+    public void impossibleFleetHasNoLayout() {
+        PlacementIndex index = PlacementIndex.getInstance();
+        long[] ships = Bitboard.newMask();
+        for (int i = 0; i < PINNED; i++)
+            index.orMask(layout[i], ships);
+        long[] water = Bitboard.newMask();
+        for (int cell = 0; cell < Bitboard.CELLS; cell++)
+            if (!Bitboard.get(ships, cell))
+                Bitboard.set(water, cell);
+        PlacementSolver solver = pinned();
+        solver.forbid(water);
+
+        assertEquals(0, solver.count());
+        assertNull(solver.sample(new Random(1)));
+        assertNull(solver.find());
+    }
+}
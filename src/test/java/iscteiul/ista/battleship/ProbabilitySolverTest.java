@@ -0,0 +1,105 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the probability grids of {@link ProbabilitySolver}.
+ */
+public class ProbabilitySolverTest {
+
+    /** Tolerance of the sums of probabilities. */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Adds up the probabilities of a grid.
+     */
+    private static double sum(double[][] grid) {
+        double total = 0;
+        for (double[] row : grid)
+            for (double p : row) {
+                assertTrue(p >= -EPSILON && p <= 1 + EPSILON);
+                total += p;
+            }
+        return total;
+    }
+
+    @Test
+    public void gridSumsToTheCellsOfTheRemainingShips() {
+        double[][] grid = new ProbabilitySolver().solve(Bitboard.newMask(), Bitboard.newMask(),
+                Collections.emptyList(), List.of("caravela", "barca", "barca"));
+
+        assertEquals(4, sum(grid), EPSILON);
+        int last = IFleet.BOARD_SIZE - 1;
+        assertEquals(grid[0][0], grid[last][last], EPSILON);
+        assertEquals(grid[2][7], grid[7][2], EPSILON);
+    }
+
+    @Test
+    public void partiallyRevealedGameSumsToTheRemainingShips() {
+        PlacementIndex index = PlacementIndex.getInstance();
+        Random rnd = new Random(11);
+        for (int game = 0; game < 5; game++) {
+            int[] layout = FleetGenerator.randomLayout(rnd);
+            long[] hits = Bitboard.newMask();
+            long[] misses = Bitboard.newMask();
+            List<IShip> sunk = new ArrayList<>();
+            List<String> remaining = new ArrayList<>();
+            int remainingCells = 0;
+            long[] occupied = Bitboard.newMask();
+            for (int p : layout)
+                index.orMask(p, occupied);
+
+            for (int i = 0; i < layout.length; i++) {
+                int[] cells = index.cellsOf(layout[i]);
+                if (i % 4 == 1) {
+                    remaining.add(ShipKind.get(index.getKind(layout[i])).getId());
+                    remainingCells += cells.length;
+                } else {
+                    sunk.add(index.toShip(layout[i]));
+                    for (int cell : cells)
+                        Bitboard.set(hits, cell);
+                }
+            }
+            for (int cell = 0; cell < Bitboard.CELLS; cell += 3)
+                if (!Bitboard.get(occupied, cell))
+                    Bitboard.set(misses, cell);
+
+            double[][] grid = new ProbabilitySolver().solve(hits, misses, sunk, remaining);
+            assertEquals(remainingCells, sum(grid), EPSILON);
+            for (int cell = 0; cell < Bitboard.CELLS; cell++)
+                if (Bitboard.get(hits, cell) || Bitboard.get(misses, cell))
+                    assertEquals(0, grid[Bitboard.rowOf(cell)][Bitboard.columnOf(cell)], 0);
+        }
+    }
+
+    @Test
+    public void uncoveredHitIsCertain() {
+        long[] hits = Bitboard.newMask();
+        Bitboard.set(hits, Bitboard.cell(4, 4));
+        double[][] grid = new ProbabilitySolver().solve(hits, Bitboard.newMask(),
+                Collections.emptyList(), List.of("fragata"));
+
+        assertEquals(1, grid[4][4], EPSILON);
+        assertEquals(4, sum(grid), EPSILON);
+    }
+
+    @Test
+    public void inconsistentBoardGivesAnEmptyGrid() {
+        long[] misses = Bitboard.newMask();
+        for (int cell = 0; cell < Bitboard.CELLS; cell++)
+            if (Bitboard.rowOf(cell) % 2 == 0 || Bitboard.columnOf(cell) % 2 == 0)
+                Bitboard.set(misses, cell);
+        double[][] grid = new ProbabilitySolver().solve(Bitboard.newMask(), misses,
+                Collections.emptyList(), List.of("caravela"));
+
+        assertEquals(0, sum(grid), 0);
+    }
+}
@@ -0,0 +1,78 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the hit mask of {@link Ship}.
+ */
+public class ShipTest {
+
+    @Test
+    public void shootMarksOnlyTheCellsOfTheShip() {
+        Ship ship = new Frigate(Compass.SOUTH, new Position(2, 3));
+
+        ship.shoot(0, 0);
+        assertEquals(0, ship.getHitCount());
+
+        IPosition first = ship.getPositions().get(0);
+        ship.shoot(first.getRow(), first.getColumn());
+        ship.shoot(first.getRow(), first.getColumn());
+        assertEquals(1, ship.getHitCount());
+        assertTrue(ship.isHit(first.getRow(), first.getColumn()));
+        assertTrue(first.isHit());
+        assertTrue(ship.stillFloating());
+    }
+
+    @Test
+    public void shipSinksWhenEveryCellIsHit() {
+        Ship ship = new Frigate(Compass.EAST, new Position(5, 1));
+
+        for (IPosition p : ship.getPositions())
+            ship.shoot(p);
+        assertEquals(ship.getSize().intValue(), ship.getHitCount());
+        assertFalse(ship.stillFloating());
+    }
+
+    @Test
+    public void unshootTakesBackOneHit() {
+        Ship ship = new Frigate(Compass.SOUTH, new Position(2, 3));
+        List<IPosition> positions = ship.getPositions();
+        for (IPosition p : positions)
+            ship.shoot(p);
+
+        IPosition last = positions.get(positions.size() - 1);
+        ship.unshoot(last);
+        assertTrue(ship.stillFloating());
+        assertEquals(positions.size() - 1, ship.getHitCount());
+        assertFalse(ship.isHit(last.getRow(), last.getColumn()));
+        assertFalse(last.isHit());
+
+        ship.unshoot(last.getRow(), last.getColumn());
+        assertEquals(positions.size() - 1, ship.getHitCount());
+        ship.unshoot(0, 0);
+        assertEquals(positions.size() - 1, ship.getHitCount());
+    }
+
+    @Test
+    public void positionsShareTheHitsOfTheShip() {
+        IPosition cell = new Galleon(Compass.NORTH, new Position(4, 4)).getPositions().get(0);
+        Ship ship = new Galleon(Compass.NORTH, new Position(4, 4));
+        ship.shoot(cell.getRow(), cell.getColumn());
+
+        List<IPosition> positions = ship.getPositions();
+        int hit = 0;
+        for (IPosition p : positions)
+            if (p.isHit())
+                hit++;
+        assertEquals(1, hit);
+
+        positions.get(positions.size() - 1).shoot();
+        assertEquals(2, ship.getHitCount());
+    }
+}